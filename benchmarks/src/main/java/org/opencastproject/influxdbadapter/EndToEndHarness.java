@@ -0,0 +1,431 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs the whole adapter ({@link Main}) against local stand-ins for Opencast and InfluxDB and reports its throughput
+ *
+ * <p>
+ * The Opencast stand-in answers <code>/api/events/{id}</code> with a configurable latency and error rate. The
+ * InfluxDB stand-in accepts line protocol on <code>/write</code> and records when each point arrived. The log is
+ * generated with {@link LogGenerator}, either up front (bulk mode, the adapter reads it from the beginning) or while
+ * the adapter is running (live mode, the adapter tails it). In export mode, the adapter processes the pre-generated log
+ * with <code>--export</code>, writing a line protocol file instead of using InfluxDB.
+ * </p>
+ *
+ * <p>
+ * End-to-end latency is the time between a point's time stamp (the log line's time stamp) and its arrival at the
+ * InfluxDB stand-in, so it's only meaningful in live mode, and it includes the view interval.
+ * </p>
+ */
+public final class EndToEndHarness {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(EndToEndHarness.class);
+
+  private final long opencastLatencyMillis;
+  private final double opencastErrorRate;
+  private final long influxOutageMillis;
+  private final AtomicLong influxFirstWriteMillis = new AtomicLong();
+  private final AtomicLong opencastRequests = new AtomicLong();
+  private final AtomicLong influxRequests = new AtomicLong();
+  private final AtomicLong influxPoints = new AtomicLong();
+  private final AtomicLong influxBytes = new AtomicLong();
+  private final List<Long> latenciesMillis = Collections.synchronizedList(new ArrayList<>());
+
+  private EndToEndHarness(
+          final long opencastLatencyMillis,
+          final double opencastErrorRate,
+          final long influxOutageMillis) {
+    this.opencastLatencyMillis = opencastLatencyMillis;
+    this.opencastErrorRate = opencastErrorRate;
+    this.influxOutageMillis = influxOutageMillis;
+  }
+
+  private static HttpServer startServer(final String path, final ExecutorService executor, final Handler handler)
+          throws IOException {
+    final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(path, exchange -> {
+      try {
+        handler.handle(exchange);
+      } catch (final IOException | RuntimeException e) {
+        LOGGER.error("Stand-in error: ", e);
+        exchange.sendResponseHeaders(500, -1);
+      } finally {
+        exchange.close();
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+    return server;
+  }
+
+  private interface Handler {
+    void handle(HttpExchange exchange) throws IOException;
+  }
+
+  private static void respond(final HttpExchange exchange, final int code, final String body) throws IOException {
+    final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      try (final OutputStream os = exchange.getResponseBody()) {
+        os.write(bytes);
+      }
+    }
+  }
+
+  private void handleOpencast(final HttpExchange exchange) throws IOException {
+    this.opencastRequests.incrementAndGet();
+    if (this.opencastLatencyMillis > 0) {
+      try {
+        Thread.sleep(this.opencastLatencyMillis);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (ThreadLocalRandom.current().nextDouble() < this.opencastErrorRate) {
+      respond(exchange, 500, "");
+      return;
+    }
+    final String path = exchange.getRequestURI().getPath();
+    final String episodeId = path.substring(path.lastIndexOf('/') + 1);
+    respond(exchange,
+            200,
+            "{\"identifier\":\"" + episodeId + "\",\"is_part_of\":\"series-" + Math.floorMod(episodeId.hashCode(), 50)
+                    + "\"}");
+  }
+
+  private void handleInflux(final HttpExchange exchange) throws IOException {
+    final String path = exchange.getRequestURI().getPath();
+    exchange.getResponseHeaders().set("X-Influxdb-Version", "1.7-stand-in");
+    if (path.startsWith("/ping")) {
+      exchange.sendResponseHeaders(204, -1);
+      return;
+    }
+    if (!path.startsWith("/write")) {
+      respond(exchange, 200, "{\"results\":[{\"statement_id\":0}]}");
+      return;
+    }
+    this.influxRequests.incrementAndGet();
+    final long now = System.currentTimeMillis();
+    this.influxFirstWriteMillis.compareAndSet(0, now);
+    if (now - this.influxFirstWriteMillis.get() < this.influxOutageMillis) {
+      respond(exchange, 503, "{\"error\":\"stand-in outage\"}");
+      return;
+    }
+    final long nanosPerUnit = nanosPerUnit(exchange.getRequestURI().getQuery());
+    InputStream body = exchange.getRequestBody();
+    if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+      body = new GZIPInputStream(body);
+    try (final BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty())
+          continue;
+        this.influxBytes.addAndGet(line.length() + 1);
+        this.influxPoints.incrementAndGet();
+        final long time = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        this.latenciesMillis.add(now - TimeUnit.NANOSECONDS.toMillis(time * nanosPerUnit));
+      }
+    }
+    exchange.sendResponseHeaders(204, -1);
+  }
+
+  private static long nanosPerUnit(final String query) {
+    if (query != null) {
+      for (final String parameter : query.split("&")) {
+        switch (parameter) {
+          case "precision=s":
+            return TimeUnit.SECONDS.toNanos(1);
+          case "precision=ms":
+            return TimeUnit.MILLISECONDS.toNanos(1);
+          case "precision=u":
+            return TimeUnit.MICROSECONDS.toNanos(1);
+          default:
+            break;
+        }
+      }
+    }
+    return 1;
+  }
+
+  private static Path writeConfig(
+          final Path logFile,
+          final HttpServer opencast,
+          final HttpServer influx,
+          final String viewInterval,
+          final String sinks) throws IOException {
+    final Path config = Files.createTempFile("opencast-influxdb-adapter-harness", ".properties");
+    config.toFile().deleteOnExit();
+    // The adapter configures logging itself, make it use our (quiet) configuration
+    final Path logConfig = Files.createTempFile("opencast-influxdb-adapter-harness", ".xml");
+    logConfig.toFile().deleteOnExit();
+    try (final InputStream is = EndToEndHarness.class.getResourceAsStream("/logback.xml")) {
+      Files.copy(is, logConfig, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.write(config,
+                String.join("\n",
+                            "influxdb.uri=http://127.0.0.1:" + influx.getAddress().getPort(),
+                            "influxdb.user=root",
+                            "influxdb.password=root",
+                            "influxdb.db-name=opencast",
+                            "influxdb.spool-directory=" + Files.createTempDirectory("opencast-influxdb-adapter-harness"),
+                            "file.directory=" + Files.createTempDirectory("opencast-influxdb-adapter-harness"),
+                            "adapter.sinks=" + sinks,
+                            "log-file=" + logFile,
+                            "adapter.log-configuration-file=" + logConfig,
+                            "adapter.view-interval-iso-duration=" + viewInterval,
+                            "adapter.invalid-user-agents=bot,spider,curl,Ruby",
+                            "adapter.valid-file-extensions=.mp4",
+                            "adapter.invalid-publication-channels=internal",
+                            "opencast.external-api.uri=http://127.0.0.1:" + opencast.getAddress().getPort(),
+                            "opencast.external-api.user=admin",
+                            "opencast.external-api.password=opencast",
+                            "opencast.series-are-optional=true").getBytes(StandardCharsets.UTF_8));
+    return config;
+  }
+
+  private long pointsWritten(final Counter sinkPointsWritten) {
+    return sinkPointsWritten != null ? sinkPointsWritten.get() : this.influxPoints.get();
+  }
+
+  private static long percentile(final List<Long> sorted, final double p) {
+    if (sorted.isEmpty())
+      return 0;
+    return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final Options options = new Options();
+    options.addOption(option("mode", "bulk (read a pre-generated log from the beginning), live or export, default: bulk"));
+    options.addOption(option("lines", "Number of log lines, default: 1000000"));
+    options.addOption(option("lines-per-second", "Rate of the generated log, default: 1000"));
+    options.addOption(option("episodes", "Number of episodes, default: 1000"));
+    options.addOption(option("viewers", "Number of viewers, default: 10000"));
+    options.addOption(option("view-interval", "The adapter's view interval, default: PT5M"));
+    options.addOption(option("sinks", "The adapter's sinks (influxdb, file, stdout), default: influxdb"));
+    options.addOption(option("opencast-latency-ms", "Latency of the Opencast stand-in, default: 0"));
+    options.addOption(option("opencast-error-rate", "Share of failing Opencast requests, default: 0"));
+    options.addOption(option("influxdb-outage-seconds",
+                             "Let InfluxDB writes fail for this long after the first one, default: 0"));
+    options.addOption(option("idle-seconds", "Stop when no points arrived for this long, default: 10"));
+    options.addOption(Option.builder().longOpt("help").desc("Show this help").build());
+    final CommandLineParser parser = new DefaultParser();
+    final org.apache.commons.cli.CommandLine parsed;
+    try {
+      parsed = parser.parse(options, args);
+    } catch (final ParseException e) {
+      LOGGER.error("Error parsing command line options: {}", e.getMessage());
+      System.exit(ExitStatuses.INVALID_COMMAND_LINE_ARGS);
+      return;
+    }
+    if (parsed.hasOption("help")) {
+      new HelpFormatter().printHelp("EndToEndHarness", options);
+      return;
+    }
+    final boolean live = parsed.getOptionValue("mode", "bulk").equals("live");
+    final boolean export = parsed.getOptionValue("mode", "bulk").equals("export");
+    final long lines = Long.parseLong(parsed.getOptionValue("lines", "1000000"));
+    final double linesPerSecond = Double.parseDouble(parsed.getOptionValue("lines-per-second", "1000"));
+    final long idleMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(parsed.getOptionValue("idle-seconds", "10")));
+    final EndToEndHarness harness = new EndToEndHarness(
+            Long.parseLong(parsed.getOptionValue("opencast-latency-ms", "0")),
+            Double.parseDouble(parsed.getOptionValue("opencast-error-rate", "0")),
+            TimeUnit.SECONDS.toMillis(Long.parseLong(parsed.getOptionValue("influxdb-outage-seconds", "0"))));
+    final LogGenerator generator = new LogGenerator(new LogGenerator.Settings(
+            1,
+            Integer.parseInt(parsed.getOptionValue("episodes", "1000")),
+            Integer.parseInt(parsed.getOptionValue("viewers", "10000")),
+            false,
+            0.2,
+            Collections.singletonList("engage-player"),
+            0.05,
+            0.1,
+            42));
+
+    // Without this, the JDK server's small responses suffer from Nagle's algorithm and delayed ACKs
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    final ExecutorService executor = Executors.newFixedThreadPool(32);
+    final HttpServer opencast = startServer("/api/events/", executor, harness::handleOpencast);
+    final HttpServer influx = startServer("/", executor, harness::handleInflux);
+    final Path logFile = Files.createTempFile("opencast-influxdb-adapter-harness", ".log");
+    logFile.toFile().deleteOnExit();
+    if (!live) {
+      LOGGER.info("Generating {} lines...", lines);
+      try (final Writer writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8)) {
+        generator.writeBulk(writer,
+                            lines,
+                            linesPerSecond,
+                            OffsetDateTime.now().minusSeconds((long) (lines / linesPerSecond)));
+      }
+    }
+    final String sinks = parsed.getOptionValue("sinks", "influxdb");
+    // Without InfluxDB, count what the first sink wrote
+    final Counter pointsWritten = sinks.contains("influxdb")
+            ? null
+            : Metrics.forSink(sinks.split(",")[0].trim()).getPointsWritten();
+    final Path config = writeConfig(logFile,
+                                    opencast,
+                                    influx,
+                                    parsed.getOptionValue("view-interval", "PT5M"),
+                                    sinks);
+
+    // The InfluxDB client logs every request via java.util.logging
+    java.util.logging.Logger.getLogger("").setLevel(Level.WARNING);
+    LOGGER.info("Starting adapter...");
+    final long start = System.nanoTime();
+    final List<String> adapterArgs = new ArrayList<>();
+    adapterArgs.add("--config-file=" + config);
+    if (export) {
+      final Path exportFile = Files.createTempFile("opencast-influxdb-adapter-harness", ".lp.gz");
+      Files.delete(exportFile);
+      exportFile.toFile().deleteOnExit();
+      adapterArgs.add("--export=" + exportFile);
+      adapterArgs.add(logFile.toString());
+      Main.main(adapterArgs.toArray(new String[0]));
+      final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+      LOGGER.info("Lines read:          {} ({} lines/s)",
+                  Metrics.LINES_READ.get(),
+                  String.format("%.0f", Metrics.LINES_READ.get() / seconds));
+      LOGGER.info("Impressions:         {} ({} impressions/s)",
+                  Metrics.IMPRESSIONS.get(),
+                  String.format("%.0f", Metrics.IMPRESSIONS.get() / seconds));
+      final long exported;
+      try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+              new GZIPInputStream(Files.newInputStream(exportFile)), StandardCharsets.UTF_8))) {
+        exported = reader.lines().filter(line -> !line.startsWith("#")).count();
+      }
+      LOGGER.info("Export file:         {} points, {} bytes", exported, Files.size(exportFile));
+      LOGGER.info("Opencast requests:   {}", harness.opencastRequests.get());
+      LOGGER.info("InfluxDB requests:   {}", harness.influxRequests.get());
+      opencast.stop(0);
+      influx.stop(0);
+      executor.shutdownNow();
+      System.exit(0);
+    }
+    if (!live)
+      adapterArgs.add("--from-beginning");
+    final Thread adapter = new Thread(() -> Main.main(adapterArgs.toArray(new String[0])), "adapter");
+    adapter.setDaemon(true);
+    adapter.start();
+    if (live) {
+      final Thread writerThread = new Thread(() -> {
+        try (final Writer writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8)) {
+          generator.writeLive(writer, lines, linesPerSecond);
+        } catch (final IOException | InterruptedException e) {
+          LOGGER.error("Error writing log: ", e);
+        }
+      }, "log-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+
+    // Wait until all lines are read and no more points arrive
+    long lastPoints = -1;
+    long lastChange = System.currentTimeMillis();
+    long iteration = 0;
+    while (Metrics.LINES_READ.get() < lines || System.currentTimeMillis() - lastChange < idleMillis) {
+      Thread.sleep(500);
+      if (++iteration % 10 == 0) {
+        LOGGER.info("Progress: {} lines read, {} points written",
+                    Metrics.LINES_READ.get(),
+                    harness.pointsWritten(pointsWritten));
+      }
+      final long points = harness.pointsWritten(pointsWritten);
+      if (points != lastPoints) {
+        lastPoints = points;
+        lastChange = System.currentTimeMillis();
+      }
+      if (!adapter.isAlive()) {
+        LOGGER.error("The adapter stopped unexpectedly");
+        break;
+      }
+    }
+    final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1)
+            - TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - lastChange);
+
+    final List<Long> latencies;
+    synchronized (harness.latenciesMillis) {
+      latencies = new ArrayList<>(harness.latenciesMillis);
+    }
+    Collections.sort(latencies);
+    LOGGER.info("Lines read:          {} ({} lines/s)",
+                Metrics.LINES_READ.get(),
+                String.format("%.0f", Metrics.LINES_READ.get() / seconds));
+    LOGGER.info("Points written:      {} ({} points/s, {} bytes)",
+                harness.pointsWritten(pointsWritten),
+                String.format("%.0f", harness.pointsWritten(pointsWritten) / seconds),
+                harness.influxBytes.get());
+    LOGGER.info("Opencast requests:   {}", harness.opencastRequests.get());
+    LOGGER.info("InfluxDB requests:   {}", harness.influxRequests.get());
+    LOGGER.info("Spooled points:      {} ({} replayed)",
+                Metrics.forSink("influxdb").getSpoolPointsAppended().get(),
+                Metrics.forSink("influxdb").getSpoolPointsReplayed().get());
+    LOGGER.info("End-to-end latency:  p50 {} ms, p90 {} ms, p99 {} ms, max {} ms",
+                percentile(latencies, 0.5),
+                percentile(latencies, 0.9),
+                percentile(latencies, 0.99),
+                percentile(latencies, 1));
+    opencast.stop(0);
+    influx.stop(0);
+    executor.shutdownNow();
+    System.exit(0);
+  }
+
+  private static Option option(final String name, final String description) {
+    return Option.builder().longOpt(name).desc(description).hasArg(true).argName(name).build();
+  }
+}
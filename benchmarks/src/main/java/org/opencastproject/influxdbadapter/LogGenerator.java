@@ -0,0 +1,364 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates synthetic Apache access log lines in the format the adapter parses (see {@link LogLine})
+ *
+ * <p>
+ * Episode popularity follows a Zipf distribution, viewers are either uniformly or Zipf distributed. A configurable
+ * share of the lines comes from bots (invalid user agents) or is noise: error responses, requests for non-media
+ * files, and lines that don't match the log pattern at all.
+ * </p>
+ *
+ * <p>
+ * In bulk mode, lines are written as fast as possible, with time stamps advancing according to the rate, starting
+ * at <code>--start</code>. This is for backfill (<code>--from-beginning</code>) tests. In live mode, lines are
+ * appended at the given rate with the current time, for tail and soak tests.
+ * </p>
+ */
+public final class LogGenerator {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LogGenerator.class);
+
+  private static final DateTimeFormatter LOG_TIME_FORMATTER = DateTimeFormatter
+          .ofPattern("dd/MMM/yyyy:HH:mm:ss Z")
+          .withLocale(Locale.ENGLISH);
+
+  private static final List<String> USER_AGENTS = Arrays.asList(
+          "Mozilla/5.0 (X11; Linux x86_64; rv:66.0) Gecko/20100101 Firefox/66.0",
+          "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/74.0.3729.131 Safari/537.36",
+          "Mozilla/5.0 (iPhone; CPU iPhone OS 12_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/12.1 Mobile/15E148 Safari/604.1",
+          "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_14_4) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/12.1 Safari/605.1.15");
+
+  private static final List<String> BOT_AGENTS = Arrays.asList(
+          "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+          "Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+          "curl/7.64.0",
+          "Ruby");
+
+  private static final List<String> FILES = Arrays.asList("presenter.mp4", "presentation.mp4", "audio.mp3");
+
+  /**
+   * All knobs of the generator (immutable)
+   */
+  public static final class Settings {
+    private final int organizations;
+    private final int episodes;
+    private final int viewers;
+    private final boolean zipfViewers;
+    private final double ipv6Ratio;
+    private final List<String> channels;
+    private final double botRatio;
+    private final double noiseRatio;
+    private final long seed;
+
+    public Settings(
+            final int organizations,
+            final int episodes,
+            final int viewers,
+            final boolean zipfViewers,
+            final double ipv6Ratio,
+            final List<String> channels,
+            final double botRatio,
+            final double noiseRatio,
+            final long seed) {
+      this.organizations = organizations;
+      this.episodes = episodes;
+      this.viewers = viewers;
+      this.zipfViewers = zipfViewers;
+      this.ipv6Ratio = ipv6Ratio;
+      this.channels = channels;
+      this.botRatio = botRatio;
+      this.noiseRatio = noiseRatio;
+      this.seed = seed;
+    }
+  }
+
+  private final Settings settings;
+  private final Random random;
+  private final double[] episodeDistribution;
+  private final double[] viewerDistribution;
+  private final StringBuilder line = new StringBuilder(256);
+  private long lastEpochSecond = Long.MIN_VALUE;
+  private ZoneOffset lastOffset;
+  private String lastTimeFormatted;
+
+  public LogGenerator(final Settings settings) {
+    this.settings = settings;
+    this.random = new Random(settings.seed);
+    this.episodeDistribution = zipf(settings.episodes);
+    this.viewerDistribution = settings.zipfViewers ? zipf(settings.viewers) : null;
+  }
+
+  /**
+   * Cumulative Zipf distribution (exponent 1) over <code>n</code> ranks
+   */
+  private static double[] zipf(final int n) {
+    final double[] result = new double[n];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += 1.0 / (i + 1);
+      result[i] = sum;
+    }
+    for (int i = 0; i < n; i++) {
+      result[i] /= sum;
+    }
+    return result;
+  }
+
+  private int sample(final double[] cumulative) {
+    final int i = Arrays.binarySearch(cumulative, this.random.nextDouble());
+    return Math.min(i >= 0 ? i : -i - 1, cumulative.length - 1);
+  }
+
+  private <T> T pick(final List<T> xs) {
+    return xs.get(this.random.nextInt(xs.size()));
+  }
+
+  private static String organization(final int i) {
+    return i == 0 ? "mh_default_org" : "org" + i;
+  }
+
+  private void appendHex(final long value, final int digits) {
+    for (int shift = 4 * (digits - 1); shift >= 0; shift -= 4) {
+      this.line.append(Character.forDigit((int) (value >>> shift & 0xf), 16));
+    }
+  }
+
+  private void appendEpisodeId(final int organization, final int episode) {
+    appendHex(organization, 8);
+    this.line.append("-6f18-4c69-ac84-");
+    appendHex(episode, 12);
+  }
+
+  private String formatTime(final OffsetDateTime time) {
+    // Consecutive lines mostly share their (second resolution) time stamp, even if their times differ below that
+    if (time.toEpochSecond() != this.lastEpochSecond || !time.getOffset().equals(this.lastOffset)) {
+      this.lastEpochSecond = time.toEpochSecond();
+      this.lastOffset = time.getOffset();
+      this.lastTimeFormatted = time.format(LOG_TIME_FORMATTER);
+    }
+    return this.lastTimeFormatted;
+  }
+
+  private void appendClientAddress(final int viewer) {
+    // Decide the address family per viewer, not per line, so a viewer keeps its address
+    if (Math.floorMod(viewer * 0x9E3779B9 >>> 8, 1000) < this.settings.ipv6Ratio * 1000) {
+      this.line.append("2001:db8:").append(Integer.toHexString(viewer >>> 16)).append("::")
+               .append(Integer.toHexString(viewer & 0xffff));
+    } else {
+      this.line.append("10.").append(viewer >>> 16 & 0xff).append('.').append(viewer >>> 8 & 0xff).append('.')
+               .append(viewer & 0xff);
+    }
+  }
+
+  /**
+   * Generate the next line
+   *
+   * @param time The line's time stamp
+   * @return The line, without a line terminator
+   */
+  public String nextLine(final OffsetDateTime time) {
+    this.line.setLength(0);
+    final double kind = this.random.nextDouble();
+    if (kind < this.settings.noiseRatio / 4) {
+      // Not an access log line at all
+      return this.line.append("[").append(formatTime(time)).append("] garbage ")
+                      .append(this.random.nextInt()).toString();
+    }
+    final int viewer = this.viewerDistribution != null
+            ? sample(this.viewerDistribution)
+            : this.random.nextInt(this.settings.viewers);
+    final int organization = this.random.nextInt(this.settings.organizations);
+    final int episode = sample(this.episodeDistribution);
+    appendClientAddress(viewer);
+    this.line.append(" - - [").append(formatTime(time)).append("] \"GET /");
+    final boolean noise = kind < this.settings.noiseRatio;
+    final int status;
+    if (noise && this.random.nextBoolean()) {
+      // A request for something that's not a media file
+      this.line.append("engage/theodul/ui/core.html?id=");
+      appendEpisodeId(organization, episode);
+      status = 200;
+    } else {
+      this.line.append(organization(organization)).append('/').append(pick(this.settings.channels)).append('/');
+      appendEpisodeId(organization, episode);
+      this.line.append('/');
+      appendHex(episode, 8);
+      this.line.append("-0000-4000-8000-");
+      appendHex(viewer, 12);
+      this.line.append('/').append(pick(FILES));
+      status = noise ? (this.random.nextBoolean() ? 404 : 304) : (this.random.nextInt(4) == 0 ? 206 : 200);
+    }
+    final boolean bot = this.random.nextDouble() < this.settings.botRatio;
+    return this.line.append(" HTTP/1.1\" ").append(status).append(' ').append(this.random.nextInt(10_000_000))
+                    .append(" \"-\" \"").append(bot ? pick(BOT_AGENTS) : pick(USER_AGENTS)).append('"')
+                    .toString();
+  }
+
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    final Options options = new Options();
+    options.addOption(option("output", "Log file to append to, - for standard output (default: -)"));
+    options.addOption(option("mode", "bulk (as fast as possible, synthetic time) or live (real time), default: bulk"));
+    options.addOption(option("lines", "Number of lines to generate, default: 1000000 in bulk mode, unlimited live"));
+    options.addOption(option("lines-per-second", "Lines per second, default: 100"));
+    options.addOption(option("start", "First time stamp in bulk mode, ISO format, default: now minus the duration"));
+    options.addOption(option("organizations", "Number of organizations, default: 1"));
+    options.addOption(option("episodes", "Number of episodes, Zipf distributed, default: 1000"));
+    options.addOption(option("viewers", "Number of distinct client addresses, default: 10000"));
+    options.addOption(option("viewer-distribution", "uniform or zipf, default: uniform"));
+    options.addOption(option("ipv6-ratio", "Share of IPv6 viewers, default: 0.2"));
+    options.addOption(option("channels", "Comma-separated publication channels, default: engage-player"));
+    options.addOption(option("bot-ratio", "Share of lines from bots, default: 0.05"));
+    options.addOption(option("noise-ratio", "Share of error, non-media and garbage lines, default: 0.1"));
+    options.addOption(option("seed", "Random seed, default: 42"));
+    options.addOption(Option.builder().longOpt("help").desc("Show this help").build());
+    final CommandLineParser parser = new DefaultParser();
+    final org.apache.commons.cli.CommandLine parsed;
+    try {
+      parsed = parser.parse(options, args);
+    } catch (final ParseException e) {
+      LOGGER.error("Error parsing command line options: {}", e.getMessage());
+      System.exit(ExitStatuses.INVALID_COMMAND_LINE_ARGS);
+      return;
+    }
+    if (parsed.hasOption("help")) {
+      new HelpFormatter().printHelp("LogGenerator", options);
+      return;
+    }
+    final boolean live = parsed.getOptionValue("mode", "bulk").equals("live");
+    final long lines = Long.parseLong(parsed.getOptionValue("lines", live ? "-1" : "1000000"));
+    final double linesPerSecond = Double.parseDouble(parsed.getOptionValue("lines-per-second", "100"));
+    final LogGenerator generator = new LogGenerator(new Settings(
+            Integer.parseInt(parsed.getOptionValue("organizations", "1")),
+            Integer.parseInt(parsed.getOptionValue("episodes", "1000")),
+            Integer.parseInt(parsed.getOptionValue("viewers", "10000")),
+            parsed.getOptionValue("viewer-distribution", "uniform").equals("zipf"),
+            Double.parseDouble(parsed.getOptionValue("ipv6-ratio", "0.2")),
+            Arrays.asList(parsed.getOptionValue("channels", "engage-player").split(",")),
+            Double.parseDouble(parsed.getOptionValue("bot-ratio", "0.05")),
+            Double.parseDouble(parsed.getOptionValue("noise-ratio", "0.1")),
+            Long.parseLong(parsed.getOptionValue("seed", "42"))));
+    final String output = parsed.getOptionValue("output", "-");
+    try (final Writer writer = output.equals("-")
+            ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                                                        StandardCharsets.UTF_8))
+            : Files.newBufferedWriter(Paths.get(output),
+                                      StandardCharsets.UTF_8,
+                                      StandardOpenOption.CREATE,
+                                      StandardOpenOption.APPEND)) {
+      final long start = System.nanoTime();
+      final long written = live
+              ? generator.writeLive(writer, lines, linesPerSecond)
+              : generator.writeBulk(writer,
+                                    lines,
+                                    linesPerSecond,
+                                    parsed.hasOption("start")
+                                            ? OffsetDateTime.parse(parsed.getOptionValue("start"))
+                                            : OffsetDateTime.now().minusSeconds((long) (lines / linesPerSecond)));
+      final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+      LOGGER.info("Wrote {} lines in {} s ({} lines/s)",
+                  written,
+                  String.format("%.1f", seconds),
+                  String.format("%.0f", written / seconds));
+    }
+  }
+
+  private static Option option(final String name, final String description) {
+    return Option.builder().longOpt(name).desc(description).hasArg(true).argName(name).build();
+  }
+
+  /**
+   * Write lines as fast as possible, with synthetic time stamps
+   *
+   * @return The number of lines written
+   */
+  public long writeBulk(
+          final Writer writer,
+          final long lines,
+          final double linesPerSecond,
+          final OffsetDateTime start) throws IOException {
+    final long nanosPerLine = (long) (TimeUnit.SECONDS.toNanos(1) / linesPerSecond);
+    for (long i = 0; i < lines; i++) {
+      writer.write(nextLine(start.plusNanos(i * nanosPerLine)));
+      writer.write('\n');
+    }
+    writer.flush();
+    return lines;
+  }
+
+  /**
+   * Append lines in real time, flushing every 100 ms, until <code>lines</code> lines are written (forever if
+   * negative)
+   *
+   * @return The number of lines written
+   */
+  public long writeLive(
+          final Writer writer,
+          final long lines,
+          final double linesPerSecond) throws IOException, InterruptedException {
+    final long start = System.nanoTime();
+    long written = 0;
+    while (lines < 0 || written < lines) {
+      final long elapsed = System.nanoTime() - start;
+      long due = (long) (elapsed / (double) TimeUnit.SECONDS.toNanos(1) * linesPerSecond);
+      if (lines >= 0)
+        due = Math.min(due, lines);
+      final OffsetDateTime now = OffsetDateTime.now();
+      while (written < due) {
+        writer.write(nextLine(now));
+        writer.write('\n');
+        written++;
+      }
+      writer.flush();
+      Thread.sleep(100);
+    }
+    return written;
+  }
+}
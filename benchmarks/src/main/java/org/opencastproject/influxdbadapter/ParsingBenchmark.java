@@ -0,0 +1,75 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of single log lines and request lines
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParsingBenchmark {
+  private static final Set<String> INVALID_AGENTS = Collections.singleton("bot");
+  private static final Set<String> VALID_EXTENSIONS = Collections.singleton(".mp4");
+  private static final Set<String> INVALID_PUBLICATIONS = Collections.singleton("internal");
+
+  private FilterCascade cascade;
+
+  @Setup
+  public void setup() {
+    this.cascade = new FilterCascade(LogFormat.COMBINED, INVALID_AGENTS, VALID_EXTENSIONS, INVALID_PUBLICATIONS);
+  }
+
+  @Benchmark
+  public Optional<RequestLine> parseRequestLine() {
+    return RequestLine.parseLine(SyntheticCorpus.REQUEST_LINE);
+  }
+
+  @Benchmark
+  public RawImpression cascadeValidLine() {
+    return this.cascade.apply(SyntheticCorpus.VALID_LINE);
+  }
+
+  @Benchmark
+  public RawImpression cascadeRejectedLine() {
+    return this.cascade.apply(SyntheticCorpus.NOT_FOUND_LINE);
+  }
+}
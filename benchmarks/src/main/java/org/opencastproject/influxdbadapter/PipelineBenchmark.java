@@ -0,0 +1,83 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+
+/**
+ * The whole pipeline of {@link Main}, from log lines to InfluxDB points, without Opencast and without writing
+ *
+ * <p>Throughput is reported in lines per second.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(PipelineBenchmark.LINES)
+public class PipelineBenchmark {
+  static final int LINES = 20_000;
+
+  @Param({ "PT5M", "PT2H" })
+  public String viewInterval;
+
+  private List<String> lines;
+  private ConfigFile configFile;
+  private OpencastClient ocClient;
+  private final LineProtocol encoder = new LineProtocol();
+  private final ByteBuilder buffer = new ByteBuilder(1024);
+
+  @Setup
+  public void setup() throws Exception {
+    this.lines = SyntheticCorpus.lines(LINES, 500, 5000);
+    this.configFile = SyntheticCorpus.configFile(this.viewInterval);
+    this.ocClient = new OpencastClient(null);
+  }
+
+  @Benchmark
+  public void processLines(final Blackhole bh) {
+    Main.impressions(this.configFile, this.ocClient, Flowable.fromIterable(this.lines))
+        .blockingSubscribe(impression -> {
+          this.buffer.clear();
+          this.encoder.encode(impression, this.buffer);
+          bh.consume(this.buffer.length());
+        });
+  }
+}
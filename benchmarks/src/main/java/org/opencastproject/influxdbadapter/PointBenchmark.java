@@ -0,0 +1,74 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.influxdb.dto.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of impressions into InfluxDB points and line protocol
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PointBenchmark {
+  private final Impression impression = new Impression("5a990722-6f18-4c69-ac84-4721934cb58b",
+                                                       "mh_default_org",
+                                                       "engage-player",
+                                                       "c5f2ac27-0da1-4d91-952c-771905058ef5",
+                                                       OffsetDateTime.of(2019, 2, 10, 3, 38, 22, 0, ZoneOffset.UTC));
+
+  @Benchmark
+  public Point toPoint() {
+    return this.impression.toPoint();
+  }
+
+  private final LineProtocol encoder = new LineProtocol();
+  private final ByteBuilder buffer = new ByteBuilder(1024);
+
+  @Benchmark
+  public String toLineProtocol() {
+    return this.impression.toPoint().lineProtocol();
+  }
+
+  @Benchmark
+  public int encodeDirectly() {
+    this.buffer.clear();
+    this.encoder.encode(this.impression, this.buffer);
+    return this.buffer.length();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deterministic synthetic log lines and configuration for the benchmarks
+ */
+final class SyntheticCorpus {
+  static final String VALID_LINE = "192.0.2.17 - - [10/Feb/2019:03:38:22 +0100] "
+          + "\"GET /mh_default_org/engage-player/5a990722-6f18-4c69-ac84-4721934cb58b/"
+          + "c5f2ac27-0da1-4d91-952c-771905058ef5/presenter.mp4 HTTP/1.1\" 200 123456 \"-\" "
+          + "\"Mozilla/5.0 (X11; Linux x86_64; rv:66.0) Gecko/20100101 Firefox/66.0\"";
+
+  static final String NOT_FOUND_LINE = VALID_LINE.replace("\" 200 ", "\" 404 ");
+
+  static final String REQUEST_LINE = "GET /mh_default_org/engage-player/5a990722-6f18-4c69-ac84-4721934cb58b/"
+          + "c5f2ac27-0da1-4d91-952c-771905058ef5/presenter.mp4 HTTP/1.1";
+
+  private SyntheticCorpus() {
+  }
+
+  /**
+   * Generate log lines, one per second, spread over a fixed set of episodes and viewers
+   *
+   * <p>See {@link LogGenerator} for the distributions; one in twenty lines is a bot, one in ten is noise.</p>
+   *
+   * @param count    Number of lines
+   * @param episodes Number of distinct episodes
+   * @param viewers  Number of distinct client addresses
+   * @return The lines, in time stamp order
+   */
+  static List<String> lines(final int count, final int episodes, final int viewers) {
+    final LogGenerator generator = new LogGenerator(new LogGenerator.Settings(1,
+                                                                              episodes,
+                                                                              viewers,
+                                                                              false,
+                                                                              0.25,
+                                                                              Collections.singletonList("engage-player"),
+                                                                              0.05,
+                                                                              0.1,
+                                                                              42));
+    final OffsetDateTime start = OffsetDateTime.of(2019, 2, 10, 0, 0, 0, 0, ZoneOffset.ofHours(1));
+    final List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(generator.nextLine(start.plusSeconds(i)));
+    }
+    return result;
+  }
+
+  /**
+   * Write a configuration file without Opencast, so no HTTP requests are made
+   *
+   * @param viewInterval The sliding window interval, as an ISO duration
+   * @return The parsed configuration
+   */
+  static ConfigFile configFile(final String viewInterval) throws IOException {
+    final Path p = Files.createTempFile("opencast-influxdb-adapter-benchmark", ".properties");
+    p.toFile().deleteOnExit();
+    Files.write(p,
+                String.join("\n",
+                            "influxdb.uri=http://localhost:8086",
+                            "influxdb.user=root",
+                            "influxdb.password=root",
+                            "influxdb.db-name=opencast",
+                            "log-file=/dev/null",
+                            "adapter.view-interval-iso-duration=" + viewInterval,
+                            "adapter.invalid-user-agents=bot,spider,curl",
+                            "adapter.valid-file-extensions=.mp4",
+                            "adapter.invalid-publication-channels=internal").getBytes(StandardCharsets.UTF_8));
+    return ConfigFile.readFile(p);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single update of the sliding window, for different numbers of impressions already in the window
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowBenchmark {
+  private static final Duration VIEW_INTERVAL = Duration.ofHours(2);
+  private static final OffsetDateTime START = OffsetDateTime.of(2019, 2, 10, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @Param({ "100", "10000", "100000" })
+  public int windowSize;
+
+  private Window window;
+  private final List<RawImpression> evictions = new ArrayList<>();
+  private RawImpression knownImpression;
+
+  @Setup
+  public void setup() {
+    final LogLine line = new LogLine(SyntheticCorpus.VALID_LINE,
+                                     new ClientAddress(0, 0),
+                                     START,
+                                     SyntheticCorpus.REQUEST_LINE,
+                                     200,
+                                     null,
+                                     null,
+                                     "",
+                                     RequestLine.parseLine(SyntheticCorpus.REQUEST_LINE));
+    this.window = new Window(VIEW_INTERVAL, Duration.ZERO);
+    for (int i = 0; i < this.windowSize; i++)
+      this.window.advance(impression(line, i, i % 3600), null, this.evictions);
+    this.knownImpression = impression(line, 0, 3600);
+  }
+
+  private static RawImpression impression(final LogLine line, final int viewer, final int second) {
+    return new RawImpression(line,
+                             "episode" + viewer % 100,
+                             "mh_default_org",
+                             "engage-player",
+                             START.plusSeconds(second),
+                             new ClientAddress(0, viewer));
+  }
+
+  @Benchmark
+  public int updateImpressionInPlace() {
+    this.window.advance(this.knownImpression, null, this.evictions);
+    return this.evictions.size();
+  }
+
+  @Benchmark
+  public Optional<ClientAddress> parseClientAddress() {
+    return ClientAddress.parse("2001:db8:85a3::8a2e:370:7334");
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Something that aggregates impressions in the adapter and writes the result periodically, such as {@link Rollups}
+ * (thread-safe)
+ */
+public interface Aggregator {
+  /**
+   * Take an impression into account
+   *
+   * @param impression The impression
+   */
+  void add(Impression impression);
+
+  /**
+   * Take the points to write since the last flush
+   *
+   * @param now The current time
+   * @return The points to write, possibly none
+   */
+  List<? extends DataPoint> flush(Instant now);
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array meant to be reused, the byte equivalent of a <code>StringBuilder</code> (not thread-safe)
+ */
+public final class ByteBuilder {
+  private byte[] bytes;
+  private int length;
+
+  public ByteBuilder(final int initialCapacity) {
+    this.bytes = new byte[initialCapacity];
+  }
+
+  /**
+   * @return The underlying array; only the first {@link #length()} bytes are valid
+   */
+  public byte[] array() {
+    return this.bytes;
+  }
+
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * Forget the content, but keep the memory
+   */
+  public void clear() {
+    this.length = 0;
+  }
+
+  /**
+   * Make room for at least <code>additional</code> more bytes
+   *
+   * @param additional The number of bytes that will be written
+   */
+  public void ensureAvailable(final int additional) {
+    if (this.length + additional > this.bytes.length)
+      this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + additional));
+  }
+
+  /**
+   * Tell the builder that <code>count</code> bytes were written directly into {@link #array()}
+   *
+   * @param count The number of bytes written after the current end
+   */
+  public void advance(final int count) {
+    this.length += count;
+  }
+
+  public ByteBuilder append(final byte b) {
+    ensureAvailable(1);
+    this.bytes[this.length++] = b;
+    return this;
+  }
+
+  public ByteBuilder append(final byte[] b) {
+    return append(b, 0, b.length);
+  }
+
+  public ByteBuilder append(final byte[] b, final int offset, final int count) {
+    ensureAvailable(count);
+    System.arraycopy(b, offset, this.bytes, this.length, count);
+    this.length += count;
+    return this;
+  }
+
+  /**
+   * Append the decimal representation of a number, like <code>Long.toString</code> would, without creating a string
+   *
+   * @param value The number to append
+   * @return This builder
+   */
+  public ByteBuilder appendDecimal(final long value) {
+    if (value == Long.MIN_VALUE)
+      return append(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    long rest = Math.abs(value);
+    int digits = 1;
+    for (long limit = 10; digits < 19 && rest >= limit; limit *= 10)
+      digits++;
+    final int sign = value < 0 ? 1 : 0;
+    ensureAvailable(sign + digits);
+    if (sign == 1)
+      this.bytes[this.length] = '-';
+    for (int i = this.length + sign + digits - 1; i >= this.length + sign; i--) {
+      this.bytes[i] = (byte) ('0' + rest % 10);
+      rest /= 10;
+    }
+    this.length += sign + digits;
+    return this;
+  }
+}
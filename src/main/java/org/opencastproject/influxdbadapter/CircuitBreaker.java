@@ -0,0 +1,98 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Suspends requests to a service after a number of failures in a row (thread-safe)
+ *
+ * <p>
+ * While closed, every request is allowed. After <code>failureThreshold</code> failures in a row, the breaker opens and
+ * rejects requests for <code>openDuration</code>. Then it lets a single trial request through: if it succeeds, the
+ * breaker closes again, otherwise it stays open for another <code>openDuration</code>.
+ * </p>
+ */
+public final class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openNanos;
+  private final LongSupplier nanoTime;
+  private int failures;
+  private long openUntil;
+  private boolean open;
+  private boolean trialRunning;
+
+  /**
+   * @param failureThreshold Number of failures in a row that open the breaker
+   * @param openDuration     How long the breaker stays open
+   * @param nanoTime         The clock, usually <code>System::nanoTime</code>
+   */
+  public CircuitBreaker(final int failureThreshold, final Duration openDuration, final LongSupplier nanoTime) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Ask for permission to make a request, which has to be followed by {@link #recordSuccess()} or
+   * {@link #recordFailure()} if granted
+   *
+   * @return Whether the request may be made
+   */
+  public synchronized boolean allowRequest() {
+    if (!this.open)
+      return true;
+    if (this.trialRunning || this.nanoTime.getAsLong() - this.openUntil < 0)
+      return false;
+    this.trialRunning = true;
+    return true;
+  }
+
+  /**
+   * Record a successful request, which closes the breaker
+   */
+  public synchronized void recordSuccess() {
+    this.failures = 0;
+    this.trialRunning = false;
+    this.open = false;
+  }
+
+  /**
+   * Record a failed request, which opens the breaker if it was the last straw (or the trial request)
+   */
+  public synchronized void recordFailure() {
+    this.failures++;
+    if (this.trialRunning || this.failures >= this.failureThreshold) {
+      this.trialRunning = false;
+      this.open = true;
+      this.openUntil = this.nanoTime.getAsLong() + this.openNanos;
+    }
+  }
+
+  /**
+   * @return Whether requests are currently suspended
+   */
+  public synchronized boolean isOpen() {
+    return this.open;
+  }
+}
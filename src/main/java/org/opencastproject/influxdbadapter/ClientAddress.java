@@ -0,0 +1,278 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.Optional;
+
+/**
+ * A client's IP address, packed into 128 bits (immutable)
+ *
+ * <p>
+ * IPv4 addresses are stored as IPv4-mapped IPv6 addresses (<code>::ffff:a.b.c.d</code>), so an IPv4 address and its
+ * mapped IPv6 form compare equal. The address is parsed directly from the log line into two <code>long</code>s, which
+ * makes it a cheap key for the sliding window (see {@link RawImpression}).
+ * </p>
+ *
+ * <p>To parse an address, see <code>parse</code></p>
+ */
+public final class ClientAddress {
+  private static final long IPV4_MAPPED_PREFIX = 0xffffL;
+  private static final int IPV6_GROUPS = 8;
+
+  private final long high;
+  private final long low;
+
+  public ClientAddress(final long high, final long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /**
+   * Parse an IPv4 or IPv6 address in textual form
+   *
+   * @param s The address, for example <code>192.168.0.1</code>, <code>2001:db8::1</code> or
+   *          <code>::ffff:192.168.0.1</code>
+   * @return <code>of(address)</code> if the address was parsed successfully, else <code>empty()</code>
+   */
+  public static Optional<ClientAddress> parse(final CharSequence s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) == ':')
+        return parseIPv6(s);
+    }
+    final long ipv4 = parseIPv4(s, 0, s.length());
+    if (ipv4 < 0)
+      return Optional.empty();
+    return Optional.of(new ClientAddress(0, IPV4_MAPPED_PREFIX << 32 | ipv4));
+  }
+
+  /**
+   * Parse a dotted IPv4 address
+   *
+   * @return The address as an unsigned 32 bit number, or <code>-1</code> if it couldn't be parsed
+   */
+  private static long parseIPv4(final CharSequence s, final int start, final int end) {
+    long result = 0;
+    int octets = 0;
+    int i = start;
+    while (i < end) {
+      int value = 0;
+      int digits = 0;
+      while (i < end && digits <= 3) {
+        final char c = s.charAt(i);
+        if (c < '0' || c > '9')
+          break;
+        value = value * 10 + (c - '0');
+        digits++;
+        i++;
+      }
+      if (digits == 0 || digits > 3 || value > 255)
+        return -1;
+      result = result << 8 | value;
+      octets++;
+      if (i == end)
+        break;
+      if (s.charAt(i) != '.' || octets == 4)
+        return -1;
+      i++;
+      if (i == end)
+        return -1;
+    }
+    return octets == 4 ? result : -1;
+  }
+
+  private static Optional<ClientAddress> parseIPv6(final CharSequence s) {
+    final int length = s.length();
+    // Groups before "::" go to the head, groups after it to the tail
+    long headHigh = 0;
+    long headLow = 0;
+    int headGroups = 0;
+    long tailHigh = 0;
+    long tailLow = 0;
+    int tailGroups = 0;
+    boolean compressed = false;
+    int i = 0;
+    if (length >= 2 && s.charAt(0) == ':' && s.charAt(1) == ':') {
+      compressed = true;
+      i = 2;
+    } else if (length >= 1 && s.charAt(0) == ':') {
+      return Optional.empty();
+    }
+    while (i < length) {
+      final int groupStart = i;
+      int value = 0;
+      int digits = 0;
+      while (i < length && digits <= 4) {
+        final int digit = Character.digit(s.charAt(i), 16);
+        if (digit < 0)
+          break;
+        value = value << 4 | digit;
+        digits++;
+        i++;
+      }
+      final int groupCount;
+      final long groupBits;
+      if (i < length && s.charAt(i) == '.') {
+        // An embedded IPv4 address has to be the last part of the address and counts as two groups
+        groupBits = parseIPv4(s, groupStart, length);
+        if (groupBits < 0)
+          return Optional.empty();
+        groupCount = 2;
+        i = length;
+      } else {
+        if (digits == 0 || digits > 4)
+          return Optional.empty();
+        groupBits = value;
+        groupCount = 1;
+      }
+      if (headGroups + tailGroups + groupCount > IPV6_GROUPS)
+        return Optional.empty();
+      final int shift = 16 * groupCount;
+      if (compressed) {
+        tailHigh = tailHigh << shift | tailLow >>> (64 - shift);
+        tailLow = tailLow << shift | groupBits;
+        tailGroups += groupCount;
+      } else {
+        headHigh = headHigh << shift | headLow >>> (64 - shift);
+        headLow = headLow << shift | groupBits;
+        headGroups += groupCount;
+      }
+      if (i == length)
+        break;
+      if (s.charAt(i) != ':')
+        return Optional.empty();
+      i++;
+      if (i < length && s.charAt(i) == ':') {
+        if (compressed)
+          return Optional.empty();
+        compressed = true;
+        i++;
+      } else if (i == length) {
+        return Optional.empty();
+      }
+    }
+    final int groups = headGroups + tailGroups;
+    if (compressed ? groups >= IPV6_GROUPS : groups != IPV6_GROUPS)
+      return Optional.empty();
+    // Move the head groups to the most significant bits, the tail stays where it is
+    final int shift = 16 * (IPV6_GROUPS - headGroups);
+    final long high;
+    final long low;
+    if (shift == 0) {
+      high = headHigh;
+      low = headLow;
+    } else if (shift >= 128) {
+      high = 0;
+      low = 0;
+    } else if (shift >= 64) {
+      high = headLow << (shift - 64);
+      low = 0;
+    } else {
+      high = headHigh << shift | headLow >>> (64 - shift);
+      low = headLow << shift;
+    }
+    return Optional.of(new ClientAddress(high | tailHigh, low | tailLow));
+  }
+
+  /**
+   * Check if this is an IPv4 address (which is stored in its IPv4-mapped IPv6 form)
+   *
+   * @return <code>true</code> if it's an IPv4 address
+   */
+  public boolean isIPv4() {
+    return this.high == 0 && this.low >>> 32 == IPV4_MAPPED_PREFIX;
+  }
+
+  /**
+   * @return The most significant 64 bits of the address
+   */
+  public long getHigh() {
+    return this.high;
+  }
+
+  /**
+   * @return The least significant 64 bits of the address
+   */
+  public long getLow() {
+    return this.low;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    final ClientAddress that = (ClientAddress) o;
+    return this.high == that.high && this.low == that.low;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(this.high) + Long.hashCode(this.low);
+  }
+
+  @Override
+  public String toString() {
+    if (isIPv4()) {
+      return String.format("%d.%d.%d.%d",
+                           this.low >>> 24 & 0xff,
+                           this.low >>> 16 & 0xff,
+                           this.low >>> 8 & 0xff,
+                           this.low & 0xff);
+    }
+    // Find the longest run of zero groups to compress as "::"
+    int bestStart = -1;
+    int bestLength = 1;
+    int runStart = -1;
+    for (int i = 0; i <= IPV6_GROUPS; i++) {
+      if (i < IPV6_GROUPS && group(i) == 0) {
+        if (runStart < 0)
+          runStart = i;
+      } else if (runStart >= 0) {
+        if (i - runStart > bestLength) {
+          bestStart = runStart;
+          bestLength = i - runStart;
+        }
+        runStart = -1;
+      }
+    }
+    final StringBuilder result = new StringBuilder(39);
+    int i = 0;
+    while (i < IPV6_GROUPS) {
+      if (i == bestStart) {
+        result.append("::");
+        i += bestLength;
+        continue;
+      }
+      if (result.length() > 0 && result.charAt(result.length() - 1) != ':')
+        result.append(':');
+      result.append(Integer.toHexString(group(i)));
+      i++;
+    }
+    return result.toString();
+  }
+
+  private int group(final int i) {
+    final long half = i < 4 ? this.high : this.low;
+    return (int) (half >>> (16 * (3 - i % 4)) & 0xffff);
+  }
+}
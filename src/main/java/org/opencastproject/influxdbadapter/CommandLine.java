@@ -30,6 +30,8 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Represents all options that can be passed via the command line (immutable)
@@ -42,13 +44,22 @@ public final class CommandLine {
   // Constants for the options so we don't repeat ourselves
   private static final String CONFIG_FILE = "config-file";
   private static final String FROM_BEGINNING = "from-beginning";
+  private static final String EXPORT = "export";
 
   private final Path configFile;
   private final boolean fromBeginning;
+  private final Path exportFile;
+  private final List<Path> logFiles;
 
-  private CommandLine(final Path configFile, final boolean fromBeginning) {
+  private CommandLine(
+          final Path configFile,
+          final boolean fromBeginning,
+          final Path exportFile,
+          final List<Path> logFiles) {
     this.configFile = configFile;
     this.fromBeginning = fromBeginning;
+    this.exportFile = exportFile;
+    this.logFiles = logFiles;
   }
 
   public static CommandLine parse(final String[] args) {
@@ -66,6 +77,14 @@ public final class CommandLine {
                               .hasArg(true)
                               .argName("config-file")
                               .build());
+    options.addOption(Option
+                              .builder()
+                              .longOpt(EXPORT)
+                              .desc("Process the log files given after the options (or the configured one) as fast as "
+                                            + "possible, and write the points to this file, instead of tailing the log")
+                              .hasArg(true)
+                              .argName("file.lp.gz")
+                              .build());
     final CommandLineParser parser = new DefaultParser();
     org.apache.commons.cli.CommandLine parsed = null;
     try {
@@ -76,7 +95,9 @@ public final class CommandLine {
     }
     return new CommandLine(
             Paths.get(parsed.getOptionValue(CONFIG_FILE, "/etc/opencast-influxdb-adapter.properties")),
-            parsed.hasOption(FROM_BEGINNING));
+            parsed.hasOption(FROM_BEGINNING),
+            parsed.hasOption(EXPORT) ? Paths.get(parsed.getOptionValue(EXPORT)) : null,
+            parsed.getArgList().stream().map(Paths::get).collect(Collectors.toList()));
   }
 
   public boolean isFromBeginning() {
@@ -86,4 +107,18 @@ public final class CommandLine {
   public Path getConfigFile() {
     return this.configFile;
   }
+
+  /**
+   * @return The file to export the points to, or <code>null</code> if the adapter should tail the log
+   */
+  public Path getExportFile() {
+    return this.exportFile;
+  }
+
+  /**
+   * @return The log files to export, in order; empty for the configured one
+   */
+  public List<Path> getLogFiles() {
+    return this.logFiles;
+  }
 }
@@ -26,11 +26,18 @@ import org.slf4j.LoggerFactory;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -51,44 +58,145 @@ public final class ConfigFile {
   private static final String INFLUXDB_PASSWORD = "influxdb.password";
   private static final String INFLUXDB_RETENTION_POLICY = "influxdb.retention-policy";
   private static final String INFLUXDB_LOG_LEVEL = "influxdb.log-level";
+  private static final String INFLUXDB_AGGREGATE_RETENTION_POLICY = "influxdb.aggregate-retention-policy";
+  private static final String FILE_DIRECTORY = "file.directory";
+  private static final String FILE_ROLL_SIZE = "file.roll-size";
+  private static final String FILE_COMPRESS = "file.compress";
+  private static final String FILE_DATABASE = "file.database";
+  // Per sink options, prefixed with the sink's name
+  private static final String SINK_QUEUE_SIZE = ".queue-size";
+  private static final String SINK_BATCH_SIZE = ".batch-size";
+  private static final String SINK_FLUSH_INTERVAL = ".flush-interval";
+  private static final String SINK_SPOOL_DIRECTORY = ".spool-directory";
   private static final String OPENCAST_URI = "opencast.external-api.uri";
   private static final String OPENCAST_USER = "opencast.external-api.user";
   private static final String OPENCAST_PASSWORD = "opencast.external-api.password";
   private static final String OPENCAST_EXPIRATION_DURATION = "opencast.external-api.cache-expiration-duration";
   private static final String OPENCAST_SERIES_ARE_OPTIONAL = "opencast.series-are-optional";
+  private static final String OPENCAST_CONNECT_TIMEOUT = "opencast.external-api.connect-timeout-iso-duration";
+  private static final String OPENCAST_READ_TIMEOUT = "opencast.external-api.read-timeout-iso-duration";
+  private static final String OPENCAST_MAX_IDLE_CONNECTIONS = "opencast.external-api.max-idle-connections";
+  private static final String OPENCAST_KEEP_ALIVE = "opencast.external-api.keep-alive-iso-duration";
+  private static final String OPENCAST_MAX_REQUESTS = "opencast.external-api.max-requests";
+  private static final String OPENCAST_MAX_REQUESTS_PER_HOST = "opencast.external-api.max-requests-per-host";
+  private static final String OPENCAST_HTTP2 = "opencast.external-api.http2";
+  private static final String OPENCAST_REQUESTS_PER_SECOND = "opencast.external-api.requests-per-second";
+  private static final String OPENCAST_REQUESTS_PER_SECOND_PER_ORGANIZATION
+          = "opencast.external-api.requests-per-second-per-organization";
+  private static final String OPENCAST_MAX_RETRIES = "opencast.external-api.max-retries";
+  private static final String OPENCAST_RETRY_BACKOFF = "opencast.external-api.retry-backoff-iso-duration";
+  private static final String OPENCAST_MAX_RETRY_BACKOFF = "opencast.external-api.max-retry-backoff-iso-duration";
+  private static final String OPENCAST_CIRCUIT_BREAKER_FAILURES = "opencast.external-api.circuit-breaker-failures";
+  private static final String OPENCAST_CIRCUIT_BREAKER_OPEN = "opencast.external-api.circuit-breaker-open-iso-duration";
+  private static final String OPENCAST_FALLBACK = "opencast.external-api.fallback";
   private static final String LOG_FILE = "log-file";
   private static final String ADAPTER_LOG_CONFIGURATION_FILE = "adapter.log-configuration-file";
   private static final String ADAPTER_VIEW_INTERVAL = "adapter.view-interval-iso-duration";
+  private static final String ADAPTER_ALLOWED_LATENESS = "adapter.allowed-lateness-iso-duration";
   private static final String ADAPTER_INVALID_USER_AGENTS = "adapter.invalid-user-agents";
   private static final String ADAPTER_VALID_FILE_EXTENSIONS = "adapter.valid-file-extensions";
   private static final String ADAPTER_INVALID_PUBLICATION_CHANNELS = "adapter.invalid-publication-channels";
+  private static final String ADAPTER_METRICS_PORT = "adapter.metrics-port";
+  private static final String ADAPTER_METRICS_BIND_ADDRESS = "adapter.metrics-bind-address";
+  private static final String ADAPTER_LOG_FORMAT = "adapter.log-format";
+  private static final String ADAPTER_LOG_FORMAT_JSON_FIELDS = "adapter.log-format.json-fields";
+  private static final String ADAPTER_LISTEN_PORT = "adapter.listen-port";
+  private static final String ADAPTER_LISTEN_BIND_ADDRESS = "adapter.listen-bind-address";
+  private static final String ADAPTER_SINKS = "adapter.sinks";
+  private static final String ADAPTER_INGEST_QUEUE_SIZE = "adapter.ingest-queue-size";
+  private static final String ADAPTER_ENRICHMENT_QUEUE_SIZE = "adapter.enrichment-queue-size";
+  private static final String ADAPTER_AGGREGATION_QUEUE_SIZE = "adapter.aggregation-queue-size";
+  private static final String ADAPTER_SHUTDOWN_TIMEOUT = "adapter.shutdown-timeout-iso-duration";
+  private static final String ADAPTER_ROLLUPS = "adapter.rollups";
+  private static final String ADAPTER_UNIQUE_VIEWERS = "adapter.unique-viewers";
+  private static final String ADAPTER_TOP_EPISODES = "adapter.top-episodes";
+  private static final String ADAPTER_ROLLUP_FLUSH_INTERVAL = "adapter.rollup-flush-interval-iso-duration";
+  private static final String ADAPTER_LAG_ALERT_THRESHOLD = "adapter.lag-alert-threshold-iso-duration";
+  private static final String ADAPTER_PARTITION_MEMBERS = "adapter.partition.members";
+  private static final String ADAPTER_PARTITION_MEMBER = "adapter.partition.member";
+
+  private static final Set<String> HTTP2 = new HashSet<>(Arrays.asList(HttpClientProfile.HTTP2_AUTO,
+                                                                       HttpClientProfile.HTTP2_OFF,
+                                                                       HttpClientProfile.HTTP2_PRIOR_KNOWLEDGE));
+  private static final Set<String> FALLBACKS = new HashSet<>(Arrays.asList(OpencastFailurePolicy.FALLBACK_EMPTY_SERIES,
+                                                                           OpencastFailurePolicy.FALLBACK_DROP));
+  private static final Set<String> SINKS = new HashSet<>(Arrays.asList("influxdb", "file", "stdout"));
+  private static final Set<String> ROLLUPS = new HashSet<>(Arrays.asList(Rollups.HOURLY, Rollups.DAILY));
 
   private final InfluxDBConfig influxDBConfig;
   private final OpencastConfig opencastConfig;
   private final Path logFile;
+  private final LogFormat logFormat;
   private final Duration viewInterval;
+  private final Duration allowedLateness;
   private final Path logConfigurationFile;
   private final Set<String> invalidUserAgents;
   private final Set<String> validFileExtensions;
   private final Set<String> invalidPublicationChannels;
+  private final InetSocketAddress metricsAddress;
+  private final InetSocketAddress listenAddress;
+  private final List<SinkConfig> sinkConfigs;
+  private final FileSinkConfig fileSinkConfig;
+  private final int ingestQueueSize;
+  private final int enrichmentQueueSize;
+  private final int aggregationQueueSize;
+  private final Duration shutdownTimeout;
+  private final List<String> rollups;
+  private final List<String> uniqueViewers;
+  private final int topEpisodes;
+  private final Duration rollupFlushInterval;
+  private final Duration lagAlertThreshold;
+  private final Partition partition;
 
   private ConfigFile(
           final InfluxDBConfig influxDBConfig,
           final OpencastConfig opencastConfig,
           final Path logFile,
+          final LogFormat logFormat,
           final Duration viewInterval,
+          final Duration allowedLateness,
           final Path logConfigurationFile,
           final Set<String> invalidUserAgents,
           final Set<String> validFileExtensions,
-          final Set<String> invalidPublicationChannels) {
+          final Set<String> invalidPublicationChannels,
+          final InetSocketAddress metricsAddress,
+          final InetSocketAddress listenAddress,
+          final List<SinkConfig> sinkConfigs,
+          final FileSinkConfig fileSinkConfig,
+          final int ingestQueueSize,
+          final int enrichmentQueueSize,
+          final int aggregationQueueSize,
+          final Duration shutdownTimeout,
+          final List<String> rollups,
+          final List<String> uniqueViewers,
+          final int topEpisodes,
+          final Duration rollupFlushInterval,
+          final Duration lagAlertThreshold,
+          final Partition partition) {
     this.influxDBConfig = influxDBConfig;
     this.opencastConfig = opencastConfig;
     this.logFile = logFile;
+    this.logFormat = logFormat;
     this.viewInterval = viewInterval;
+    this.allowedLateness = allowedLateness;
     this.logConfigurationFile = logConfigurationFile;
     this.invalidUserAgents = invalidUserAgents;
     this.validFileExtensions = validFileExtensions;
     this.invalidPublicationChannels = invalidPublicationChannels;
+    this.metricsAddress = metricsAddress;
+    this.listenAddress = listenAddress;
+    this.sinkConfigs = sinkConfigs;
+    this.fileSinkConfig = fileSinkConfig;
+    this.ingestQueueSize = ingestQueueSize;
+    this.enrichmentQueueSize = enrichmentQueueSize;
+    this.aggregationQueueSize = aggregationQueueSize;
+    this.shutdownTimeout = shutdownTimeout;
+    this.rollups = rollups;
+    this.uniqueViewers = uniqueViewers;
+    this.topEpisodes = topEpisodes;
+    this.rollupFlushInterval = rollupFlushInterval;
+    this.lagAlertThreshold = lagAlertThreshold;
+    this.partition = partition;
   }
 
   private static Set<String> propertySet(final String propertyName, final Properties properties) {
@@ -98,6 +206,132 @@ public final class ConfigFile {
             Pattern.compile(",").splitAsStream(invalidUserAgentsStr).map(String::trim).collect(Collectors.toSet());
   }
 
+  private static long positiveLong(
+          final Path p,
+          final Properties properties,
+          final String propertyName,
+          final long defaultValue) {
+    final String value = properties.getProperty(propertyName);
+    if (value == null)
+      return defaultValue;
+    try {
+      final long result = Long.parseLong(value.trim());
+      if (result > 0)
+        return result;
+    } catch (final NumberFormatException e) {
+      // Handled below
+    }
+    LOGGER.error("Error parsing config file \"{}\": {} must be a positive integer", p, propertyName);
+    System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    return defaultValue;
+  }
+
+  private static int positiveInt(
+          final Path p,
+          final Properties properties,
+          final String propertyName,
+          final int defaultValue) {
+    final long result = positiveLong(p, properties, propertyName, defaultValue);
+    if (result > Integer.MAX_VALUE) {
+      LOGGER.error("Error parsing config file \"{}\": {} is too large", p, propertyName);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return (int) result;
+  }
+
+  private static int nonNegativeInt(
+          final Path p,
+          final Properties properties,
+          final String propertyName,
+          final int defaultValue) {
+    final String value = properties.getProperty(propertyName);
+    if (value == null)
+      return defaultValue;
+    try {
+      final int result = Integer.parseInt(value.trim());
+      if (result >= 0)
+        return result;
+    } catch (final NumberFormatException e) {
+      // Handled below
+    }
+    LOGGER.error("Error parsing config file \"{}\": {} must be a non-negative integer", p, propertyName);
+    System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    return defaultValue;
+  }
+
+  private static double nonNegativeRate(
+          final Path p,
+          final Properties properties,
+          final String propertyName) {
+    final String value = properties.getProperty(propertyName);
+    if (value == null)
+      return 0;
+    try {
+      final double result = Double.parseDouble(value.trim());
+      // Slower than one request every 1000 seconds doesn't make sense
+      if (result == 0 || result >= 0.001 && result <= 1_000_000_000)
+        return result;
+    } catch (final NumberFormatException e) {
+      // Handled below
+    }
+    LOGGER.error("Error parsing config file \"{}\": {} must be a number of requests per second, 0 meaning no limit",
+                 p,
+                 propertyName);
+    System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    return 0;
+  }
+
+  private static Duration nonNegativeDuration(
+          final Path p,
+          final Properties properties,
+          final String propertyName,
+          final String defaultValue) {
+    try {
+      final Duration result = Duration.parse(properties.getProperty(propertyName, defaultValue));
+      if (!result.isNegative())
+        return result;
+    } catch (final DateTimeParseException e) {
+      // Handled below
+    }
+    LOGGER.error("Error parsing config file \"{}\": {} must be a positive ISO duration value such as \"PT5M\"",
+                 p,
+                 propertyName);
+    System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    return Duration.parse(defaultValue);
+  }
+
+  private static SinkConfig sinkConfig(
+          final Path p,
+          final Properties properties,
+          final String name,
+          final String defaultSpoolDirectory) {
+    final String spoolDirectory = properties.getProperty(name + SINK_SPOOL_DIRECTORY, defaultSpoolDirectory);
+    return new SinkConfig(name,
+                          positiveInt(p, properties, name + SINK_QUEUE_SIZE, 10_000),
+                          positiveInt(p, properties, name + SINK_BATCH_SIZE, 5_000),
+                          nonNegativeDuration(p, properties, name + SINK_FLUSH_INTERVAL, "PT1S"),
+                          spoolDirectory != null ? Paths.get(spoolDirectory) : null);
+  }
+
+  private static FileSinkConfig fileSinkConfig(final Path p, final Properties properties) {
+    final String directory = properties.getProperty(FILE_DIRECTORY);
+    if (directory == null || directory.isEmpty()) {
+      LOGGER.error("Error parsing config file \"{}\": {} is needed for the file sink", p, FILE_DIRECTORY);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    final String compress = properties.getProperty(FILE_COMPRESS, "true");
+    if (!compress.equals("true") && !compress.equals("false")) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be either \"true\" or \"false\" (default is true)",
+                   p,
+                   FILE_COMPRESS);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return new FileSinkConfig(Paths.get(directory),
+                              positiveLong(p, properties, FILE_ROLL_SIZE, 100L * 1024 * 1024),
+                              compress.equals("true"),
+                              properties.getProperty(FILE_DATABASE));
+  }
+
   public static ConfigFile readFile(final Path p) {
     final Properties parsed = new Properties();
     try (final FileReader reader = new FileReader(p.toFile())) {
@@ -109,14 +343,43 @@ public final class ConfigFile {
       LOGGER.error("Error parsing config file \"{}\": {}", p, e.getMessage());
       System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
     }
-    final String influxDbUser = parsed.getProperty(INFLUXDB_USER);
-    if (influxDbUser.isEmpty()) {
-      LOGGER.error("Error parsing config file \"{}\": {} cannot be empty", p, INFLUXDB_USER);
+    final List<String> sinks = Pattern.compile(",")
+            .splitAsStream(parsed.getProperty(ADAPTER_SINKS, "influxdb"))
+            .map(String::trim)
+            .distinct()
+            .collect(Collectors.toList());
+    if (sinks.isEmpty() || !SINKS.containsAll(sinks)) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be a list of sinks out of {}", p, ADAPTER_SINKS, SINKS);
       System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
     }
+    final String influxDbUser = parsed.getProperty(INFLUXDB_USER);
     final String influxDbDbName = parsed.getProperty(INFLUXDB_DB_NAME);
-    if (influxDbDbName.isEmpty()) {
-      LOGGER.error("Error parsing config file \"{}\": {} cannot be empty", p, INFLUXDB_DB_NAME);
+    if (sinks.contains("influxdb")) {
+      if (influxDbUser == null || influxDbUser.isEmpty()) {
+        LOGGER.error("Error parsing config file \"{}\": {} cannot be empty", p, INFLUXDB_USER);
+        System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+      }
+      if (influxDbDbName == null || influxDbDbName.isEmpty()) {
+        LOGGER.error("Error parsing config file \"{}\": {} cannot be empty", p, INFLUXDB_DB_NAME);
+        System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+      }
+    }
+    final List<SinkConfig> sinkConfigs = new ArrayList<>();
+    for (final String sink : sinks) {
+      // Only InfluxDB can be unavailable for a long time, so only it spools by default
+      sinkConfigs.add(sinkConfig(p,
+                                 parsed,
+                                 sink,
+                                 sink.equals("influxdb")
+                                         ? Paths.get(System.getProperty("java.io.tmpdir"),
+                                                     "opencast-influxdb-adapter-spool").toString()
+                                         : null));
+    }
+    final List<String> rollups = resolutions(p, parsed, ADAPTER_ROLLUPS);
+    final List<String> uniqueViewers = resolutions(p, parsed, ADAPTER_UNIQUE_VIEWERS);
+    final Duration rollupFlushInterval = nonNegativeDuration(p, parsed, ADAPTER_ROLLUP_FLUSH_INTERVAL, "PT1M");
+    if (rollupFlushInterval.isZero()) {
+      LOGGER.error("Error parsing config file \"{}\": {} cannot be zero", p, ADAPTER_ROLLUP_FLUSH_INTERVAL);
       System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
     }
     final String logConfigurationFile = parsed.getProperty(ADAPTER_LOG_CONFIGURATION_FILE);
@@ -163,22 +426,171 @@ public final class ConfigFile {
         System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
       }
     }
+    final String metricsPortStr = parsed.getProperty(ADAPTER_METRICS_PORT);
+    InetSocketAddress metricsAddress = null;
+    if (metricsPortStr != null) {
+      try {
+        metricsAddress = new InetSocketAddress(parsed.getProperty(ADAPTER_METRICS_BIND_ADDRESS, "127.0.0.1"),
+                                               Integer.parseInt(metricsPortStr));
+      } catch (final IllegalArgumentException e) {
+        LOGGER.error("Error parsing config file \"{}\": {} must be a port number", p, ADAPTER_METRICS_PORT);
+        System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+      }
+    }
+    final String listenPortStr = parsed.getProperty(ADAPTER_LISTEN_PORT);
+    InetSocketAddress listenAddress = null;
+    if (listenPortStr != null) {
+      try {
+        listenAddress = new InetSocketAddress(parsed.getProperty(ADAPTER_LISTEN_BIND_ADDRESS, "127.0.0.1"),
+                                              Integer.parseInt(listenPortStr));
+      } catch (final IllegalArgumentException e) {
+        LOGGER.error("Error parsing config file \"{}\": {} must be a port number", p, ADAPTER_LISTEN_PORT);
+        System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+      }
+    }
+    final String logFile = parsed.getProperty(LOG_FILE);
+    if (listenAddress == null && (logFile == null || logFile.isEmpty())) {
+      LOGGER.error("Error parsing config file \"{}\": {} is needed unless {} is set", p, LOG_FILE, ADAPTER_LISTEN_PORT);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
     final OpencastConfig opencastConfig = opencastHost != null && opencastUser != null && opencastPassword != null ?
-            new OpencastConfig(opencastHost, opencastUser, opencastPassword, opencastSeriesAreOptional, opencastCacheExpirationDuration) :
+            new OpencastConfig(opencastHost,
+                               opencastUser,
+                               opencastPassword,
+                               opencastSeriesAreOptional,
+                               opencastCacheExpirationDuration,
+                               httpClientProfile(p, parsed),
+                               opencastFailurePolicy(p, parsed)) :
             null;
     return new ConfigFile(new InfluxDBConfig(parsed.getProperty(INFLUXDB_URI),
                                              influxDbUser,
                                              parsed.getProperty(INFLUXDB_PASSWORD),
                                              influxDbDbName,
                                              parsed.getProperty(INFLUXDB_RETENTION_POLICY),
+                                             parsed.getProperty(INFLUXDB_AGGREGATE_RETENTION_POLICY),
                                              parsed.getProperty(INFLUXDB_LOG_LEVEL, "info")),
                           opencastConfig,
-                          Paths.get(parsed.getProperty(LOG_FILE)),
+                          logFile != null && !logFile.isEmpty() ? Paths.get(logFile) : null,
+                          logFormat(p, parsed),
                           viewDuration,
+                          nonNegativeDuration(p, parsed, ADAPTER_ALLOWED_LATENESS, "PT1M"),
                           logConfigurationFile != null ? Paths.get(logConfigurationFile) : null,
                           propertySet(ADAPTER_INVALID_USER_AGENTS, parsed),
                           propertySet(ADAPTER_VALID_FILE_EXTENSIONS, parsed),
-                          propertySet(ADAPTER_INVALID_PUBLICATION_CHANNELS, parsed));
+                          propertySet(ADAPTER_INVALID_PUBLICATION_CHANNELS, parsed),
+                          metricsAddress,
+                          listenAddress,
+                          sinkConfigs,
+                          sinks.contains("file") ? fileSinkConfig(p, parsed) : null,
+                          positiveInt(p, parsed, ADAPTER_INGEST_QUEUE_SIZE, 10_000),
+                          positiveInt(p, parsed, ADAPTER_ENRICHMENT_QUEUE_SIZE, 4096),
+                          positiveInt(p, parsed, ADAPTER_AGGREGATION_QUEUE_SIZE, 4096),
+                          nonNegativeDuration(p, parsed, ADAPTER_SHUTDOWN_TIMEOUT, "PT30S"),
+                          rollups,
+                          uniqueViewers,
+                          nonNegativeInt(p, parsed, ADAPTER_TOP_EPISODES, 0),
+                          rollupFlushInterval,
+                          nonNegativeDuration(p, parsed, ADAPTER_LAG_ALERT_THRESHOLD, "PT0S"),
+                          partition(p, parsed));
+  }
+
+  private static HttpClientProfile httpClientProfile(
+          final Path p,
+          final Properties parsed) {
+    final String http2 = parsed.getProperty(OPENCAST_HTTP2, HttpClientProfile.HTTP2_AUTO).trim();
+    if (!HTTP2.contains(http2)) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be one of {}", p, OPENCAST_HTTP2, HTTP2);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return new HttpClientProfile(nonNegativeDuration(p, parsed, OPENCAST_CONNECT_TIMEOUT, "PT10S"),
+                                 nonNegativeDuration(p, parsed, OPENCAST_READ_TIMEOUT, "PT10S"),
+                                 positiveInt(p, parsed, OPENCAST_MAX_IDLE_CONNECTIONS, 5),
+                                 nonNegativeDuration(p, parsed, OPENCAST_KEEP_ALIVE, "PT5M"),
+                                 positiveInt(p, parsed, OPENCAST_MAX_REQUESTS, 64),
+                                 positiveInt(p, parsed, OPENCAST_MAX_REQUESTS_PER_HOST, 5),
+                                 http2,
+                                 nonNegativeRate(p, parsed, OPENCAST_REQUESTS_PER_SECOND),
+                                 nonNegativeRate(p, parsed, OPENCAST_REQUESTS_PER_SECOND_PER_ORGANIZATION));
+  }
+
+  private static OpencastFailurePolicy opencastFailurePolicy(
+          final Path p,
+          final Properties parsed) {
+    final String fallback = parsed.getProperty(OPENCAST_FALLBACK, OpencastFailurePolicy.FALLBACK_EMPTY_SERIES).trim();
+    if (!FALLBACKS.contains(fallback)) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be one of {}", p, OPENCAST_FALLBACK, FALLBACKS);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return new OpencastFailurePolicy(nonNegativeInt(p, parsed, OPENCAST_MAX_RETRIES, 3),
+                                     nonNegativeDuration(p, parsed, OPENCAST_RETRY_BACKOFF, "PT0.5S"),
+                                     nonNegativeDuration(p, parsed, OPENCAST_MAX_RETRY_BACKOFF, "PT10S"),
+                                     positiveInt(p, parsed, OPENCAST_CIRCUIT_BREAKER_FAILURES, 5),
+                                     nonNegativeDuration(p, parsed, OPENCAST_CIRCUIT_BREAKER_OPEN, "PT30S"),
+                                     fallback);
+  }
+
+  private static LogFormat logFormat(
+          final Path p,
+          final Properties parsed) {
+    final String format = parsed.getProperty(ADAPTER_LOG_FORMAT, LogFormat.COMBINED_TEMPLATE).trim();
+    try {
+      if (!format.equals("json"))
+        return LogFormat.template(format);
+      final Map<String, String> keys = new HashMap<>();
+      for (final String mapping : parsed.getProperty(ADAPTER_LOG_FORMAT_JSON_FIELDS,
+                                                     "client:remote_addr,time:time_local,request:request,"
+                                                             + "status:status,user-agent:http_user_agent")
+                                        .split(",")) {
+        final String[] parts = mapping.split(":", 2);
+        if (parts.length != 2)
+          throw new IllegalArgumentException("\"" + mapping.trim() + "\" isn't of the form field:key");
+        keys.put(parts[0].trim(), parts[1].trim());
+      }
+      return LogFormat.json(keys);
+    } catch (final IllegalArgumentException e) {
+      LOGGER.error("Error parsing config file \"{}\": {} is invalid: {}", p, ADAPTER_LOG_FORMAT, e.getMessage());
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+      return null;
+    }
+  }
+
+  private static Partition partition(
+          final Path p,
+          final Properties parsed) {
+    final List<String> members = Pattern.compile(",")
+            .splitAsStream(parsed.getProperty(ADAPTER_PARTITION_MEMBERS, ""))
+            .map(String::trim)
+            .filter(member -> !member.isEmpty())
+            .distinct()
+            .collect(Collectors.toList());
+    if (members.isEmpty())
+      return null;
+    final String member = parsed.getProperty(ADAPTER_PARTITION_MEMBER, "").trim();
+    if (!members.contains(member)) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be one of {}",
+                   p,
+                   ADAPTER_PARTITION_MEMBER,
+                   members);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return new Partition(members, member);
+  }
+
+  private static List<String> resolutions(
+          final Path p,
+          final Properties parsed,
+          final String key) {
+    final List<String> result = Pattern.compile(",")
+            .splitAsStream(parsed.getProperty(key, ""))
+            .map(String::trim)
+            .filter(resolution -> !resolution.isEmpty())
+            .distinct()
+            .collect(Collectors.toList());
+    if (!ROLLUPS.containsAll(result)) {
+      LOGGER.error("Error parsing config file \"{}\": {} must be a list out of {}", p, key, ROLLUPS);
+      System.exit(ExitStatuses.CONFIG_FILE_PARSE_ERROR);
+    }
+    return result;
   }
 
   public InfluxDBConfig getInfluxDBConfig() {
@@ -193,10 +605,24 @@ public final class ConfigFile {
     return this.logFile;
   }
 
+  /**
+   * @return The log lines' format
+   */
+  public LogFormat getLogFormat() {
+    return this.logFormat;
+  }
+
   public Duration getViewInterval() {
     return this.viewInterval;
   }
 
+  /**
+   * @return How far out of order log lines may be written, and still end up in the right view
+   */
+  public Duration getAllowedLateness() {
+    return this.allowedLateness;
+  }
+
   public Path getLogConfigurationFile() {
     return this.logConfigurationFile;
   }
@@ -212,4 +638,103 @@ public final class ConfigFile {
   public Set<String> getInvalidPublicationChannels() {
     return this.invalidPublicationChannels;
   }
+
+  /**
+   * @return The address to expose metrics on, or <code>null</code> if metrics shouldn't be exposed
+   */
+  public InetSocketAddress getMetricsAddress() {
+    return this.metricsAddress;
+  }
+
+  /**
+   * @return The address to receive log lines on instead of reading {@link #getLogFile()}, or <code>null</code> if the
+   * log file should be read
+   */
+  public InetSocketAddress getListenAddress() {
+    return this.listenAddress;
+  }
+
+  /**
+   * @return The sinks to write to, in the configured order
+   */
+  public List<SinkConfig> getSinkConfigs() {
+    return this.sinkConfigs;
+  }
+
+  /**
+   * @return The file sink's configuration, or <code>null</code> if there is no file sink
+   */
+  public FileSinkConfig getFileSinkConfig() {
+    return this.fileSinkConfig;
+  }
+
+  /**
+   * @return Number of log lines read ahead of processing, at most
+   */
+  public int getIngestQueueSize() {
+    return this.ingestQueueSize;
+  }
+
+  /**
+   * @return Impressions that passed the sliding window, waiting for Opencast meta data, at most
+   */
+  public int getEnrichmentQueueSize() {
+    return this.enrichmentQueueSize;
+  }
+
+  /**
+   * @return Impressions with meta data, waiting for the aggregators and the sinks, at most
+   */
+  public int getAggregationQueueSize() {
+    return this.aggregationQueueSize;
+  }
+
+  /**
+   * @return The rollups to maintain, see {@link Rollups}; empty if there are none
+   */
+  public List<String> getRollups() {
+    return this.rollups;
+  }
+
+  /**
+   * @return The unique viewer estimates to maintain, see {@link UniqueViewers}; empty if there are none
+   */
+  public List<String> getUniqueViewers() {
+    return this.uniqueViewers;
+  }
+
+  /**
+   * @return The length of the most-watched episodes list, see {@link TopEpisodes}; <code>0</code> if there is none
+   */
+  public int getTopEpisodes() {
+    return this.topEpisodes;
+  }
+
+  /**
+   * @return How often rollups, unique viewer estimates and the most-watched episodes are written
+   */
+  public Duration getRollupFlushInterval() {
+    return this.rollupFlushInterval;
+  }
+
+  /**
+   * @return The lag to alert at, see {@link LagReport}; zero for no alerts
+   */
+  public Duration getLagAlertThreshold() {
+    return this.lagAlertThreshold;
+  }
+
+  /**
+   * @return The organizations this instance handles, or <code>null</code> if it handles all of them
+   */
+  public Partition getPartition() {
+    return this.partition;
+  }
+
+  /**
+   * @return Time allowed for draining the window and flushing the sinks when shutting down
+   */
+  public Duration getShutdownTimeout() {
+    return this.shutdownTimeout;
+  }
 }
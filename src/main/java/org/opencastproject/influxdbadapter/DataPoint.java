@@ -0,0 +1,40 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+/**
+ * Something a {@link Sink} writes: a single {@link Impression}, or an aggregate computed from impressions
+ */
+public interface DataPoint {
+  /**
+   * Append this point in InfluxDB's line protocol, as one line (including the line break)
+   *
+   * @param encoder The sink's encoder, which caches what it can
+   * @param out     Where to append the line
+   */
+  void encode(LineProtocol encoder, ByteBuilder out);
+
+  /**
+   * @return Whether this point aggregates impressions, as opposed to being a single one
+   */
+  boolean isAggregate();
+}
@@ -68,6 +68,26 @@ public final class ExitStatuses {
    * There was some syntax error with the configuration file given
    */
   public static final int CONFIG_FILE_PARSE_ERROR = 11;
+  /**
+   * The metrics HTTP server couldn't be started (port in use, or something)
+   */
+  public static final int METRICS_SERVER_ERROR = 12;
+  /**
+   * A spool directory couldn't be opened or written
+   */
+  public static final int SPOOL_ERROR = 13;
+  /**
+   * A sink couldn't be opened
+   */
+  public static final int SINK_ERROR = 14;
+  /**
+   * The log listener couldn't be started (port in use, or something)
+   */
+  public static final int LOG_LISTENER_ERROR = 15;
+  /**
+   * The export file couldn't be written
+   */
+  public static final int EXPORT_ERROR = 16;
 
   private ExitStatuses() {
   }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes impressions and aggregates to rolling files in InfluxDB's line protocol, for example to bulk-load them with
+ * <code>influx -import</code>
+ *
+ * <p>
+ * The file currently written to has the suffix <code>.part</code>, which is removed once the file has reached its
+ * roll size, or the sink is closed.
+ * </p>
+ */
+public final class FileSink implements Sink {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(FileSink.class);
+
+  private static final DateTimeFormatter FILE_NAME_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+  private static final String PART_SUFFIX = ".part";
+
+  private final FileSinkConfig config;
+  private final LineProtocol encoder = new LineProtocol();
+  private final ByteBuilder buffer = new ByteBuilder(64 * 1024);
+  private int fileIndex;
+  private Path currentFile;
+  private OutputStream out;
+  private long currentSize;
+
+  public FileSink(final FileSinkConfig config) throws IOException {
+    this.config = config;
+    Files.createDirectories(config.getDirectory());
+  }
+
+  @Override
+  public void write(final List<DataPoint> points) throws IOException {
+    this.buffer.clear();
+    for (final DataPoint point : points)
+      point.encode(this.encoder, this.buffer);
+    if (this.out == null)
+      openFile();
+    this.out.write(this.buffer.array(), 0, this.buffer.length());
+    this.out.flush();
+    this.currentSize += this.buffer.length();
+    if (this.currentSize >= this.config.getRollSize())
+      closeFile();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.out != null)
+      closeFile();
+  }
+
+  private void openFile() throws IOException {
+    final String name = "impressions-" + LocalDateTime.now().format(FILE_NAME_DATE) + '-' + this.fileIndex++
+            + (this.config.isCompress() ? ".lp.gz" : ".lp");
+    this.currentFile = this.config.getDirectory().resolve(name + PART_SUFFIX);
+    final OutputStream file = Files.newOutputStream(this.currentFile);
+    this.out = this.config.isCompress()
+            ? new BufferedOutputStream(new GZIPOutputStream(file, 65536), 65536)
+            : new BufferedOutputStream(file, 65536);
+    this.currentSize = 0;
+    if (this.config.getDatabase() != null) {
+      this.out.write(("# DML\n# CONTEXT-DATABASE: " + this.config.getDatabase() + '\n')
+                             .getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private void closeFile() throws IOException {
+    this.out.close();
+    this.out = null;
+    final String name = this.currentFile.getFileName().toString();
+    final Path finished = this.currentFile.resolveSibling(name.substring(0, name.length() - PART_SUFFIX.length()));
+    Files.move(this.currentFile, finished, StandardCopyOption.ATOMIC_MOVE);
+    LOGGER.info("Finished line protocol file \"{}\"", finished);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.nio.file.Path;
+
+/**
+ * Parameters of the rolling line protocol file sink (immutable)
+ */
+public final class FileSinkConfig {
+  private final Path directory;
+  private final long rollSize;
+  private final boolean compress;
+  private final String database;
+
+  public FileSinkConfig(final Path directory, final long rollSize, final boolean compress, final String database) {
+    this.directory = directory;
+    this.rollSize = rollSize;
+    this.compress = compress;
+    this.database = database;
+  }
+
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * @return The (uncompressed) size in bytes after which a new file is started
+   */
+  public long getRollSize() {
+    return this.rollSize;
+  }
+
+  public boolean isCompress() {
+    return this.compress;
+  }
+
+  /**
+   * @return The database to name in the header <code>influx -import</code> expects, or <code>null</code> for no header
+   */
+  public String getDatabase() {
+    return this.database;
+  }
+}
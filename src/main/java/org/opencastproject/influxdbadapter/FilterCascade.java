@@ -0,0 +1,314 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Turns log lines into {@link RawImpression}s, rejecting unwanted ones as cheaply as possible (not thread-safe)
+ *
+ * <p>
+ * A line is only taken apart (see {@link LogFormat}) at first. Then the rules run one after the other, each looking
+ * only at the fields it needs, and only parsing what it has to: the status is read in place, file extensions and user
+ * agents are searched in place, and the client address, the request line and the time are parsed by the first rule
+ * needing them. The first rule rejecting a line decides the reason it's counted under.
+ * </p>
+ *
+ * <p>
+ * The rules start out ordered by their estimated cost. Every few thousand lines, they are reordered by how many lines
+ * each of them rejected per cost, so the rules throwing out most of the current traffic for the least effort run
+ * first. The counts are halved after each reordering, so the order follows changes in the traffic.
+ * </p>
+ */
+public final class FilterCascade {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(FilterCascade.class);
+
+  private static final int REORDER_INTERVAL = 4096;
+
+  private static final Counter SKIPPED_LINE_PATTERN = Metrics.linesSkipped("line_pattern");
+  private static final Counter SKIPPED_CLIENT_ADDRESS = Metrics.linesSkipped("client_address");
+  private static final Counter SKIPPED_HTTP_STATUS = Metrics.linesSkipped("http_status");
+  private static final Counter SKIPPED_FILE_EXTENSION = Metrics.linesSkipped("file_extension");
+  private static final Counter SKIPPED_PUBLICATION_CHANNEL = Metrics.linesSkipped("publication_channel");
+  private static final Counter SKIPPED_REQUEST_LINE = Metrics.linesSkipped("request_line");
+  private static final Counter SKIPPED_USER_AGENT = Metrics.linesSkipped("user_agent");
+  private static final Counter SKIPPED_PARTITION = Metrics.linesSkipped("partition");
+
+  private final LogFormat format;
+  private final Collection<String> invalidAgents;
+  private final Collection<String> validExtensions;
+  private final Collection<String> invalidPublications;
+  private final Partition partition;
+  private final Rule[] rules;
+  private long lines;
+
+  // The current line, and what the rules parsed of it so far
+  private final int[] bounds = new int[LogFormat.BOUNDS];
+  private CharSequence line;
+  private ClientAddress client;
+  private Optional<RequestLine> requestLine;
+  private OffsetDateTime date;
+
+  /**
+   * A check of a line
+   */
+  private abstract static class Rule {
+    private final String name;
+    private final double cost;
+    private long evaluated;
+    private long rejected;
+
+    private Rule(final String name, final double cost) {
+      this.name = name;
+      this.cost = cost;
+    }
+
+    /**
+     * @return <code>null</code> if the line passes, else the reason to count it under
+     */
+    abstract Counter check();
+
+    private double rejectionsPerCost() {
+      // Rules that haven't rejected anything yet still count a little, so they can move up later
+      return (this.rejected + 1.0) / (this.evaluated + 2.0) / this.cost;
+    }
+  }
+
+  /**
+   * @param format              The log lines' format
+   * @param invalidAgents       Reject lines whose user agent contains one of these
+   * @param validExtensions     Reject lines whose request doesn't contain one of these; empty to accept all
+   * @param invalidPublications Reject requests for these publication channels
+   */
+  public FilterCascade(
+          final LogFormat format,
+          final Collection<String> invalidAgents,
+          final Collection<String> validExtensions,
+          final Collection<String> invalidPublications) {
+    this(format, invalidAgents, validExtensions, invalidPublications, null);
+  }
+
+  /**
+   * @param format              The log lines' format
+   * @param invalidAgents       Reject lines whose user agent contains one of these
+   * @param validExtensions     Reject lines whose request doesn't contain one of these; empty to accept all
+   * @param invalidPublications Reject requests for these publication channels
+   * @param partition           Reject requests for organizations of other instances; <code>null</code> if there is
+   *                            no partitioning
+   */
+  public FilterCascade(
+          final LogFormat format,
+          final Collection<String> invalidAgents,
+          final Collection<String> validExtensions,
+          final Collection<String> invalidPublications,
+          final Partition partition) {
+    this.format = format;
+    this.invalidAgents = invalidAgents;
+    this.validExtensions = validExtensions;
+    this.invalidPublications = invalidPublications;
+    this.partition = partition;
+    // The costs are rough guesses, relative to reading the status
+    final List<Rule> result = new ArrayList<>();
+    result.add(new Rule("http_status", 1) {
+      @Override
+      Counter check() {
+        final int status = LogFormat.intValue(FilterCascade.this.line, FilterCascade.this.bounds, LogFormat.STATUS);
+        if (status == -1)
+          return SKIPPED_LINE_PATTERN;
+        // Without a status, every request counts as successful
+        return status == -2 || status / 200 == 1 ? null : SKIPPED_HTTP_STATUS;
+      }
+    });
+    if (partition != null) {
+      result.add(new Rule("partition", 1) {
+        @Override
+        Counter check() {
+          return FilterCascade.this.partition.accepts(FilterCascade.this.line,
+                                                      LogFormat.start(FilterCascade.this.bounds, LogFormat.REQUEST),
+                                                      LogFormat.end(FilterCascade.this.bounds, LogFormat.REQUEST))
+                  ? null
+                  : SKIPPED_PARTITION;
+        }
+      });
+    }
+    if (!validExtensions.isEmpty()) {
+      result.add(new Rule("file_extension", 2 * validExtensions.size()) {
+        @Override
+        Counter check() {
+          for (final String extension : FilterCascade.this.validExtensions) {
+            if (contains(LogFormat.REQUEST, extension, false))
+              return null;
+          }
+          return SKIPPED_FILE_EXTENSION;
+        }
+      });
+    }
+    result.add(new Rule("user_agent", 2 * invalidAgents.size() + 1) {
+      @Override
+      Counter check() {
+        if (contains(LogFormat.USER_AGENT, "Apache", true))
+          return SKIPPED_USER_AGENT;
+        for (final String agent : FilterCascade.this.invalidAgents) {
+          if (contains(LogFormat.USER_AGENT, agent, false))
+            return SKIPPED_USER_AGENT;
+        }
+        return null;
+      }
+    });
+    result.add(new Rule("client_address", 5) {
+      @Override
+      Counter check() {
+        final Optional<ClientAddress> parsed = ClientAddress.parse(value(LogFormat.CLIENT));
+        FilterCascade.this.client = parsed.orElse(null);
+        return parsed.isPresent() ? null : SKIPPED_CLIENT_ADDRESS;
+      }
+    });
+    result.add(new Rule("request_line", 20) {
+      @Override
+      Counter check() {
+        return requestLine().isPresent() ? null : SKIPPED_REQUEST_LINE;
+      }
+    });
+    if (!invalidPublications.isEmpty()) {
+      result.add(new Rule("publication_channel", 21) {
+        @Override
+        Counter check() {
+          // Requests that can't be parsed are left to the request line rule
+          return requestLine().map(RequestLine::getPublicationChannel)
+                                .filter(FilterCascade.this.invalidPublications::contains)
+                                .isPresent() ? SKIPPED_PUBLICATION_CHANNEL : null;
+        }
+      });
+    }
+    result.add(new Rule("time", 30) {
+      @Override
+      Counter check() {
+        try {
+          FilterCascade.this.date = LogLine.parseTime(value(LogFormat.TIME));
+          return null;
+        } catch (final DateTimeParseException e) {
+          return SKIPPED_LINE_PATTERN;
+        }
+      }
+    });
+    this.rules = result.toArray(new Rule[0]);
+    Arrays.sort(this.rules, Comparator.comparingDouble((Rule rule) -> rule.cost));
+  }
+
+  /**
+   * Check a log line, and convert it if it passes
+   *
+   * @param logLine The line
+   * @return The impression, or <code>null</code> if the line was rejected
+   */
+  public RawImpression apply(final CharSequence logLine) {
+    if (logLine.length() == 0)
+      return null;
+    if (++this.lines % REORDER_INTERVAL == 0)
+      reorder();
+    this.line = logLine;
+    this.client = null;
+    this.requestLine = null;
+    this.date = null;
+    if (!this.format.extract(logLine, this.bounds)) {
+      LOGGER.debug("SKIP, wrong line pattern: {}", logLine);
+      SKIPPED_LINE_PATTERN.inc();
+      return null;
+    }
+    Metrics.LINES_PARSED.inc();
+    for (final Rule rule : this.rules) {
+      rule.evaluated++;
+      final Counter reason = rule.check();
+      if (reason != null) {
+        rule.rejected++;
+        LOGGER.debug("SKIP, {}: {}", rule.name, logLine);
+        reason.inc();
+        return null;
+      }
+    }
+    final RequestLine request = this.requestLine.get();
+    if (!request.getMethod().equals("GET")) {
+      LOGGER.debug("SKIP, method {} != GET: {}", request.getMethod(), logLine);
+    }
+    final String agent = value(LogFormat.USER_AGENT);
+    final int status = LogFormat.intValue(logLine, this.bounds, LogFormat.STATUS);
+    final LogLine parsed = new LogLine(logLine,
+                                       this.client,
+                                       this.date,
+                                       value(LogFormat.REQUEST),
+                                       status >= 0 ? status : 200,
+                                       null,
+                                       null,
+                                       agent != null ? agent : "",
+                                       this.requestLine);
+    return new RawImpression(parsed,
+                             request.getEpisodeId(),
+                             request.getOrganizationId(),
+                             request.getPublicationChannel(),
+                             this.date,
+                             this.client);
+  }
+
+  /**
+   * @return The names of the rules, in the order they currently run
+   */
+  public List<String> getOrder() {
+    final List<String> result = new ArrayList<>();
+    for (final Rule rule : this.rules)
+      result.add(rule.name);
+    return result;
+  }
+
+  private void reorder() {
+    final List<String> before = LOGGER.isDebugEnabled() ? getOrder() : null;
+    Arrays.sort(this.rules, Comparator.comparingDouble(Rule::rejectionsPerCost).reversed());
+    for (final Rule rule : this.rules) {
+      rule.evaluated /= 2;
+      rule.rejected /= 2;
+    }
+    if (before != null && !before.equals(getOrder()))
+      LOGGER.debug("Filter order is now {}", getOrder());
+  }
+
+  private Optional<RequestLine> requestLine() {
+    if (this.requestLine == null)
+      this.requestLine = RequestLine.parseLine(value(LogFormat.REQUEST));
+    return this.requestLine;
+  }
+
+  private String value(final int field) {
+    return this.format.value(this.line, this.bounds, field);
+  }
+
+  private boolean contains(final int field, final String s, final boolean prefix) {
+    return this.format.contains(this.line, this.bounds, field, s, prefix);
+  }
+}
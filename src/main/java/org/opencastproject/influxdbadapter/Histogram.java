@@ -0,0 +1,125 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket boundaries, usually for durations in seconds (thread-safe)
+ *
+ * <p>Every bucket is a {@link LongAdder}, so concurrent observations don't contend. See {@link Metrics}.</p>
+ */
+public final class Histogram {
+  /**
+   * Bucket boundaries suitable for HTTP request latencies, in seconds
+   */
+  public static final double[] LATENCY_BUCKETS = {
+          0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+  /**
+   * Bucket boundaries suitable for how far behind the log the adapter is, from seconds to a day, in seconds
+   */
+  public static final double[] LAG_BUCKETS = {
+          1, 2, 5, 10, 15, 30, 45, 60, 90, 120, 180, 240, 300, 450, 600, 900, 1200, 1800, 2700, 3600, 5400, 7200,
+          10800, 14400, 21600, 43200, 86400 };
+
+  private final double[] upperBounds;
+  // One more bucket than bounds, for +Inf
+  private final LongAdder[] buckets;
+  private final DoubleAdder sum = new DoubleAdder();
+
+  public Histogram(final double[] upperBounds) {
+    this.upperBounds = upperBounds.clone();
+    this.buckets = new LongAdder[upperBounds.length + 1];
+    for (int i = 0; i < this.buckets.length; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  public void observe(final double value) {
+    int i = 0;
+    while (i < this.upperBounds.length && value > this.upperBounds[i]) {
+      i++;
+    }
+    this.buckets[i].increment();
+    this.sum.add(value);
+  }
+
+  /**
+   * Observe the time elapsed since the given start time, in seconds
+   *
+   * @param startNanos Start time, as returned by <code>System.nanoTime()</code>
+   */
+  public void observeSince(final long startNanos) {
+    observe((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public double[] getUpperBounds() {
+    return this.upperBounds.clone();
+  }
+
+  /**
+   * @return The number of observations per bucket (not cumulative), the last bucket being +Inf
+   */
+  public long[] getBucketCounts() {
+    final long[] result = new long[this.buckets.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = this.buckets[i].sum();
+    }
+    return result;
+  }
+
+  public double getSum() {
+    return this.sum.sum();
+  }
+
+  /**
+   * Estimate a quantile from bucket counts, interpolating linearly within the bucket it falls into (like Prometheus'
+   * <code>histogram_quantile</code>)
+   *
+   * @param upperBounds The buckets' upper bounds
+   * @param counts      The number of observations per bucket (not cumulative), the last bucket being +Inf
+   * @param q           The quantile, between 0 and 1
+   * @return The estimate, the highest bound if it falls into the +Inf bucket, or 0 without observations
+   */
+  public static double quantile(final double[] upperBounds, final long[] counts, final double q) {
+    long total = 0;
+    for (final long count : counts)
+      total += count;
+    if (total == 0)
+      return 0;
+    final double rank = q * total;
+    long below = 0;
+    int i = 0;
+    while (i < upperBounds.length && below + counts[i] < rank) {
+      below += counts[i];
+      i++;
+    }
+    if (i == upperBounds.length)
+      return upperBounds[upperBounds.length - 1];
+    final double lower = i == 0 ? 0 : upperBounds[i - 1];
+    return counts[i] == 0
+            ? lower
+            : lower + (upperBounds[i] - lower) * (rank - below) / counts[i];
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+
+/**
+ * Connection settings and request budget of an HTTP client (immutable)
+ */
+public final class HttpClientProfile {
+  /**
+   * Use HTTP/2 where the server offers it during the TLS handshake, HTTP/1.1 otherwise
+   */
+  public static final String HTTP2_AUTO = "auto";
+  /**
+   * Only use HTTP/1.1
+   */
+  public static final String HTTP2_OFF = "off";
+  /**
+   * Use HTTP/2 without TLS, assuming the server supports it
+   */
+  public static final String HTTP2_PRIOR_KNOWLEDGE = "prior-knowledge";
+
+  private final Duration connectTimeout;
+  private final Duration readTimeout;
+  private final int maxIdleConnections;
+  private final Duration keepAlive;
+  private final int maxRequests;
+  private final int maxRequestsPerHost;
+  private final String http2;
+  private final double requestsPerSecond;
+  private final double requestsPerSecondPerOrganization;
+
+  public HttpClientProfile(
+          final Duration connectTimeout,
+          final Duration readTimeout,
+          final int maxIdleConnections,
+          final Duration keepAlive,
+          final int maxRequests,
+          final int maxRequestsPerHost,
+          final String http2,
+          final double requestsPerSecond,
+          final double requestsPerSecondPerOrganization) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.maxIdleConnections = maxIdleConnections;
+    this.keepAlive = keepAlive;
+    this.maxRequests = maxRequests;
+    this.maxRequestsPerHost = maxRequestsPerHost;
+    this.http2 = http2;
+    this.requestsPerSecond = requestsPerSecond;
+    this.requestsPerSecondPerOrganization = requestsPerSecondPerOrganization;
+  }
+
+  /**
+   * @return Time to establish a connection (including the TLS handshake), <code>0</code> for no limit
+   */
+  public Duration getConnectTimeout() {
+    return this.connectTimeout;
+  }
+
+  /**
+   * @return Time to wait for data from a connection, and to write to it, <code>0</code> for no limit
+   */
+  public Duration getReadTimeout() {
+    return this.readTimeout;
+  }
+
+  /**
+   * @return Number of idle connections kept open for reuse
+   */
+  public int getMaxIdleConnections() {
+    return this.maxIdleConnections;
+  }
+
+  /**
+   * @return Time an idle connection is kept open for reuse
+   */
+  public Duration getKeepAlive() {
+    return this.keepAlive;
+  }
+
+  /**
+   * @return Number of requests running at the same time, at most
+   */
+  public int getMaxRequests() {
+    return this.maxRequests;
+  }
+
+  /**
+   * @return Number of requests running at the same time against one host, at most
+   */
+  public int getMaxRequestsPerHost() {
+    return this.maxRequestsPerHost;
+  }
+
+  /**
+   * @return Whether to use HTTP/2, one of {@link #HTTP2_AUTO}, {@link #HTTP2_OFF} and {@link #HTTP2_PRIOR_KNOWLEDGE}
+   */
+  public String getHttp2() {
+    return this.http2;
+  }
+
+  /**
+   * @return Number of requests started per second, at most, <code>0</code> for no limit
+   */
+  public double getRequestsPerSecond() {
+    return this.requestsPerSecond;
+  }
+
+  /**
+   * @return Number of requests for one organization started per second, at most, <code>0</code> for no limit
+   */
+  public double getRequestsPerSecondPerOrganization() {
+    return this.requestsPerSecondPerOrganization;
+  }
+}
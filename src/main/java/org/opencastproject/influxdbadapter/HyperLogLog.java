@@ -0,0 +1,130 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct 64 bit hashes added to it in fixed memory (not thread-safe)
+ *
+ * <p>
+ * The sketch has 2<sup>11</sup> registers, so estimates are off by about 2.3%. As long as few hashes were added, it
+ * stores its non-empty registers in a sorted array instead of all of them, so a sketch of a handful of viewers takes
+ * a few bytes. Small counts are estimated by linear counting, which is nearly exact.
+ * </p>
+ */
+public final class HyperLogLog {
+  private static final int PRECISION = 11;
+  private static final int REGISTERS = 1 << PRECISION;
+  // Beyond this, the sparse form takes more memory than the dense one
+  private static final int MAX_SPARSE = REGISTERS / 4;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+  // Sorted by register, each entry holds the register in its upper and the value in its lower byte
+  private int[] sparse = new int[4];
+  private int sparseSize;
+  private byte[] dense;
+
+  /**
+   * Add a hash
+   *
+   * @param hash A well-distributed 64 bit hash, see {@link #hash(long, long)}
+   * @return Whether the sketch changed
+   */
+  public boolean add(final long hash) {
+    final int register = (int) (hash >>> (Long.SIZE - PRECISION));
+    final int value = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), Long.SIZE - PRECISION) + 1;
+    if (this.dense != null) {
+      if (this.dense[register] >= value)
+        return false;
+      this.dense[register] = (byte) value;
+      return true;
+    }
+    final int index = Arrays.binarySearch(this.sparse, 0, this.sparseSize, register << 8);
+    final int position = index >= 0 ? index : -index - 1;
+    if (position < this.sparseSize && this.sparse[position] >>> 8 == register) {
+      if ((this.sparse[position] & 0xff) >= value)
+        return false;
+      this.sparse[position] = register << 8 | value;
+      return true;
+    }
+    if (this.sparseSize == MAX_SPARSE) {
+      this.dense = new byte[REGISTERS];
+      for (int i = 0; i < this.sparseSize; i++)
+        this.dense[this.sparse[i] >>> 8] = (byte) (this.sparse[i] & 0xff);
+      this.sparse = null;
+      this.dense[register] = (byte) value;
+      return true;
+    }
+    if (this.sparseSize == this.sparse.length)
+      this.sparse = Arrays.copyOf(this.sparse, this.sparse.length * 2);
+    System.arraycopy(this.sparse, position, this.sparse, position + 1, this.sparseSize - position);
+    this.sparse[position] = register << 8 | value;
+    this.sparseSize++;
+    return true;
+  }
+
+  /**
+   * @return The estimated number of distinct hashes added
+   */
+  public long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    if (this.dense != null) {
+      for (final byte value : this.dense) {
+        sum += 1.0 / (1L << value);
+        if (value == 0)
+          zeros++;
+      }
+    } else {
+      zeros = REGISTERS - this.sparseSize;
+      sum = zeros;
+      for (int i = 0; i < this.sparseSize; i++)
+        sum += 1.0 / (1L << (this.sparse[i] & 0xff));
+    }
+    final double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+    if (estimate <= 2.5 * REGISTERS && zeros > 0)
+      return Math.round(REGISTERS * Math.log((double) REGISTERS / zeros));
+    return Math.round(estimate);
+  }
+
+  /**
+   * Hash a 128 bit value, such as a {@link ClientAddress}, with the finalizer of MurmurHash3
+   *
+   * @param high The upper 64 bits
+   * @param low  The lower 64 bits
+   * @return A well-distributed 64 bit hash
+   */
+  public static long hash(final long high, final long low) {
+    return mix(mix(high) ^ low);
+  }
+
+  private static long mix(final long value) {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
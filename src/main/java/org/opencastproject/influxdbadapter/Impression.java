@@ -29,12 +29,13 @@ import java.util.concurrent.TimeUnit;
 /**
  * An Impression is a "resolved" RawImpression, containing all necessary metadata to write to the InfluxDB (immutable)
  */
-public final class Impression {
+public final class Impression implements DataPoint {
   private final String episodeId;
   private final String organizationId;
   private final String publicationChannel;
   private final String seriesId;
   private final OffsetDateTime date;
+  private final ClientAddress viewer;
 
   public Impression(
           final String episodeId,
@@ -42,11 +43,22 @@ public final class Impression {
           final String publicationChannel,
           final String seriesId,
           final OffsetDateTime date) {
+    this(episodeId, organizationId, publicationChannel, seriesId, date, null);
+  }
+
+  public Impression(
+          final String episodeId,
+          final String organizationId,
+          final String publicationChannel,
+          final String seriesId,
+          final OffsetDateTime date,
+          final ClientAddress viewer) {
     this.episodeId = episodeId;
     this.organizationId = organizationId;
     this.publicationChannel = publicationChannel;
     this.seriesId = seriesId;
     this.date = date;
+    this.viewer = viewer;
   }
 
   /**
@@ -64,4 +76,41 @@ public final class Impression {
             .tag("episodeId", this.episodeId)
             .build();
   }
+
+  @Override
+  public void encode(final LineProtocol encoder, final ByteBuilder out) {
+    encoder.encode(this, out);
+  }
+
+  @Override
+  public boolean isAggregate() {
+    return false;
+  }
+
+  public String getEpisodeId() {
+    return this.episodeId;
+  }
+
+  public String getOrganizationId() {
+    return this.organizationId;
+  }
+
+  public String getPublicationChannel() {
+    return this.publicationChannel;
+  }
+
+  public String getSeriesId() {
+    return this.seriesId;
+  }
+
+  public OffsetDateTime getDate() {
+    return this.date;
+  }
+
+  /**
+   * @return The viewer's address (not written to the sinks), or <code>null</code> if it's unknown
+   */
+  public ClientAddress getViewer() {
+    return this.viewer;
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.influxdb.InfluxDBException;
+import org.influxdb.InfluxDBIOException;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import devcsrj.okhttp3.logging.HttpLoggingInterceptor;
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Writes encoded line protocol to InfluxDB's <code>/write</code> endpoint, gzip compressed, over a kept-alive
+ * connection (not thread-safe)
+ *
+ * <p>
+ * The compressed request body is built in a reused buffer. Errors are reported as influxdb-java exceptions, so
+ * {@link InfluxDBException#isRetryWorth()} tells whether writing again makes sense.
+ * </p>
+ */
+public final class InfluxDBClient implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(InfluxDBClient.class);
+
+  private static final MediaType LINE_PROTOCOL = MediaType.get("text/plain; charset=utf-8");
+  private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+  private final OkHttpClient client;
+  private final HttpUrl writeUrl;
+  private final String authorization;
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  private final ByteBuilder compressed = new ByteBuilder(64 * 1024);
+
+  public InfluxDBClient(final OkHttpClient client, final HttpUrl writeUrl, final String authorization) {
+    this.client = client;
+    this.writeUrl = writeUrl;
+    this.authorization = authorization;
+  }
+
+  /**
+   * Create a client from the configuration
+   *
+   * @param config InfluxDB configuration
+   * @return The client, or <code>null</code> if the URI is invalid
+   */
+  public static InfluxDBClient create(final InfluxDBConfig config) {
+    final HttpUrl base = HttpUrl.parse(config.getHost());
+    if (base == null)
+      return null;
+    final HttpUrl.Builder writeUrl = base.newBuilder()
+            .addPathSegment("write")
+            .addQueryParameter("db", config.getDb())
+            .addQueryParameter("precision", "n");
+    if (config.getRetentionPolicy() != null)
+      writeUrl.addQueryParameter("rp", config.getRetentionPolicy());
+    final OkHttpClient.Builder client = new OkHttpClient.Builder();
+    if (config.getLogLevel().equals("debug"))
+      client.addInterceptor(new HttpLoggingInterceptor());
+    return new InfluxDBClient(client.build(),
+                              writeUrl.build(),
+                              Credentials.basic(config.getUser(),
+                                                config.getPassword() != null ? config.getPassword() : ""));
+  }
+
+  /**
+   * Write points
+   *
+   * @param lineProtocol    The points, one per line
+   * @param pointCount      The number of points (for logging)
+   * @param retentionPolicy The retention policy to write to, or <code>null</code> for the configured one
+   * @throws InfluxDBException If InfluxDB didn't accept the points, or couldn't be reached
+   */
+  public void write(final ByteBuilder lineProtocol, final int pointCount, final String retentionPolicy) {
+    compress(lineProtocol);
+    final Request request = new Request.Builder()
+            .url(retentionPolicy != null
+                         ? this.writeUrl.newBuilder().setQueryParameter("rp", retentionPolicy).build()
+                         : this.writeUrl)
+            .header("Authorization", this.authorization)
+            .header("Content-Encoding", "gzip")
+            .post(RequestBody.create(LINE_PROTOCOL, this.compressed.array(), 0, this.compressed.length()))
+            .build();
+    try (final Response response = this.client.newCall(request).execute()) {
+      if (!response.isSuccessful()) {
+        final ResponseBody body = response.body();
+        final String error = body != null ? body.string() : "";
+        throw InfluxDBException.buildExceptionForErrorState(
+                error.isEmpty() ? "HTTP " + response.code() + ' ' + response.message() : error);
+      }
+    } catch (final IOException e) {
+      throw new InfluxDBIOException(e);
+    }
+    Metrics.INFLUXDB_BYTES_WRITTEN.add(this.compressed.length());
+    LOGGER.debug("Wrote {} points ({} bytes, {} compressed)",
+                 pointCount,
+                 lineProtocol.length(),
+                 this.compressed.length());
+  }
+
+  private void compress(final ByteBuilder input) {
+    this.compressed.clear();
+    this.compressed.append(GZIP_HEADER);
+    this.deflater.reset();
+    this.deflater.setInput(input.array(), 0, input.length());
+    this.deflater.finish();
+    while (!this.deflater.finished()) {
+      this.compressed.ensureAvailable(8192);
+      this.compressed.advance(this.deflater.deflate(this.compressed.array(),
+                                                    this.compressed.length(),
+                                                    this.compressed.array().length - this.compressed.length()));
+    }
+    this.crc.reset();
+    this.crc.update(input.array(), 0, input.length());
+    appendIntLittleEndian((int) this.crc.getValue());
+    appendIntLittleEndian(input.length());
+  }
+
+  private void appendIntLittleEndian(final int value) {
+    this.compressed.append((byte) value)
+                   .append((byte) (value >>> 8))
+                   .append((byte) (value >>> 16))
+                   .append((byte) (value >>> 24));
+  }
+
+  @Override
+  public void close() {
+    this.deflater.end();
+    this.client.dispatcher().executorService().shutdown();
+    this.client.connectionPool().evictAll();
+  }
+}
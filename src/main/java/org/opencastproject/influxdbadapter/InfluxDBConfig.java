@@ -30,6 +30,7 @@ public final class InfluxDBConfig {
   private final String password;
   private final String db;
   private final String retentionPolicy;
+  private final String aggregateRetentionPolicy;
   private final String logLevel;
 
   public InfluxDBConfig(
@@ -38,12 +39,14 @@ public final class InfluxDBConfig {
           final String password,
           final String db,
           final String retentionPolicy,
+          final String aggregateRetentionPolicy,
           final String logLevel) {
     this.host = host;
     this.user = user;
     this.password = password;
     this.db = db;
     this.retentionPolicy = retentionPolicy;
+    this.aggregateRetentionPolicy = aggregateRetentionPolicy;
     this.logLevel = logLevel;
   }
 
@@ -67,6 +70,14 @@ public final class InfluxDBConfig {
     return this.retentionPolicy;
   }
 
+  /**
+   * @return The retention policy for aggregates (like rollups), or <code>null</code> to use the same as for
+   * impressions
+   */
+  public String getAggregateRetentionPolicy() {
+    return this.aggregateRetentionPolicy;
+  }
+
   public String getLogLevel() {
     return this.logLevel;
   }
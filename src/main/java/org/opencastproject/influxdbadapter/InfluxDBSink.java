@@ -0,0 +1,85 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.influxdb.InfluxDBException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes impressions and aggregates to InfluxDB, see {@link InfluxDBClient}
+ *
+ * <p>Aggregates may go to a retention policy of their own, so they can be kept longer than the impressions.</p>
+ */
+public final class InfluxDBSink implements Sink {
+  private final InfluxDBClient client;
+  private final String aggregateRetentionPolicy;
+  private final LineProtocol encoder = new LineProtocol();
+  private final ByteBuilder buffer = new ByteBuilder(1024 * 1024);
+  private final ByteBuilder aggregateBuffer = new ByteBuilder(1024);
+
+  /**
+   * @param client                   The client to write with
+   * @param aggregateRetentionPolicy Retention policy for aggregates, or <code>null</code> for the client's
+   */
+  public InfluxDBSink(final InfluxDBClient client, final String aggregateRetentionPolicy) {
+    this.client = client;
+    this.aggregateRetentionPolicy = aggregateRetentionPolicy;
+  }
+
+  @Override
+  public void write(final List<DataPoint> points) throws IOException {
+    this.buffer.clear();
+    this.aggregateBuffer.clear();
+    int aggregates = 0;
+    for (final DataPoint point : points) {
+      if (point.isAggregate() && this.aggregateRetentionPolicy != null) {
+        point.encode(this.encoder, this.aggregateBuffer);
+        aggregates++;
+      } else {
+        point.encode(this.encoder, this.buffer);
+      }
+    }
+    // A retried batch is written completely again, which InfluxDB takes as overwriting the same points
+    if (this.buffer.length() > 0)
+      write(this.buffer, points.size() - aggregates, null);
+    if (aggregates > 0)
+      write(this.aggregateBuffer, aggregates, this.aggregateRetentionPolicy);
+  }
+
+  private void write(final ByteBuilder lineProtocol, final int pointCount, final String retentionPolicy)
+          throws IOException {
+    try {
+      this.client.write(lineProtocol, pointCount, retentionPolicy);
+    } catch (final InfluxDBException e) {
+      if (e.isRetryWorth())
+        throw new IOException(e.getMessage(), e);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    this.client.close();
+  }
+}
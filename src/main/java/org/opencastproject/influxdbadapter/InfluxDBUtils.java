@@ -21,11 +21,6 @@
 
 package org.opencastproject.influxdbadapter;
 
-import org.influxdb.InfluxDB;
-import org.influxdb.InfluxDBFactory;
-import org.influxdb.InfluxDBIOException;
-import org.influxdb.dto.Point;
-import org.influxdb.dto.Pong;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -38,53 +33,21 @@ public final class InfluxDBUtils {
   }
 
   /**
-   * Write the given point to InfluxDB
-   * @param config Configuration (for retention policies etc.)
-   * @param influxDB The InfluxDB connection
-   * @param p The point to write
-   */
-  public static void writePointToInflux(final InfluxDBConfig config, final InfluxDB influxDB, final Point p) {
-    try {
-      final Pong pong = influxDB.ping();
-      if (!pong.isGood()) {
-        LOGGER.error("INFLUXPINGERROR, not good");
-      }
-    } catch (final InfluxDBIOException e) {
-      LOGGER.error("INFLUXPINGERROR, {}", e.getMessage());
-    }
-    if (config.getRetentionPolicy() != null)
-      influxDB.write(config.getDb(), config.getRetentionPolicy(), p);
-    else
-      influxDB.write(p);
-  }
-
-  /**
-   * Connect and configure InfluxDB from a configuration
+   * Create an InfluxDB client from a configuration
    * @param config InfluxDB configuration
-   * @return A connected InfluxDB instance
+   * @return A client, ready to write
    */
-  public static InfluxDB connect(final InfluxDBConfig config) {
-    InfluxDB influxDB = null;
-    try {
-      influxDB = InfluxDBFactory.connect(config.getHost(), config.getUser(), config.getPassword());
-
-      influxDB.setDatabase(config.getDb());
-      influxDB.enableBatch();
-      if (config.getLogLevel().equals("debug")) {
-        influxDB.setLogLevel(InfluxDB.LogLevel.FULL);
-      } else if (config.getLogLevel().equals("info")) {
-        influxDB.setLogLevel(InfluxDB.LogLevel.BASIC);
-      } else {
-        LOGGER.error(
-                "Invalid InfluxDB log level \"" + config.getLogLevel() + "\": available are \"debug\" and \"info\"");
-        System.exit(ExitStatuses.INVALID_INFLUXDB_CONFIG);
-      }
-      return influxDB;
-    } catch (final Exception e) {
-      if (influxDB != null) {
-        influxDB.close();
-      }
-      throw e;
+  public static InfluxDBClient connect(final InfluxDBConfig config) {
+    if (!config.getLogLevel().equals("debug") && !config.getLogLevel().equals("info")) {
+      LOGGER.error(
+              "Invalid InfluxDB log level \"" + config.getLogLevel() + "\": available are \"debug\" and \"info\"");
+      System.exit(ExitStatuses.INVALID_INFLUXDB_CONFIG);
+    }
+    final InfluxDBClient client = InfluxDBClient.create(config);
+    if (client == null) {
+      LOGGER.error("Invalid InfluxDB URI \"" + config.getHost() + "\"");
+      System.exit(ExitStatuses.INVALID_INFLUXDB_CONFIG);
     }
+    return client;
   }
 }
@@ -25,7 +25,14 @@ package org.opencastproject.influxdbadapter;
  * Represents an invalid HTTP response from the Opencast instance
  */
 public class InvalidOpencastResponse extends RuntimeException {
+  private final int code;
+
   public InvalidOpencastResponse(final int code) {
     super("Opencast returned HTTP " + code);
+    this.code = code;
+  }
+
+  public int getCode() {
+    return this.code;
   }
 }
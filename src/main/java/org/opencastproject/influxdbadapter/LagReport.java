@@ -0,0 +1,201 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how far behind the log the adapter is, periodically, and alerts if that's too far (thread-safe)
+ *
+ * <p>
+ * The lag of an impression is the time between its log time stamp and the moment it passes a stage: when its line is
+ * read (<code>read</code>), when it's evicted from the sliding window (<code>evicted</code>, so this includes the view
+ * interval), when it has its Opencast meta data (<code>enriched</code>), and when a sink acknowledged writing it
+ * (<code>written</code>, per sink). The stages record it in the <code>impression_lag_seconds</code> and
+ * <code>sink_impression_lag_seconds</code> histograms, see {@link Metrics}.
+ * </p>
+ *
+ * <p>
+ * This reads those histograms whenever the aggregators are flushed, estimates percentiles of the lags observed
+ * since the last flush, logs them, and writes them as points of the measurement <code>ingest_lag</code>. If the 99th
+ * percentile of the last stage that saw impressions is above the threshold, it logs a <code>LAGALERT</code> warning
+ * and sets <code>impression_lag_alert</code>.
+ * </p>
+ */
+public final class LagReport implements Aggregator {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LagReport.class);
+
+  public static final String MEASUREMENT = "ingest_lag";
+  private static final String[] STAGES = { "read", "evicted", "enriched" };
+  private static final String[] FIELDS = { "count", "p50_ms", "p90_ms", "p99_ms" };
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+  private final Duration alertThreshold;
+  private final List<Stage> stages = new ArrayList<>();
+  private boolean alerting;
+
+  /**
+   * A histogram to report on, and its bucket counts at the last flush
+   */
+  private static final class Stage {
+    private final String name;
+    private final String sink;
+    private final Histogram histogram;
+    private long[] previous;
+
+    private Stage(final String name, final String sink, final Histogram histogram) {
+      this.name = name;
+      this.sink = sink;
+      this.histogram = histogram;
+      this.previous = histogram.getBucketCounts();
+    }
+  }
+
+  /**
+   * @param alertThreshold The lag to alert at, or zero for no alerts
+   * @param sinks          The sinks' names
+   */
+  public LagReport(final Duration alertThreshold, final List<String> sinks) {
+    this.alertThreshold = alertThreshold;
+    for (final String stage : STAGES)
+      this.stages.add(new Stage(stage, "", Metrics.impressionLag(stage)));
+    for (final String sink : sinks)
+      this.stages.add(new Stage("written", sink, Metrics.forSink(sink).getImpressionLag()));
+  }
+
+  /**
+   * Compute an impression's lag
+   *
+   * @param logTime   The impression's log time stamp
+   * @param nowMillis The current time, in milliseconds since the epoch
+   * @return The lag in seconds, never negative
+   */
+  public static double lagSeconds(final OffsetDateTime logTime, final long nowMillis) {
+    return Math.max(0, nowMillis - logTime.toInstant().toEpochMilli()) / 1000.0;
+  }
+
+  @Override
+  public void add(final Impression impression) {
+    // The stages record the lag themselves
+  }
+
+  @Override
+  public synchronized List<DataPoint> flush(final Instant now) {
+    final long timeNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    final List<DataPoint> result = new ArrayList<>();
+    final StringBuilder summary = new StringBuilder();
+    // The stage to check against the threshold: the slowest sink, or the last stage before them
+    String alertStage = null;
+    double alertP99 = 0;
+    boolean alertOnSink = false;
+    for (final Stage stage : this.stages) {
+      final long[] counts = stage.histogram.getBucketCounts();
+      long count = 0;
+      for (int i = 0; i < counts.length; i++) {
+        final long current = counts[i];
+        counts[i] -= stage.previous[i];
+        stage.previous[i] = current;
+        count += counts[i];
+      }
+      if (count == 0)
+        continue;
+      final long[] values = new long[FIELDS.length];
+      values[0] = count;
+      final String name = stage.sink.isEmpty() ? stage.name : stage.name + " to " + stage.sink;
+      summary.append(summary.length() == 0 ? "" : ", ").append(name);
+      for (int i = 0; i < QUANTILES.length; i++) {
+        final double seconds = Histogram.quantile(stage.histogram.getUpperBounds(), counts, QUANTILES[i]);
+        values[i + 1] = Math.round(seconds * 1000);
+        summary.append(String.format(Locale.ROOT, " p%.0f %.1fs", QUANTILES[i] * 100, seconds));
+      }
+      result.add(new LagPoint(stage.name, stage.sink, values, timeNanos));
+      // The stages are in pipeline order, the sinks last
+      final double p99 = values[QUANTILES.length] / 1000.0;
+      if (!alertOnSink || p99 > alertP99) {
+        alertStage = name;
+        alertP99 = p99;
+        alertOnSink = !stage.sink.isEmpty();
+      }
+    }
+    if (summary.length() > 0)
+      LOGGER.info("Ingest lag since the last report: {}", summary);
+    if (alertStage != null && !this.alertThreshold.isZero())
+      checkThreshold(alertStage, alertP99);
+    return result;
+  }
+
+  private void checkThreshold(final String stage, final double p99) {
+    final double threshold = this.alertThreshold.toMillis() / 1000.0;
+    if (p99 > threshold) {
+      LOGGER.warn("LAGALERT, 99th percentile of the lag ({}) is {}s, above the threshold of {}s",
+                  stage,
+                  String.format(Locale.ROOT, "%.1f", p99),
+                  String.format(Locale.ROOT, "%.1f", threshold));
+      this.alerting = true;
+      Metrics.IMPRESSION_LAG_ALERT.set(1);
+    } else if (this.alerting) {
+      LOGGER.info("Lag ({}) is back below the threshold", stage);
+      this.alerting = false;
+      Metrics.IMPRESSION_LAG_ALERT.set(0);
+    }
+  }
+
+  /**
+   * The lag percentiles of one stage
+   */
+  private static final class LagPoint implements DataPoint {
+    private final String stage;
+    private final String sink;
+    private final long[] values;
+    private final long timeNanos;
+
+    private LagPoint(final String stage, final String sink, final long[] values, final long timeNanos) {
+      this.stage = stage;
+      this.sink = sink;
+      this.values = values;
+      this.timeNanos = timeNanos;
+    }
+
+    @Override
+    public void encode(final LineProtocol encoder, final ByteBuilder out) {
+      LineProtocol.encodeAggregate(out,
+                                   MEASUREMENT,
+                                   new String[] { "sink", this.sink, "stage", this.stage },
+                                   FIELDS,
+                                   this.values,
+                                   this.timeNanos);
+    }
+
+    @Override
+    public boolean isAggregate() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs log lines through filtering and the sliding window in one plain loop (not thread-safe)
+ *
+ * <p>
+ * Every line goes through a {@link FilterCascade} into a {@link Window}, and the views the window evicts are
+ * collected in a buffer that's reused from line to line. Only when there are evictions, a list of them is handed
+ * out; all other lines give the same empty list. So, unlike a chain of reactive operators, a line costs no
+ * subscriptions, and a rejected line allocates nothing.
+ * </p>
+ */
+public final class LineProcessor {
+  private static final List<RawImpression> NONE = Collections.emptyList();
+  private static final Histogram READ_LAG = Metrics.impressionLag("read");
+  private static final Histogram EVICTED_LAG = Metrics.impressionLag("evicted");
+
+  private final FilterCascade cascade;
+  private final Window window;
+  private final Clock clock;
+  private final List<RawImpression> evictions = new ArrayList<>();
+
+  /**
+   * @param cascade The filters
+   * @param window  The sliding window
+   * @param clock   The wall clock, moving the window on while there are no lines and measuring the lag (see
+   *                {@link LagReport}), or <code>null</code> if the window should only follow the lines' time stamps
+   *                (when reading old logs)
+   */
+  public LineProcessor(final FilterCascade cascade, final Window window, final Clock clock) {
+    this.cascade = cascade;
+    this.window = window;
+    this.clock = clock;
+  }
+
+  /**
+   * Process a log line
+   *
+   * @param line The line
+   * @return The views evicted because of it
+   */
+  public List<RawImpression> line(final CharSequence line) {
+    Metrics.LINES_READ.inc();
+    final RawImpression rawImpression = this.cascade.apply(line);
+    if (rawImpression == null)
+      return NONE;
+    final Instant now = now();
+    if (now != null)
+      READ_LAG.observe(LagReport.lagSeconds(rawImpression.getDate(), now.toEpochMilli()));
+    this.window.advance(rawImpression, now, this.evictions);
+    return evictions();
+  }
+
+  /**
+   * Let time pass without a line
+   *
+   * @return The views evicted because of that
+   */
+  public List<RawImpression> tick() {
+    this.window.advance(null, now(), this.evictions);
+    return evictions();
+  }
+
+  /**
+   * Evict the whole window, once the lines end
+   *
+   * @return All the views that were still in the window
+   */
+  public List<RawImpression> drain() {
+    this.window.drain(this.evictions);
+    return evictions();
+  }
+
+  private Instant now() {
+    return this.clock != null ? this.clock.instant() : null;
+  }
+
+  private List<RawImpression> evictions() {
+    if (this.evictions.isEmpty())
+      return NONE;
+    if (this.clock != null) {
+      final long now = this.clock.millis();
+      for (final RawImpression evicted : this.evictions)
+        EVICTED_LAG.observe(LagReport.lagSeconds(evicted.getDate(), now));
+    }
+    final List<RawImpression> result = new ArrayList<>(this.evictions);
+    this.evictions.clear();
+    return result;
+  }
+}
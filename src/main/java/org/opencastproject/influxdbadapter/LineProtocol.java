@@ -0,0 +1,232 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes impressions into InfluxDB's line protocol, exactly like <code>Impression.toPoint().lineProtocol()</code>
+ * does, but without building a point (not thread-safe)
+ *
+ * <p>
+ * Everything but the time stamp only depends on the episode and its metadata, so this part (measurement, tag set
+ * and field) is encoded once and cached per episode.
+ * </p>
+ */
+public final class LineProtocol {
+  public static final String IMPRESSIONS_MEASUREMENT = "impressions";
+
+  private static final int MAX_CACHED_PREFIXES = 100_000;
+
+  private final Map<String, Prefix> prefixes = new HashMap<>();
+
+  /**
+   * The encoded line up to the time stamp, and what it was encoded from
+   */
+  private static final class Prefix {
+    private final String organizationId;
+    private final String publicationChannel;
+    private final String seriesId;
+    private final byte[] bytes;
+
+    private Prefix(
+            final String organizationId,
+            final String publicationChannel,
+            final String seriesId,
+            final byte[] bytes) {
+      this.organizationId = organizationId;
+      this.publicationChannel = publicationChannel;
+      this.seriesId = seriesId;
+      this.bytes = bytes;
+    }
+
+    private boolean matches(final Impression impression) {
+      return this.organizationId.equals(impression.getOrganizationId())
+              && this.publicationChannel.equals(impression.getPublicationChannel())
+              && this.seriesId.equals(impression.getSeriesId());
+    }
+  }
+
+  /**
+   * Append an impression as one line (including the line break)
+   *
+   * @param impression The impression to encode
+   * @param out        Where to append the line
+   */
+  public void encode(final Impression impression, final ByteBuilder out) {
+    Prefix prefix = this.prefixes.get(impression.getEpisodeId());
+    if (prefix == null || !prefix.matches(impression)) {
+      if (this.prefixes.size() >= MAX_CACHED_PREFIXES)
+        this.prefixes.clear();
+      prefix = new Prefix(impression.getOrganizationId(),
+                          impression.getPublicationChannel(),
+                          impression.getSeriesId(),
+                          encodePrefix(impression).getBytes(StandardCharsets.UTF_8));
+      this.prefixes.put(impression.getEpisodeId(), prefix);
+    }
+    out.append(prefix.bytes)
+       .appendDecimal(TimeUnit.NANOSECONDS.convert(impression.getDate().toEpochSecond(), TimeUnit.SECONDS))
+       .append((byte) '\n');
+  }
+
+  /**
+   * Decode a line written by {@link #encode(Impression, ByteBuilder)} (without the line break)
+   *
+   * @param line The line to decode
+   * @return The impression, with its date in UTC
+   * @throws IllegalArgumentException If the line isn't an encoded impression
+   */
+  public static Impression decode(final String line) {
+    final String prefix = IMPRESSIONS_MEASUREMENT;
+    final String field = " value=1i ";
+    final int fieldStart = line.indexOf(field);
+    if (fieldStart < 0 || !line.startsWith(prefix))
+      throw new IllegalArgumentException("not an impression: " + line);
+    final Map<String, String> tags = new HashMap<>();
+    int i = prefix.length();
+    while (i < fieldStart) {
+      if (line.charAt(i) != ',')
+        throw new IllegalArgumentException("not an impression: " + line);
+      final int keyEnd = line.indexOf('=', i);
+      if (keyEnd < 0 || keyEnd > fieldStart)
+        throw new IllegalArgumentException("not an impression: " + line);
+      final StringBuilder value = new StringBuilder();
+      int j = keyEnd + 1;
+      while (j < fieldStart && line.charAt(j) != ',') {
+        final char c = line.charAt(j);
+        if (c == '\\' && j + 1 < fieldStart && isEscaped(line.charAt(j + 1)))
+          j++;
+        value.append(line.charAt(j));
+        j++;
+      }
+      tags.put(line.substring(i + 1, keyEnd), value.toString());
+      i = j;
+    }
+    final long nanos;
+    try {
+      nanos = Long.parseLong(line.substring(fieldStart + field.length()));
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("not an impression: " + line, e);
+    }
+    return new Impression(tags.getOrDefault("episodeId", ""),
+                          tags.getOrDefault("organizationId", ""),
+                          tags.getOrDefault("publicationChannel", ""),
+                          tags.getOrDefault("seriesId", ""),
+                          OffsetDateTime.ofInstant(Instant.ofEpochSecond(TimeUnit.NANOSECONDS.toSeconds(nanos)),
+                                                   ZoneOffset.UTC));
+  }
+
+  /**
+   * Append an aggregate point with integer fields as one line (including the line break)
+   *
+   * @param out         Where to append the line
+   * @param measurement The measurement
+   * @param tags        Tag keys and values, alternating, sorted by key; tags with empty values are left out
+   * @param fields      Field keys, one for every value
+   * @param values      Field values
+   * @param timeNanos   The time stamp, in nanoseconds since the epoch
+   */
+  public static void encodeAggregate(
+          final ByteBuilder out,
+          final String measurement,
+          final String[] tags,
+          final String[] fields,
+          final long[] values,
+          final long timeNanos) {
+    encodeAggregate(out, measurement, tags, fields, values, new String[0], timeNanos);
+  }
+
+  /**
+   * Append an aggregate point with integer and string fields as one line (including the line break)
+   *
+   * @param out          Where to append the line
+   * @param measurement  The measurement
+   * @param tags         Tag keys and values, alternating, sorted by key; tags with empty values are left out
+   * @param fields       Integer field keys, one for every value
+   * @param values       Integer field values
+   * @param stringFields String field keys and values, alternating
+   * @param timeNanos    The time stamp, in nanoseconds since the epoch
+   */
+  public static void encodeAggregate(
+          final ByteBuilder out,
+          final String measurement,
+          final String[] tags,
+          final String[] fields,
+          final long[] values,
+          final String[] stringFields,
+          final long timeNanos) {
+    final StringBuilder result = new StringBuilder(128);
+    result.append(measurement);
+    for (int i = 0; i < tags.length; i += 2)
+      appendTag(result, tags[i], tags[i + 1]);
+    for (int i = 0; i < fields.length; i++)
+      result.append(i == 0 ? ' ' : ',').append(fields[i]).append('=').append(values[i]).append('i');
+    for (int i = 0; i < stringFields.length; i += 2) {
+      result.append(i == 0 && fields.length == 0 ? ' ' : ',').append(stringFields[i]).append("=\"");
+      for (int j = 0; j < stringFields[i + 1].length(); j++) {
+        final char c = stringFields[i + 1].charAt(j);
+        if (c == '"' || c == '\\')
+          result.append('\\');
+        result.append(c);
+      }
+      result.append('"');
+    }
+    out.append(result.append(' ').toString().getBytes(StandardCharsets.UTF_8))
+       .appendDecimal(timeNanos)
+       .append((byte) '\n');
+  }
+
+  private static boolean isEscaped(final char c) {
+    return c == ' ' || c == ',' || c == '=';
+  }
+
+  /**
+   * Encode measurement, tags (sorted by key, empty ones left out) and field, as <code>Point</code> does
+   */
+  private static String encodePrefix(final Impression impression) {
+    final StringBuilder result = new StringBuilder(128);
+    result.append(IMPRESSIONS_MEASUREMENT);
+    appendTag(result, "episodeId", impression.getEpisodeId());
+    appendTag(result, "organizationId", impression.getOrganizationId());
+    appendTag(result, "publicationChannel", impression.getPublicationChannel());
+    appendTag(result, "seriesId", impression.getSeriesId());
+    return result.append(" value=1i ").toString();
+  }
+
+  private static void appendTag(final StringBuilder result, final String key, final String value) {
+    if (value.isEmpty())
+      return;
+    result.append(',').append(key).append('=');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (isEscaped(c))
+        result.append('\\');
+      result.append(c);
+    }
+  }
+}
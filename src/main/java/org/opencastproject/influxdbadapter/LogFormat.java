@@ -0,0 +1,539 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The layout of the log lines, compiled into an extractor for the fields the adapter needs (immutable)
+ *
+ * <p>
+ * A layout is either an Apache <code>LogFormat</code> or nginx <code>log_format</code> style template, or a mapping
+ * of the fields to the keys of JSON log lines. Templates are compiled into alternating literals and fields; every
+ * field ends where the following literal starts, so a line is taken apart in a single pass without backtracking.
+ * The last field extends to the template's final literal, which the line has to end with; lines with anything
+ * after it don't have the format.
+ * Fields the adapter doesn't need are only skipped, and nothing is copied: {@link #extract(CharSequence, int[])} just
+ * records where the needed fields are.
+ * </p>
+ *
+ * <p>
+ * The fields are the client address (<code>%h</code>, <code>%a</code>, <code>$remote_addr</code>), the time
+ * (<code>%t</code>, <code>$time_local</code>, <code>$time_iso8601</code>), the request line (<code>%r</code>,
+ * <code>$request</code>), the status (<code>%s</code>, <code>%&gt;s</code>, <code>$status</code>) and the user agent
+ * (<code>%{User-Agent}i</code>, <code>$http_user_agent</code>). The first three are required.
+ * </p>
+ */
+public final class LogFormat {
+  /**
+   * Apache's "combined" log format
+   */
+  public static final String COMBINED_TEMPLATE = "%h %l %u %t \"%r\" %>s %b \"%{Referer}i\" \"%{User-Agent}i\"";
+  public static final LogFormat COMBINED = template(COMBINED_TEMPLATE);
+
+  public static final int CLIENT = 0;
+  public static final int TIME = 1;
+  public static final int REQUEST = 2;
+  public static final int STATUS = 3;
+  public static final int USER_AGENT = 4;
+  /**
+   * Size of the array {@link #extract(CharSequence, int[])} fills
+   */
+  public static final int BOUNDS = 10;
+
+  /**
+   * Names of the fields in a JSON mapping, by field
+   */
+  public static final List<String> FIELD_NAMES = Arrays.asList("client", "time", "request", "status", "user-agent");
+
+  private static final int SKIP = -1;
+
+  // Template: literals[i] comes before fields[i], and the last literal after the last field
+  private final String[] literals;
+  private final int[] fields;
+  // JSON: the key of each field
+  private final String[] keys;
+
+  private LogFormat(final String[] literals, final int[] fields, final String[] keys) {
+    this.literals = literals;
+    this.fields = fields;
+    this.keys = keys;
+  }
+
+  /**
+   * Compile an Apache or nginx style template
+   *
+   * @param template The template, for example {@link #COMBINED_TEMPLATE}
+   * @return The compiled format
+   * @throws IllegalArgumentException If the template lacks a required field, or can't be taken apart unambiguously
+   */
+  public static LogFormat template(final String template) {
+    final List<String> literals = new ArrayList<>();
+    final List<Integer> fields = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    int i = 0;
+    while (i < template.length()) {
+      final char c = template.charAt(i);
+      if (c == '%' && i + 1 < template.length() && template.charAt(i + 1) == '%') {
+        literal.append('%');
+        i += 2;
+      } else if (c == '%') {
+        int j = i + 1;
+        while (j < template.length() && (template.charAt(j) == '>' || template.charAt(j) == '<'))
+          j++;
+        String argument = null;
+        if (j < template.length() && template.charAt(j) == '{') {
+          final int close = template.indexOf('}', j);
+          if (close < 0)
+            throw new IllegalArgumentException("Unterminated directive at position " + i);
+          argument = template.substring(j + 1, close);
+          j = close + 1;
+        }
+        if (j >= template.length())
+          throw new IllegalArgumentException("Incomplete directive at position " + i);
+        final char directive = template.charAt(j);
+        if (directive == 't' && argument != null)
+          throw new IllegalArgumentException("Custom time formats (%{...}t) aren't supported");
+        if (directive == 't') {
+          // %t is written in brackets
+          literal.append('[');
+          addField(literals, fields, literal, TIME);
+          literal.append(']');
+        } else {
+          addField(literals, fields, literal, apacheField(directive, argument));
+        }
+        i = j + 1;
+      } else if (c == '$' && i + 1 < template.length() && isNameChar(template.charAt(i + 1))) {
+        int j = i + 1;
+        while (j < template.length() && isNameChar(template.charAt(j)))
+          j++;
+        addField(literals, fields, literal, nginxField(template.substring(i + 1, j)));
+        i = j;
+      } else {
+        literal.append(c);
+        i++;
+      }
+    }
+    literals.add(literal.toString());
+    for (int field = CLIENT; field <= REQUEST; field++) {
+      if (!fields.contains(field))
+        throw new IllegalArgumentException("The template lacks the " + FIELD_NAMES.get(field));
+    }
+    return new LogFormat(literals.toArray(new String[0]), fields.stream().mapToInt(Integer::intValue).toArray(), null);
+  }
+
+  /**
+   * Create a format for log lines that are JSON objects
+   *
+   * @param keys The JSON key of each field, by its name out of {@link #FIELD_NAMES}
+   * @return The format
+   * @throws IllegalArgumentException If a field is unknown, or a required one is missing
+   */
+  public static LogFormat json(final Map<String, String> keys) {
+    final String[] result = new String[FIELD_NAMES.size()];
+    for (final Map.Entry<String, String> entry : keys.entrySet()) {
+      final int field = FIELD_NAMES.indexOf(entry.getKey());
+      if (field < 0)
+        throw new IllegalArgumentException("Unknown field \"" + entry.getKey() + "\", must be one of " + FIELD_NAMES);
+      result[field] = entry.getValue();
+    }
+    for (int field = CLIENT; field <= REQUEST; field++) {
+      if (result[field] == null)
+        throw new IllegalArgumentException("The JSON mapping lacks the " + FIELD_NAMES.get(field));
+    }
+    return new LogFormat(null, null, result);
+  }
+
+  private static void addField(
+          final List<String> literals,
+          final List<Integer> fields,
+          final StringBuilder literal,
+          final int field) {
+    if (literal.length() == 0 && !fields.isEmpty())
+      throw new IllegalArgumentException("Fields must be separated by something, but two follow each other directly");
+    if (field != SKIP && fields.contains(field))
+      throw new IllegalArgumentException("The " + FIELD_NAMES.get(field) + " appears twice");
+    literals.add(literal.toString());
+    literal.setLength(0);
+    fields.add(field);
+  }
+
+  private static int apacheField(final char directive, final String argument) {
+    switch (directive) {
+      case 'h':
+      case 'a':
+        return CLIENT;
+      case 'r':
+        return REQUEST;
+      case 's':
+        return STATUS;
+      case 'i':
+        return argument != null && argument.toLowerCase(Locale.ENGLISH).equals("user-agent") ? USER_AGENT : SKIP;
+      default:
+        return SKIP;
+    }
+  }
+
+  private static int nginxField(final String variable) {
+    switch (variable) {
+      case "remote_addr":
+        return CLIENT;
+      case "time_local":
+      case "time_iso8601":
+        return TIME;
+      case "request":
+        return REQUEST;
+      case "status":
+        return STATUS;
+      case "http_user_agent":
+        return USER_AGENT;
+      default:
+        return SKIP;
+    }
+  }
+
+  private static boolean isNameChar(final char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+  }
+
+  /**
+   * Find the fields in a log line
+   *
+   * @param line   The log line
+   * @param bounds At least {@link #BOUNDS} elements, receiving the start and end of each field (see {@link #start}
+   *               and {@link #end}), <code>-1</code> for fields the line doesn't have
+   * @return <code>false</code> if the line doesn't have this format
+   */
+  public boolean extract(final CharSequence line, final int[] bounds) {
+    Arrays.fill(bounds, 0, BOUNDS, -1);
+    return this.keys != null ? extractJson(line, bounds) : extractTemplate(line, bounds);
+  }
+
+  /**
+   * @param bounds As filled by {@link #extract(CharSequence, int[])}
+   * @param field  The field, for example {@link #REQUEST}
+   * @return Where the field starts in the line, <code>-1</code> if it's missing
+   */
+  public static int start(final int[] bounds, final int field) {
+    return bounds[2 * field];
+  }
+
+  /**
+   * @param bounds As filled by {@link #extract(CharSequence, int[])}
+   * @param field  The field, for example {@link #REQUEST}
+   * @return Where the field ends in the line (exclusive), <code>-1</code> if it's missing
+   */
+  public static int end(final int[] bounds, final int field) {
+    return bounds[2 * field + 1];
+  }
+
+  /**
+   * Get a field's value
+   *
+   * @param line   The log line
+   * @param bounds As filled by {@link #extract(CharSequence, int[])}
+   * @param field  The field, for example {@link #REQUEST}
+   * @return The field's value, <code>null</code> if it's missing
+   */
+  public String value(final CharSequence line, final int[] bounds, final int field) {
+    final int start = start(bounds, field);
+    if (start < 0)
+      return null;
+    final String raw = line.subSequence(start, end(bounds, field)).toString();
+    return this.keys != null && raw.indexOf('\\') >= 0 ? unescape(raw) : raw;
+  }
+
+  /**
+   * Check whether a field contains a string, without copying it (unless it has JSON escapes)
+   *
+   * @param line   The log line
+   * @param bounds As filled by {@link #extract(CharSequence, int[])}
+   * @param field  The field, for example {@link #USER_AGENT}
+   * @param s      The string to look for
+   * @param prefix Whether the string has to be at the field's start
+   * @return <code>false</code> if it doesn't, or if the field is missing
+   */
+  public boolean contains(
+          final CharSequence line,
+          final int[] bounds,
+          final int field,
+          final String s,
+          final boolean prefix) {
+    final int start = start(bounds, field);
+    if (start < 0)
+      return false;
+    final int end = end(bounds, field);
+    if (this.keys != null && indexOf(line, '\\', start, end) >= 0) {
+      final String value = value(line, bounds, field);
+      return prefix ? value.startsWith(s) : value.contains(s);
+    }
+    if (prefix)
+      return end - start >= s.length() && startsWith(line, start, s);
+    for (int i = start; i <= end - s.length(); i++) {
+      if (startsWith(line, i, s))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Get a field's value as a number, without copying it
+   *
+   * @param line   The log line
+   * @param bounds As filled by {@link #extract(CharSequence, int[])}
+   * @param field  The field, for example {@link #STATUS}
+   * @return The number, or <code>-1</code> if the field isn't one (or too large), <code>-2</code> if it's missing
+   */
+  public static int intValue(final CharSequence line, final int[] bounds, final int field) {
+    final int start = start(bounds, field);
+    if (start < 0)
+      return -2;
+    final int end = end(bounds, field);
+    if (end == start || end - start > 9)
+      return -1;
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      final char c = line.charAt(i);
+      if (c < '0' || c > '9')
+        return -1;
+      result = result * 10 + c - '0';
+    }
+    return result;
+  }
+
+  private static int indexOf(final CharSequence line, final char c, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (line.charAt(i) == c)
+        return i;
+    }
+    return -1;
+  }
+
+  private boolean extractTemplate(final CharSequence line, final int[] bounds) {
+    if (!startsWith(line, 0, this.literals[0]))
+      return false;
+    int position = this.literals[0].length();
+    for (int i = 0; i < this.fields.length; i++) {
+      final String next = this.literals[i + 1];
+      // The last field takes the rest of the line, up to the final literal
+      final int end = i == this.fields.length - 1 ? line.length() - next.length() : find(line, position, next);
+      if (end < position || !startsWith(line, end, next))
+        return false;
+      if (this.fields[i] != SKIP) {
+        bounds[2 * this.fields[i]] = position;
+        bounds[2 * this.fields[i] + 1] = end;
+      }
+      position = end + next.length();
+    }
+    return true;
+  }
+
+  /**
+   * Find a literal, ignoring quotes escaped with a backslash
+   */
+  private static int find(final CharSequence line, final int from, final String literal) {
+    final char first = literal.charAt(0);
+    for (int i = from; i <= line.length() - literal.length(); i++) {
+      if (line.charAt(i) == first
+              && (first != '"' || i == 0 || line.charAt(i - 1) != '\\')
+              && startsWith(line, i, literal))
+        return i;
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(final CharSequence line, final int offset, final String literal) {
+    if (offset + literal.length() > line.length())
+      return false;
+    for (int i = 0; i < literal.length(); i++) {
+      if (line.charAt(offset + i) != literal.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  private boolean extractJson(final CharSequence line, final int[] bounds) {
+    int position = skipWhitespace(line, 0);
+    if (position >= line.length() || line.charAt(position) != '{')
+      return false;
+    position = skipWhitespace(line, position + 1);
+    if (position < line.length() && line.charAt(position) == '}')
+      return false;
+    while (true) {
+      if (position >= line.length() || line.charAt(position) != '"')
+        return false;
+      final int keyEnd = stringEnd(line, position + 1);
+      if (keyEnd < 0)
+        return false;
+      final int field = field(line, position + 1, keyEnd);
+      position = skipWhitespace(line, keyEnd + 1);
+      if (position >= line.length() || line.charAt(position) != ':')
+        return false;
+      position = skipWhitespace(line, position + 1);
+      if (position >= line.length())
+        return false;
+      final int valueStart;
+      final int valueEnd;
+      final char c = line.charAt(position);
+      if (c == '"') {
+        valueStart = position + 1;
+        valueEnd = stringEnd(line, valueStart);
+        position = valueEnd + 1;
+      } else if (c == '{' || c == '[') {
+        valueStart = position;
+        valueEnd = nestedEnd(line, position);
+        position = valueEnd;
+      } else {
+        valueStart = position;
+        int end = position;
+        while (end < line.length() && ",} \t".indexOf(line.charAt(end)) < 0)
+          end++;
+        valueEnd = end;
+        position = end;
+      }
+      if (valueEnd < 0)
+        return false;
+      if (field != SKIP) {
+        bounds[2 * field] = valueStart;
+        bounds[2 * field + 1] = valueEnd;
+      }
+      position = skipWhitespace(line, position);
+      if (position >= line.length())
+        return false;
+      if (line.charAt(position) == '}')
+        break;
+      if (line.charAt(position) != ',')
+        return false;
+      position = skipWhitespace(line, position + 1);
+    }
+    for (int field = CLIENT; field <= REQUEST; field++) {
+      if (start(bounds, field) < 0)
+        return false;
+    }
+    return true;
+  }
+
+  private int field(final CharSequence line, final int start, final int end) {
+    for (int field = 0; field < this.keys.length; field++) {
+      final String key = this.keys[field];
+      if (key != null && key.length() == end - start && startsWith(line, start, key))
+        return field;
+    }
+    return SKIP;
+  }
+
+  private static int skipWhitespace(final CharSequence line, final int from) {
+    int i = from;
+    while (i < line.length() && Character.isWhitespace(line.charAt(i)))
+      i++;
+    return i;
+  }
+
+  /**
+   * @return The position of the quote ending the string starting at <code>from</code>, or <code>-1</code>
+   */
+  private static int stringEnd(final CharSequence line, final int from) {
+    int i = from;
+    while (i < line.length()) {
+      final char c = line.charAt(i);
+      if (c == '"')
+        return i;
+      // Skip escaped characters
+      i += c == '\\' ? 2 : 1;
+    }
+    return -1;
+  }
+
+  /**
+   * @return The position after the object or array starting at <code>from</code>, or <code>-1</code>
+   */
+  private static int nestedEnd(final CharSequence line, final int from) {
+    int depth = 0;
+    int i = from;
+    while (i < line.length()) {
+      final char c = line.charAt(i);
+      if (c == '"') {
+        i = stringEnd(line, i + 1);
+        if (i < 0)
+          return -1;
+      } else if (c == '{' || c == '[') {
+        depth++;
+      } else if ((c == '}' || c == ']') && --depth == 0) {
+        return i + 1;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  private static String unescape(final String s) {
+    final StringBuilder result = new StringBuilder(s.length());
+    int i = 0;
+    while (i < s.length()) {
+      final char c = s.charAt(i++);
+      if (c != '\\' || i == s.length()) {
+        result.append(c);
+        continue;
+      }
+      final char escaped = s.charAt(i++);
+      switch (escaped) {
+        case 'b':
+          result.append('\b');
+          break;
+        case 'f':
+          result.append('\f');
+          break;
+        case 'n':
+          result.append('\n');
+          break;
+        case 'r':
+          result.append('\r');
+          break;
+        case 't':
+          result.append('\t');
+          break;
+        case 'u':
+          if (i + 4 <= s.length()) {
+            try {
+              result.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+              i += 4;
+              break;
+            } catch (final NumberFormatException e) {
+              // Taken literally below
+            }
+          }
+          result.append(escaped);
+          break;
+        default:
+          // Quotes, backslashes, slashes, and nginx's \xHH, which is kept as it is
+          if (escaped == 'x')
+            result.append('\\');
+          result.append(escaped);
+      }
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Receives log lines on a TCP port, handing them over in a bounded queue
+ *
+ * <p>
+ * Meant for Apache's piped logs (<code>CustomLog "|/usr/bin/nc 127.0.0.1 9466" combined</code>) or a syslog
+ * forwarder sending one line per log entry. Any number of senders may be connected at once; they are all read by a
+ * single thread with non-blocking I/O, and every read hands over all the complete lines it got. Lines a syslog
+ * forwarder prefixed with a traditional header (<code>&lt;PRI&gt;timestamp host tag: </code>) are stripped of it.
+ * </p>
+ *
+ * <p>
+ * When the queue is full, because processing has fallen behind, the thread stops reading, so the senders are held
+ * back by TCP flow control instead of lines being lost.
+ * </p>
+ *
+ * <p>
+ * Lines longer than {@link #MAX_LINE_LENGTH} bytes are discarded, so a sender that never sends a line terminator
+ * cannot exhaust the memory.
+ * </p>
+ */
+public final class LogListener implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LogListener.class);
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  /**
+   * Longest line accepted, in bytes, without its line terminator; far beyond any sensible access log line
+   */
+  static final int MAX_LINE_LENGTH = 64 * 1024;
+  private static final Counter SKIPPED_LINE_LENGTH = Metrics.linesSkipped("line_length");
+  private static final long POLL_MILLIS = 250;
+  private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final BlockingQueue<String> queue;
+  private final Thread thread;
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  private int connections;
+  private volatile IOException failure;
+  private volatile boolean closed;
+
+  /**
+   * A sender's line that isn't complete yet
+   */
+  private static final class Connection {
+    private byte[] pending = new byte[256];
+    private int length;
+    // Whether the line is too long, and is being skipped up to its line terminator
+    private boolean discarding;
+  }
+
+  /**
+   * Start listening
+   *
+   * @param address   The address to listen on; port 0 picks a free one
+   * @param queueSize Number of lines read ahead, at most
+   * @throws IOException If the address couldn't be bound
+   */
+  public LogListener(final InetSocketAddress address, final int queueSize) throws IOException {
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    try {
+      this.server.bind(address);
+      this.server.configureBlocking(false);
+      this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    } catch (final IOException e) {
+      this.server.close();
+      this.selector.close();
+      throw e;
+    }
+    LOGGER.info("Receiving log lines on {}", this.server.getLocalAddress());
+    this.thread = new Thread(this::run, "log-listener");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Receive log lines
+   *
+   * @param address   The address to listen on
+   * @param queueSize Number of lines read ahead, at most
+   * @return The received lines, never completing, emitted on an I/O thread. Cancelling stops listening.
+   */
+  public static Flowable<String> lines(final InetSocketAddress address, final int queueSize) {
+    return Flowable.generate(() -> new LogListener(address, queueSize),
+                             (final LogListener listener, final Emitter<String> emitter) -> {
+                               try {
+                                 emitter.onNext(listener.take());
+                               } catch (final InterruptedException e) {
+                                 // Cancelled while waiting
+                                 emitter.onComplete();
+                               }
+                             },
+                             LogListener::close)
+            // Waiting for lines mustn't block the thread that requested them
+            .subscribeOn(Schedulers.io());
+  }
+
+  /**
+   * @return The address actually listened on
+   * @throws IOException If the address cannot be determined
+   */
+  public InetSocketAddress getLocalAddress() throws IOException {
+    return (InetSocketAddress) this.server.getLocalAddress();
+  }
+
+  /**
+   * Wait for the next line
+   *
+   * @return The line, without its line terminator
+   * @throws IOException          If listening failed
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public String take() throws IOException, InterruptedException {
+    while (true) {
+      final String line = this.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (line != null) {
+        Metrics.INGEST_QUEUE_SIZE.set(this.queue.size());
+        return line;
+      }
+      if (this.failure != null)
+        throw this.failure;
+    }
+  }
+
+  /**
+   * Stop listening and close all connections. Lines still in the queue are discarded.
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    this.thread.interrupt();
+    this.selector.wakeup();
+    try {
+      this.thread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    try {
+      while (!this.closed) {
+        this.selector.select();
+        final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid())
+            continue;
+          if (key.isAcceptable())
+            accept();
+          else if (key.isReadable())
+            read(key);
+        }
+      }
+    } catch (final InterruptedException e) {
+      // Closing
+    } catch (final IOException e) {
+      if (!this.closed) {
+        LOGGER.error("Couldn't receive log lines: {}", e.getMessage());
+        this.failure = e;
+      }
+    } finally {
+      for (final SelectionKey key : this.selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (final IOException e) {
+          // Nothing left to do
+        }
+      }
+      try {
+        this.selector.close();
+      } catch (final IOException e) {
+        // Nothing left to do
+      }
+      Metrics.INGEST_CONNECTIONS.set(0);
+    }
+  }
+
+  private void accept() throws IOException {
+    final SocketChannel channel = this.server.accept();
+    if (channel == null)
+      return;
+    channel.configureBlocking(false);
+    channel.register(this.selector, SelectionKey.OP_READ, new Connection());
+    Metrics.INGEST_CONNECTIONS.set(++this.connections);
+    LOGGER.debug("Accepted log connection from {}", channel.getRemoteAddress());
+  }
+
+  private void read(final SelectionKey key) throws InterruptedException {
+    final SocketChannel channel = (SocketChannel) key.channel();
+    final Connection connection = (Connection) key.attachment();
+    int read;
+    try {
+      this.readBuffer.clear();
+      read = channel.read(this.readBuffer);
+    } catch (final IOException e) {
+      if (this.closed)
+        return;
+      LOGGER.warn("Log connection failed: {}", e.getMessage());
+      read = -1;
+    }
+    if (read > 0) {
+      putLines(connection, this.readBuffer.array(), read);
+      return;
+    }
+    if (read < 0) {
+      // The sender's last line may lack its line terminator
+      if (connection.length > 0 && !connection.discarding)
+        put(connection.pending, 0, connection.length);
+      key.cancel();
+      try {
+        channel.close();
+      } catch (final IOException e) {
+        // Nothing left to do
+      }
+      Metrics.INGEST_CONNECTIONS.set(--this.connections);
+    }
+  }
+
+  /**
+   * Hand over the complete lines read, waiting for room in the queue, and keep the rest for the next read
+   */
+  private void putLines(final Connection connection, final byte[] buffer, final int length)
+          throws InterruptedException {
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] != '\n')
+        continue;
+      if (connection.discarding) {
+        connection.discarding = false;
+      } else if (connection.length + i - lineStart > MAX_LINE_LENGTH) {
+        discard(connection);
+        connection.discarding = false;
+      } else if (connection.length == 0) {
+        put(buffer, lineStart, i);
+      } else {
+        append(connection, buffer, lineStart, i);
+        put(connection.pending, 0, connection.length);
+        connection.length = 0;
+      }
+      lineStart = i + 1;
+    }
+    if (connection.discarding)
+      return;
+    if (connection.length + length - lineStart > MAX_LINE_LENGTH)
+      discard(connection);
+    else
+      append(connection, buffer, lineStart, length);
+  }
+
+  /**
+   * Drop the line received so far, and skip the rest of it
+   */
+  private static void discard(final Connection connection) {
+    LOGGER.warn("Discarding a log line longer than {} bytes", MAX_LINE_LENGTH);
+    SKIPPED_LINE_LENGTH.inc();
+    connection.length = 0;
+    connection.discarding = true;
+    // Don't keep a buffer that large around
+    if (connection.pending.length > MAX_LINE_LENGTH)
+      connection.pending = new byte[256];
+  }
+
+  private static void append(final Connection connection, final byte[] buffer, final int start, final int end) {
+    final int length = end - start;
+    if (connection.length + length > connection.pending.length)
+      connection.pending = Arrays.copyOf(connection.pending,
+                                         Math.max(connection.pending.length * 2, connection.length + length));
+    System.arraycopy(buffer, start, connection.pending, connection.length, length);
+    connection.length += length;
+  }
+
+  private void put(final byte[] buffer, final int start, final int end) throws InterruptedException {
+    final int lineEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+    final int lineStart = syslogMessageStart(buffer, start, lineEnd);
+    this.queue.put(new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+    Metrics.INGEST_QUEUE_SIZE.set(this.queue.size());
+  }
+
+  /**
+   * Skip a traditional syslog header (<code>&lt;PRI&gt;timestamp host tag: </code>), which an Apache log line never
+   * starts with
+   */
+  private static int syslogMessageStart(final byte[] buffer, final int start, final int end) {
+    if (start == end || buffer[start] != '<')
+      return start;
+    for (int i = start; i < end - 1; i++) {
+      if (buffer[i] == ':' && buffer[i + 1] == ' ')
+        return i + 2;
+    }
+    return start;
+  }
+}
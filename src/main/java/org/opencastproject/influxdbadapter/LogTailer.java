@@ -0,0 +1,292 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Follows a log file, like <code>tail -F</code>, handing its lines over in a bounded queue
+ *
+ * <p>
+ * The file is read by a separate thread. When the queue is full, because processing has fallen behind, the thread
+ * simply stops reading: the lines are safe on disk, so memory use stays the same however far behind we are. Reading
+ * continues where it stopped once there is room again.
+ * </p>
+ *
+ * <p>
+ * Whatever is in the file is read right away; only at its end the file is polled for new lines. A log rotation
+ * (a new file under the same name) is picked up after the old file has been read to its end, and a truncated file
+ * is read again from its beginning.
+ * </p>
+ *
+ * <p>
+ * Lines longer than {@link LogListener#MAX_LINE_LENGTH} bytes are discarded, so a file that never gets a line
+ * terminator cannot exhaust the memory.
+ * </p>
+ */
+public final class LogTailer implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LogTailer.class);
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  private static final Counter SKIPPED_LINE_LENGTH = Metrics.linesSkipped("line_length");
+  private static final long POLL_MILLIS = 250;
+  private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+  private final Path path;
+  private final BlockingQueue<String> queue;
+  private final Thread thread;
+  private FileChannel channel;
+  private Object fileKey;
+  private long position;
+  // Whether the current line is too long, and is being skipped up to its line terminator
+  private boolean discarding;
+  private volatile IOException failure;
+  private volatile boolean closed;
+
+  /**
+   * Open the file and start reading it
+   *
+   * @param path          The file to follow
+   * @param startPosition Where to start reading, in bytes
+   * @param queueSize     Number of lines read ahead, at most
+   * @throws FileNotFoundException If the file doesn't exist
+   * @throws IOException           If the file couldn't be opened
+   */
+  public LogTailer(final Path path, final long startPosition, final int queueSize) throws IOException {
+    this.path = path;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    try {
+      open();
+    } catch (final NoSuchFileException e) {
+      throw new FileNotFoundException(path.toString());
+    }
+    this.position = Math.min(startPosition, this.channel.size());
+    this.channel.position(this.position);
+    this.thread = new Thread(this::run, "log-tailer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Follow a log file
+   *
+   * @param path          The file to follow
+   * @param startPosition Where to start reading, in bytes
+   * @param queueSize     Number of lines read ahead, at most
+   * @return The file's lines, never completing, emitted on an I/O thread. Cancelling stops reading the file.
+   */
+  public static Flowable<String> lines(final Path path, final long startPosition, final int queueSize) {
+    return Flowable.generate(() -> new LogTailer(path, startPosition, queueSize),
+                             (final LogTailer tailer, final Emitter<String> emitter) -> {
+                               try {
+                                 emitter.onNext(tailer.take());
+                               } catch (final InterruptedException e) {
+                                 // Cancelled while waiting
+                                 emitter.onComplete();
+                               }
+                             },
+                             LogTailer::close)
+            // Waiting for lines mustn't block the thread that requested them
+            .subscribeOn(Schedulers.io());
+  }
+
+  /**
+   * Wait for the next line
+   *
+   * @return The line, without its line terminator
+   * @throws IOException          If the file cannot be read anymore
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public String take() throws IOException, InterruptedException {
+    while (true) {
+      final String line = this.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (line != null) {
+        Metrics.INGEST_QUEUE_SIZE.set(this.queue.size());
+        return line;
+      }
+      if (this.failure != null)
+        throw this.failure;
+    }
+  }
+
+  /**
+   * Stop reading and close the file. Lines still in the queue are discarded.
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    this.thread.interrupt();
+    try {
+      this.thread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void open() throws IOException {
+    this.channel = FileChannel.open(this.path, StandardOpenOption.READ);
+    this.fileKey = Files.readAttributes(this.path, BasicFileAttributes.class).fileKey();
+    this.position = 0;
+  }
+
+  private void run() {
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    // Bytes [0, pending) of the buffer are the beginning of a line that isn't complete yet
+    int pending = 0;
+    try {
+      while (!this.closed) {
+        // Longer lines are discarded by putLines, so the buffer grows to twice the longest line at most
+        if (pending == buffer.length)
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        final int read = this.channel.read(ByteBuffer.wrap(buffer, pending, buffer.length - pending));
+        if (read > 0) {
+          this.position += read;
+          pending = putLines(buffer, pending + read);
+          continue;
+        }
+        switch (checkFile()) {
+          case ROTATED:
+            // The rotated file's last line may lack its line terminator
+            if (pending > 0 && !this.discarding)
+              put(buffer, 0, pending);
+            pending = 0;
+            this.discarding = false;
+            this.channel.close();
+            open();
+            break;
+          case TRUNCATED:
+            pending = 0;
+            this.discarding = false;
+            this.position = 0;
+            this.channel.position(0);
+            break;
+          default:
+            Thread.sleep(POLL_MILLIS);
+        }
+      }
+    } catch (final InterruptedException e) {
+      // Closing
+    } catch (final IOException e) {
+      if (!this.closed) {
+        LOGGER.error("Couldn't read log file \"{}\": {}", this.path, e.getMessage());
+        this.failure = e;
+      }
+    } finally {
+      try {
+        this.channel.close();
+      } catch (final IOException e) {
+        // Nothing left to do
+      }
+    }
+  }
+
+  private enum FileState {
+    UNCHANGED, ROTATED, TRUNCATED
+  }
+
+  /**
+   * Check, at the end of the file, whether the log was rotated or truncated in the meantime
+   */
+  private FileState checkFile() throws IOException {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+    } catch (final NoSuchFileException e) {
+      // In the middle of a rotation, the new file will show up
+      return FileState.UNCHANGED;
+    }
+    if (this.fileKey != null && !Objects.equals(this.fileKey, attributes.fileKey())) {
+      LOGGER.info("Log file \"{}\" was rotated, reading the new one", this.path);
+      return FileState.ROTATED;
+    }
+    if (this.channel.size() < this.position) {
+      LOGGER.info("Log file \"{}\" was truncated, reading it from the beginning", this.path);
+      return FileState.TRUNCATED;
+    }
+    return FileState.UNCHANGED;
+  }
+
+  /**
+   * Hand over the complete lines in the buffer, waiting for room in the queue
+   *
+   * @return The number of bytes left in the buffer, moved to its start
+   */
+  private int putLines(final byte[] buffer, final int length) throws InterruptedException {
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] != '\n')
+        continue;
+      if (this.discarding) {
+        this.discarding = false;
+      } else if (i - lineStart > LogListener.MAX_LINE_LENGTH) {
+        discard();
+        this.discarding = false;
+      } else {
+        put(buffer, lineStart, i);
+      }
+      lineStart = i + 1;
+    }
+    if (this.discarding)
+      return 0;
+    if (length - lineStart > LogListener.MAX_LINE_LENGTH) {
+      discard();
+      return 0;
+    }
+    System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+    return length - lineStart;
+  }
+
+  /**
+   * Drop the line read so far, and skip the rest of it
+   */
+  private void discard() {
+    LOGGER.warn("Discarding a line of log file \"{}\" longer than {} bytes", this.path, LogListener.MAX_LINE_LENGTH);
+    SKIPPED_LINE_LENGTH.inc();
+    this.discarding = true;
+  }
+
+  private void put(final byte[] buffer, final int start, final int end) throws InterruptedException {
+    final int length = end > start && buffer[end - 1] == '\r' ? end - start - 1 : end - start;
+    this.queue.put(new String(buffer, start, length, StandardCharsets.UTF_8));
+    Metrics.INGEST_QUEUE_SIZE.set(this.queue.size());
+  }
+}
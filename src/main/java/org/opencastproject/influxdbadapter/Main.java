@@ -21,16 +21,31 @@
 
 package org.opencastproject.influxdbadapter;
 
-import com.github.davidmoten.rx2.file.Files;
-
-import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBIOException;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.BindException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -42,49 +57,231 @@ import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.Context;
 import ch.qos.logback.core.joran.spi.JoranException;
 import ch.qos.logback.core.util.StatusPrinter;
-import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
 
 public final class Main {
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
+  private static final Duration WINDOW_TICK = Duration.ofSeconds(1);
+  // Stands for a timer tick among the lines; compared by identity, so no line read can be mistaken for it
+  private static final String TICK = "tick";
+  private static final Histogram ENRICHED_LAG = Metrics.impressionLag("enriched");
+  // Line protocol sorted in memory at once while exporting
+  private static final int EXPORT_RUN_BYTES = 64 * 1024 * 1024;
+
   private Main() {
   }
 
+  /**
+   * Build the processing pipeline, from log lines to resolved impressions
+   *
+   * @param configFile Configuration file
+   * @param ocClient   Opencast Client
+   * @param lines      The lines to process
+   * @return The impressions to write, in order
+   */
+  static Flowable<Impression> impressions(
+          final ConfigFile configFile,
+          final OpencastClient ocClient,
+          final Flowable<String> lines) {
+    return impressions(configFile, ocClient, lines, Clock.systemUTC());
+  }
+
+  /**
+   * Build the processing pipeline, from log lines to resolved impressions
+   *
+   * @param configFile Configuration file
+   * @param ocClient   Opencast Client
+   * @param lines      The lines to process
+   * @param clock      The wall clock, moving the window on while there are no lines, or <code>null</code> if the
+   *                   window should only follow the lines' time stamps
+   * @return The impressions to write, in order
+   */
+  private static Flowable<Impression> impressions(
+          final ConfigFile configFile,
+          final OpencastClient ocClient,
+          final Flowable<String> lines,
+          final Clock clock) {
+    final Flowable<Impression> enriched = Flowable.defer(() -> {
+      // Filter the log lines, extracting "interesting information" and parsing only what the filters need, and run
+      // them through the sliding window, all in one loop (a new one per subscription, as it keeps state)
+      final LineProcessor processor = new LineProcessor(
+              new FilterCascade(configFile.getLogFormat(),
+                                configFile.getInvalidUserAgents(),
+                                configFile.getValidFileExtensions(),
+                                configFile.getInvalidPublicationChannels(),
+                                configFile.getPartition()),
+              new Window(configFile.getViewInterval(), configFile.getAllowedLateness()),
+              clock);
+      if (clock == null) {
+        return lines.concatMapIterable(processor::line)
+                    .concatWith(Flowable.defer(() -> Flowable.fromIterable(processor.drain())));
+      }
+      return lines
+              // Add timer ticks, so the window moves on while there are no lines, until the lines end
+              .publish(shared -> shared.mergeWith(
+                      Flowable.interval(WINDOW_TICK.toMillis(), TimeUnit.MILLISECONDS)
+                              .onBackpressureDrop()
+                              .map(tick -> TICK)
+                              .takeUntil(shared.ignoreElements().toFlowable())))
+              .concatMapIterable(line -> line == TICK ? processor.tick() : processor.line(line))
+              // Once the lines end, evict the whole window
+              .concatWith(Flowable.defer(() -> Flowable.fromIterable(processor.drain())));
+    })
+            // Hand the impressions over to a thread of their own, so filtering goes on while they are enriched
+            .compose(new Stage<>("enrichment", configFile.getEnrichmentQueueSize()))
+            // Add Opencast meta data, looking up several impressions at once (so one being retried doesn't hold up the
+            // others), but keeping their order
+            .concatMapEager(rawImpression -> OpencastUtils.makeImpression(LOGGER,
+                                                                          configFile.getOpencastConfig(),
+                                                                          ocClient,
+                                                                          rawImpression),
+                            enrichmentConcurrency(configFile),
+                            1);
+    if (clock == null)
+      return enriched;
+    return enriched.doOnNext(impression -> ENRICHED_LAG.observe(LagReport.lagSeconds(impression.getDate(),
+                                                                                     clock.millis())));
+  }
+
+  private static int enrichmentConcurrency(final ConfigFile configFile) {
+    return configFile.getOpencastConfig() != null
+            ? configFile.getOpencastConfig().getHttpClientProfile().getMaxRequestsPerHost()
+            : 1;
+  }
+
   /**
    * Process lines
    *
    * @param configFile Configuration file
    * @param ocClient   Opencast Client
-   * @param influxDB   InfluxDB instance
+   * @param sinks      The sinks to write the impressions to
+   * @param shutdown   The shutdown that may cut processing short
    * @param lines      The lines to process
+   * @return The exit status, <code>0</code> if processing ended without error
    */
-  private static void processLines(
+  private static int processLines(
           final ConfigFile configFile,
           final OpencastClient ocClient,
-          final InfluxDB influxDB,
+          final SinkFanOut sinks,
+          final Shutdown shutdown,
           final Flowable<String> lines) {
-    lines
-            // Parse the line into Java code
-            .concatMap(LogLine::fromLine)
-            // Filter the log line and extract "interesting information"
-            .concatMap(x -> x.toRawImpression(configFile.getInvalidUserAgents(),
-                                              configFile.getValidFileExtensions(),
-                                              configFile.getInvalidPublicationChannels()))
-            // Filter the parsed structure using the sliding window mechanism
-            .scan(Cache.empty(), TimeCachingUtils.cacheScanner(configFile.getViewInterval()))
-            .concatMap(c -> Flowable.fromIterable(c.getEvictions()))
-            // Add Opencast meta data
-            .concatMap(rawImpression -> OpencastUtils.makeImpression(LOGGER,
-                                                                     configFile.getOpencastConfig(),
-                                                                     ocClient,
-                                                                     rawImpression))
-            // Convert the resulting points into InfluxDB points
-            .map(Impression::toPoint)
-            // And write those points (using a fixed buffer for back pressure)
-            .blockingSubscribe(p -> InfluxDBUtils.writePointToInflux(configFile.getInfluxDBConfig(), influxDB, p),
-                               Main::processError,
-                               2048);
+    final AtomicInteger exitStatus = new AtomicInteger();
+    impressions(configFile, ocClient, lines)
+            // Aggregate on a thread of its own, too, so it doesn't hold up enrichment
+            .compose(new Stage<>("aggregation", configFile.getAggregationQueueSize()))
+            .takeUntil(shutdown.cutOff())
+            .doOnNext(impression -> {
+              Metrics.IMPRESSIONS.inc();
+              Metrics.INGEST_LAG.set(
+                      Duration.between(impression.getDate().toInstant(), Instant.now()).toMillis() / 1000.0);
+            })
+            .compose(impressions -> withAggregates(configFile, impressions, lagReport(configFile)))
+            // And hand the points to the sinks (using a fixed buffer for back pressure)
+            .blockingSubscribe(sinks::write, e -> exitStatus.set(processError(e)), 2048);
+    return exitStatus.get();
+  }
+
+  /**
+   * Feed impressions into the configured aggregators (rollups, unique viewer estimates and the most-watched episodes),
+   * and add their points periodically and once the impressions end
+   *
+   * @param configFile  Configuration file
+   * @param impressions The impressions
+   * @param lagReport   The lag report, written along with the aggregators' points, or <code>null</code> for none
+   * @return The impressions and the aggregators' points
+   */
+  private static Flowable<DataPoint> withAggregates(
+          final ConfigFile configFile,
+          final Flowable<Impression> impressions,
+          final LagReport lagReport) {
+    final List<Aggregator> aggregators = aggregators(configFile);
+    if (lagReport != null)
+      aggregators.add(0, lagReport);
+    if (aggregators.isEmpty())
+      return impressions.cast(DataPoint.class);
+    final long flushMillis = configFile.getRollupFlushInterval().toMillis();
+    return impressions.publish(shared -> Flowable.merge(
+            shared.doOnNext(impression -> {
+              for (final Aggregator aggregator : aggregators)
+                aggregator.add(impression);
+            }),
+            Flowable.interval(flushMillis, flushMillis, TimeUnit.MILLISECONDS)
+                    .onBackpressureDrop()
+                    .takeUntil(shared.ignoreElements().toFlowable())
+                    .concatMapIterable(tick -> flush(aggregators, Instant.now()), 1)
+                    .concatWith(Flowable.defer(() -> Flowable.fromIterable(flush(aggregators, Instant.now()))))));
+  }
+
+  /**
+   * Like {@link #withAggregates(ConfigFile, Flowable, LagReport)}, but flush whenever the impressions' time stamps
+   * pass another flush interval, as of the latest one, instead of by the wall clock; for old logs read much faster
+   * than they were written
+   *
+   * @param configFile  Configuration file
+   * @param impressions The impressions, roughly in the order of their time stamps
+   * @return The impressions and the aggregators' points
+   */
+  private static Flowable<DataPoint> withAggregatesByLogTime(
+          final ConfigFile configFile,
+          final Flowable<Impression> impressions) {
+    final List<Aggregator> aggregators = aggregators(configFile);
+    if (aggregators.isEmpty())
+      return impressions.cast(DataPoint.class);
+    final Duration flushInterval = configFile.getRollupFlushInterval();
+    final AtomicReference<Instant> latest = new AtomicReference<>();
+    final AtomicReference<Instant> nextFlush = new AtomicReference<>();
+    // Log time stamps are whole seconds, so flushes a bucket apart would give Rollups' deltas for the same bucket the
+    // same time stamp, and one would overwrite the other; a nanosecond more per flush keeps them apart
+    final AtomicLong flushes = new AtomicLong();
+    return impressions
+            .concatMapIterable(impression -> {
+              for (final Aggregator aggregator : aggregators)
+                aggregator.add(impression);
+              final Instant time = impression.getDate().toInstant();
+              if (latest.get() == null || time.isAfter(latest.get()))
+                latest.set(time);
+              if (nextFlush.get() == null)
+                nextFlush.set(time.plus(flushInterval));
+              if (latest.get().isBefore(nextFlush.get()))
+                return Collections.<DataPoint>singletonList(impression);
+              nextFlush.set(latest.get().plus(flushInterval));
+              final List<DataPoint> result = new ArrayList<>();
+              result.add(impression);
+              result.addAll(flush(aggregators, latest.get().plusNanos(flushes.getAndIncrement())));
+              return result;
+            }, 1)
+            .concatWith(Flowable.defer(() -> latest.get() != null
+                    ? Flowable.fromIterable(flush(aggregators, latest.get().plusNanos(flushes.get())))
+                    : Flowable.empty()));
+  }
+
+  /**
+   * @return The configured aggregators (rollups, unique viewer estimates and the most-watched episodes), possibly none
+   */
+  private static List<Aggregator> aggregators(final ConfigFile configFile) {
+    final List<Aggregator> result = new ArrayList<>();
+    if (!configFile.getRollups().isEmpty())
+      result.add(new Rollups(configFile.getRollups()));
+    if (!configFile.getUniqueViewers().isEmpty())
+      result.add(new UniqueViewers(configFile.getUniqueViewers()));
+    if (configFile.getTopEpisodes() > 0)
+      result.add(new TopEpisodes(configFile.getTopEpisodes(),
+                                 configFile.getPartition() != null ? configFile.getPartition().getSelf() : ""));
+    return result;
+  }
+
+  private static LagReport lagReport(final ConfigFile configFile) {
+    return new LagReport(configFile.getLagAlertThreshold(),
+                         configFile.getSinkConfigs().stream().map(SinkConfig::getName).collect(Collectors.toList()));
+  }
+
+  private static List<DataPoint> flush(final List<Aggregator> aggregators, final Instant now) {
+    final List<DataPoint> result = new ArrayList<>();
+    for (final Aggregator aggregator : aggregators)
+      result.addAll(aggregator.flush(now));
+    return result;
   }
 
   public static void main(final String[] args) {
@@ -93,36 +290,259 @@ public final class Main {
     final ConfigFile configFile = ConfigFile.readFile(commandLine.getConfigFile());
     configureLog(configFile);
     LOGGER.info("Logging configured");
-    // Connect and configure InfluxDB
-    try (final InfluxDB influxDB = InfluxDBUtils.connect(configFile.getInfluxDBConfig())) {
+    if (commandLine.getExportFile() != null) {
+      final int exportStatus = export(configFile, commandLine);
+      if (exportStatus != 0)
+        System.exit(exportStatus);
+      return;
+    }
+    final Shutdown shutdown = new Shutdown(configFile.getShutdownTimeout(),
+                                           configFile.getSinkConfigs()
+                                                     .stream()
+                                                     .map(SinkConfig::getName)
+                                                     .collect(Collectors.toList()));
+    int exitStatus = 0;
+    final MetricsServer metricsServer = startMetricsServer(configFile);
+    // Connect and configure the sinks (InfluxDB and others)
+    try (final SinkFanOut sinks = startSinks(configFile)) {
       // Create an Opencast HTTP client (this might be a nop, if no Opencast credentials are given)
       final OpencastClient ocClient = new OpencastClient(configFile.getOpencastConfig());
 
-      // Possibly read the given log file from the beginning.
-      final long startPosition = commandLine.isFromBeginning()
-              ? 0
-              : configFile.getLogFile().toFile().length();
-
-      // Tail and process the log lines
-      processLines(configFile,
-                   ocClient,
-                   influxDB,
-                   Files
-                           .tailLines(configFile.getLogFile().toString())
-                           .nonBlocking()
-                           .startPosition(startPosition)
-                           .backpressureStrategy(BackpressureStrategy.BUFFER)
-                           .build());
+      // From now on, SIGTERM stops reading the log file and lets the pipeline run dry
+      shutdown.install();
+      // Tail or receive and process the log lines (reading ahead only as far as the ingest queue allows)
+      exitStatus = processLines(configFile,
+                                ocClient,
+                                sinks,
+                                shutdown,
+                                logLines(configFile, commandLine).takeUntil(shutdown.requested()));
+      if (shutdown.isRequested())
+        sinks.closeBy(shutdown.getDeadlineNanos());
     } catch (final OpencastClientConfigurationException e) {
       LOGGER.error("Opencast configuration error: ", e);
-      System.exit(ExitStatuses.OPENCAST_CLIENT_CONFIGURATION_ERROR);
+      exitStatus = ExitStatuses.OPENCAST_CLIENT_CONFIGURATION_ERROR;
     } catch (final InfluxDBIOException e) {
       if (e.getCause() != null) {
         LOGGER.error("InfluxDB error: " + e.getCause().getMessage());
       } else {
         LOGGER.error("InfluxDB error: " + e.getMessage());
       }
-      System.exit(ExitStatuses.INFLUXDB_RUNTIME_ERROR);
+      exitStatus = ExitStatuses.INFLUXDB_RUNTIME_ERROR;
+    } finally {
+      // Only now, so the metrics cover closing the sinks
+      if (metricsServer != null)
+        metricsServer.close();
+    }
+    // The sinks are closed at this point, having written (or spooled) everything they got
+    shutdown.finished();
+    // While shutting down, the JVM exits once the shutdown hook is done
+    if (exitStatus != 0 && !shutdown.isRequested())
+      System.exit(exitStatus);
+  }
+
+  /**
+   * Run old log files through the pipeline as fast as possible, writing the points to a sorted line protocol file
+   * instead of the sinks
+   *
+   * @param configFile  Config file parameters
+   * @param commandLine Command line parameters, naming the file and the logs
+   * @return The exit status
+   */
+  private static int export(final ConfigFile configFile, final CommandLine commandLine) {
+    final List<Path> logFiles = commandLine.getLogFiles().isEmpty()
+            ? Collections.singletonList(configFile.getLogFile())
+            : commandLine.getLogFiles();
+    for (final Path logFile : logFiles) {
+      if (logFile == null || !Files.isReadable(logFile)) {
+        LOGGER.error("Log file \"{}\" not found", logFile);
+        return ExitStatuses.LOG_FILE_NOT_FOUND;
+      }
+    }
+    final OpencastClient ocClient;
+    try {
+      ocClient = new OpencastClient(configFile.getOpencastConfig());
+    } catch (final OpencastClientConfigurationException e) {
+      LOGGER.error("Opencast configuration error: ", e);
+      return ExitStatuses.OPENCAST_CLIENT_CONFIGURATION_ERROR;
+    }
+    final InfluxDBConfig influxDBConfig = configFile.getInfluxDBConfig();
+    final SortedLineProtocolFile out = influxDBConfig != null
+            ? new SortedLineProtocolFile(commandLine.getExportFile(),
+                                         influxDBConfig.getDb(),
+                                         influxDBConfig.getRetentionPolicy(),
+                                         influxDBConfig.getAggregateRetentionPolicy(),
+                                         EXPORT_RUN_BYTES)
+            : new SortedLineProtocolFile(commandLine.getExportFile(), null, EXPORT_RUN_BYTES);
+    final AtomicInteger exitStatus = new AtomicInteger();
+    final long start = System.nanoTime();
+    // No wall clock: the window follows the lines' time stamps only, however fast they are read
+    impressions(configFile, ocClient, logFileLines(logFiles), null)
+            .compose(new Stage<>("aggregation", configFile.getAggregationQueueSize()))
+            .doOnNext(impression -> Metrics.IMPRESSIONS.inc())
+            // The flush time is part of the aggregates' time stamps, so take it from the log, too
+            .compose(impressions -> withAggregatesByLogTime(configFile, impressions))
+            .buffer(1024)
+            .blockingSubscribe(
+                    points -> {
+                      try {
+                        out.write(points);
+                      } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                      }
+                    },
+                    e -> exitStatus.set(e instanceof UncheckedIOException ? exportError(e.getCause()) : processError(e)),
+                    4);
+    try {
+      if (exitStatus.get() == 0)
+        out.close();
+      else
+        out.abort();
+    } catch (final IOException e) {
+      return exportError(e);
+    }
+    if (exitStatus.get() == 0) {
+      final double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+      LOGGER.info("Exported {} points ({} bytes before compression) to \"{}\" in {} s",
+                  out.getPoints(),
+                  out.getBytes(),
+                  commandLine.getExportFile(),
+                  String.format("%.1f", seconds));
+      LOGGER.info("Throughput: {} lines/s, {} impressions/s, {} points/s",
+                  Math.round(Metrics.LINES_READ.get() / seconds),
+                  Math.round(Metrics.IMPRESSIONS.get() / seconds),
+                  Math.round(out.getPoints() / seconds));
+    }
+    return exitStatus.get();
+  }
+
+  private static int exportError(final Throwable e) {
+    LOGGER.error("Couldn't write export file: {}", e.getMessage());
+    return ExitStatuses.EXPORT_ERROR;
+  }
+
+  /**
+   * Read log files one after the other, from the beginning to the end (decompressing those ending in
+   * <code>.gz</code>)
+   *
+   * @param logFiles The log files
+   * @return The lines
+   */
+  private static Flowable<String> logFileLines(final List<Path> logFiles) {
+    return Flowable.fromIterable(logFiles)
+                   .concatMap(logFile -> Flowable.using(
+                           () -> openLogFile(logFile),
+                           reader -> Flowable.<String>generate(emitter -> {
+                             final String line = reader.readLine();
+                             if (line != null)
+                               emitter.onNext(line);
+                             else
+                               emitter.onComplete();
+                           }),
+                           BufferedReader::close))
+                   .subscribeOn(Schedulers.io());
+  }
+
+  private static BufferedReader openLogFile(final Path logFile) throws IOException {
+    LOGGER.info("Reading log file \"{}\"", logFile);
+    InputStream in = Files.newInputStream(logFile);
+    if (logFile.getFileName().toString().endsWith(".gz"))
+      in = new GZIPInputStream(in, 65536);
+    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+  }
+
+  /**
+   * Open the log lines' source: the listener if there is one, the log file otherwise
+   *
+   * @param configFile  Config file parameters
+   * @param commandLine Command line parameters
+   * @return The log lines
+   */
+  private static Flowable<String> logLines(final ConfigFile configFile, final CommandLine commandLine) {
+    if (configFile.getListenAddress() != null)
+      return LogListener.lines(configFile.getListenAddress(), configFile.getIngestQueueSize());
+    // Possibly read the given log file from the beginning.
+    final long startPosition = commandLine.isFromBeginning()
+            ? 0
+            : configFile.getLogFile().toFile().length();
+    return LogTailer.lines(configFile.getLogFile(), startPosition, configFile.getIngestQueueSize());
+  }
+
+  /**
+   * Start the metrics server, if it's configured
+   *
+   * @param configFile Config file parameters
+   * @return The running server, or <code>null</code> if there is none
+   */
+  private static MetricsServer startMetricsServer(final ConfigFile configFile) {
+    if (configFile.getMetricsAddress() == null)
+      return null;
+    try {
+      return MetricsServer.start(configFile.getMetricsAddress());
+    } catch (final IOException e) {
+      LOGGER.error("Couldn't start metrics server on {}: {}", configFile.getMetricsAddress(), e.getMessage());
+      System.exit(ExitStatuses.METRICS_SERVER_ERROR);
+      return null;
+    }
+  }
+
+  /**
+   * Open all configured sinks and start their writers
+   *
+   * @param configFile Config file parameters
+   * @return The sinks, to write impressions to
+   */
+  private static SinkFanOut startSinks(final ConfigFile configFile) {
+    final List<SinkWriter> writers = new ArrayList<>();
+    for (final SinkConfig config : configFile.getSinkConfigs()) {
+      final SinkMetrics metrics = Metrics.forSink(config.getName());
+      writers.add(new SinkWriter(config, openSink(configFile, config.getName()), openSpool(config, metrics), metrics));
+    }
+    return new SinkFanOut(writers);
+  }
+
+  /**
+   * Open a sink
+   *
+   * @param configFile Config file parameters
+   * @param name       The sink's name
+   * @return The opened sink
+   */
+  private static Sink openSink(final ConfigFile configFile, final String name) {
+    switch (name) {
+      case "influxdb":
+        return new InfluxDBSink(InfluxDBUtils.connect(configFile.getInfluxDBConfig()),
+                                configFile.getInfluxDBConfig().getAggregateRetentionPolicy());
+      case "file":
+        try {
+          return new FileSink(configFile.getFileSinkConfig());
+        } catch (final IOException e) {
+          LOGGER.error("Couldn't open file sink directory \"{}\": {}",
+                       configFile.getFileSinkConfig().getDirectory(),
+                       e.getMessage());
+          System.exit(ExitStatuses.SINK_ERROR);
+          return null;
+        }
+      default:
+        return new StdoutSink();
+    }
+  }
+
+  /**
+   * Open the spool directory for points a sink cannot take right now
+   *
+   * @param config  The sink's configuration
+   * @param metrics The sink's metrics
+   * @return The opened spool, or <code>null</code> if the sink doesn't spool
+   */
+  private static Spool openSpool(final SinkConfig config, final SinkMetrics metrics) {
+    if (config.getSpoolDirectory() == null)
+      return null;
+    try {
+      return Spool.open(config.getSpoolDirectory(), metrics);
+    } catch (final IOException e) {
+      LOGGER.error("Couldn't open spool directory \"{}\": {}", config.getSpoolDirectory(), e.getMessage());
+      System.exit(ExitStatuses.SPOOL_ERROR);
+      return null;
     }
   }
 
@@ -182,24 +602,32 @@ public final class Main {
   }
 
   /**
-   * Examine an exception, print a nice error message and exit
+   * Examine an exception, print a nice error message and determine the exit status. The sinks are closed before
+   * exiting, so the points they already have aren't lost.
    *
    * @param e The error to analyze
+   * @return The exit status
    */
-  private static void processError(final Throwable e) {
-    if (e instanceof FileNotFoundException) {
+  private static int processError(final Throwable e) {
+    if (e instanceof SpoolException) {
+      LOGGER.error("Couldn't write points: " + e.getMessage(), e);
+      return ExitStatuses.SPOOL_ERROR;
+    } else if (e instanceof FileNotFoundException) {
       LOGGER.error("Log file \"" + e.getMessage() + "\" not found", e);
-      System.exit(ExitStatuses.LOG_FILE_NOT_FOUND);
+      return ExitStatuses.LOG_FILE_NOT_FOUND;
+    } else if (e instanceof BindException) {
+      LOGGER.error("Couldn't receive log lines: " + e.getMessage(), e);
+      return ExitStatuses.LOG_LISTENER_ERROR;
     } else if (e instanceof OurJsonSyntaxException) {
       LOGGER.error("Couldn't parse Opencast's json: " + ((OurJsonSyntaxException) e).getJson(), e);
-      System.exit(ExitStatuses.OPENCAST_JSON_SYNTAX_ERROR);
+      return ExitStatuses.OPENCAST_JSON_SYNTAX_ERROR;
     } else if (e instanceof OpencastClientConfigurationException) {
       LOGGER.error("Opencast configuration error:", e);
-      System.exit(ExitStatuses.OPENCAST_CLIENT_CONFIGURATION_ERROR);
+      return ExitStatuses.OPENCAST_CLIENT_CONFIGURATION_ERROR;
     } else {
       LOGGER.error("Error:", e);
     }
-    System.exit(ExitStatuses.UNKNOWN);
+    return ExitStatuses.UNKNOWN;
   }
 
 }
@@ -0,0 +1,300 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * All metrics the adapter collects, and their rendering in Prometheus' text exposition format
+ *
+ * <p>
+ * The metrics are global, like loggers are. See {@link MetricsServer} for how they are exposed and
+ * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">the Prometheus documentation</a> for the
+ * format.
+ * </p>
+ */
+public final class Metrics {
+  private static final String PREFIX = "opencast_influxdb_adapter_";
+  private static final List<Family> FAMILIES = new CopyOnWriteArrayList<>();
+
+  public static final Counter LINES_READ = counter("lines_read_total", "Log lines read");
+  public static final Gauge INGEST_QUEUE_SIZE = gauge("ingest_queue_size", "Log lines read ahead, waiting to be processed");
+  public static final Gauge INGEST_CONNECTIONS = gauge("ingest_connections",
+                                                       "Senders connected to the log listener, if there is one");
+  public static final Counter LINES_PARSED = counter("lines_parsed_total", "Log lines successfully parsed");
+  private static final Family LINES_SKIPPED = family("lines_skipped_total",
+                                                     "Log lines skipped, by reason",
+                                                     "counter",
+                                                     "reason");
+  private static final Family STAGE_QUEUE_SIZE = family("stage_queue_size",
+                                                        "Items waiting in front of a pipeline stage, by stage",
+                                                        "gauge",
+                                                        "stage");
+  public static final Gauge WINDOW_SIZE = gauge("window_size", "Impressions currently in the sliding window");
+  public static final Counter WINDOW_EVICTIONS = counter("window_evictions_total",
+                                                         "Impressions evicted from the sliding window");
+  public static final Counter WINDOW_LATE_IMPRESSIONS = counter("window_late_impressions_total",
+                                                                "Impressions that arrived behind the watermark");
+  public static final Histogram OPENCAST_REQUEST_DURATION = histogram("opencast_request_duration_seconds",
+                                                                      "Duration of External API requests",
+                                                                      Histogram.LATENCY_BUCKETS);
+  public static final Counter OPENCAST_REQUEST_FAILURES = counter("opencast_request_failures_total",
+                                                                  "External API requests that failed");
+  public static final Counter OPENCAST_REQUESTS_DELAYED = counter("opencast_requests_delayed_total",
+                                                                  "External API requests delayed by a rate limit");
+  public static final Counter OPENCAST_RETRIES = counter("opencast_retries_total",
+                                                         "External API requests retried after a failure");
+  public static final Counter OPENCAST_FALLBACKS = counter("opencast_fallbacks_total",
+                                                           "Impressions written or dropped without Opencast metadata");
+  public static final Gauge OPENCAST_CIRCUIT_OPEN = gauge("opencast_circuit_open",
+                                                          "1 while External API requests are suspended, 0 otherwise");
+  public static final Counter OPENCAST_CACHE_HITS = counter("opencast_cache_hits_total",
+                                                            "Episode lookups answered by the cache");
+  public static final Counter OPENCAST_CACHE_MISSES = counter("opencast_cache_misses_total",
+                                                              "Episode lookups not answered by the cache");
+  private static final Family SINK_POINTS_WRITTEN = family("sink_points_written_total",
+                                                           "Points written, by sink",
+                                                           "counter",
+                                                           "sink");
+  private static final Family SINK_POINTS_DROPPED = family("sink_points_dropped_total",
+                                                           "Points a sink rejected, or that couldn't be spooled, by sink",
+                                                           "counter",
+                                                           "sink");
+  private static final Family SINK_WRITE_FAILURES = family("sink_write_failures_total",
+                                                           "Writes that failed, by sink",
+                                                           "counter",
+                                                           "sink");
+  private static final Family SINK_WRITE_DURATION = family("sink_write_duration_seconds",
+                                                           "Duration of writes, by sink",
+                                                           "histogram",
+                                                           "sink");
+  private static final Family SINK_QUEUE_SIZE = family("sink_queue_size",
+                                                       "Impressions waiting in memory, by sink",
+                                                       "gauge",
+                                                       "sink");
+  private static final Family SPOOL_SEGMENTS = family("spool_segments",
+                                                      "Segment files in the spool directory, by sink",
+                                                      "gauge",
+                                                      "sink");
+  private static final Family SPOOL_POINTS_APPENDED = family("spool_points_appended_total",
+                                                             "Points written to the spool, by sink",
+                                                             "counter",
+                                                             "sink");
+  private static final Family SPOOL_POINTS_REPLAYED = family("spool_points_replayed_total",
+                                                             "Points replayed from the spool, by sink",
+                                                             "counter",
+                                                             "sink");
+  public static final Counter IMPRESSIONS = counter("impressions_total", "Impressions handed to the sinks");
+  public static final Counter INFLUXDB_BYTES_WRITTEN = counter("influxdb_bytes_written_total",
+                                                               "Compressed bytes sent to InfluxDB");
+  public static final Gauge INGEST_LAG = gauge("ingest_lag_seconds",
+                                               "Time between the last written impression's log time stamp and its write");
+  private static final Family IMPRESSION_LAG = family("impression_lag_seconds",
+                                                      "Time between impressions' log time stamps and a stage, by stage",
+                                                      "histogram",
+                                                      "stage");
+  private static final Family SINK_IMPRESSION_LAG = family("sink_impression_lag_seconds",
+                                                           "Time between impressions' log time stamps and a sink "
+                                                                   + "acknowledging them, by sink",
+                                                           "histogram",
+                                                           "sink");
+  public static final Gauge IMPRESSION_LAG_ALERT = gauge("impression_lag_alert",
+                                                         "1 while the lag is above the alert threshold, 0 otherwise");
+
+  /**
+   * A named group of metrics of the same type, distinguished by at most one label
+   */
+  private static final class Family {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final String label;
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private Family(final String name, final String help, final String type, final String label) {
+      this.name = PREFIX + name;
+      this.help = help;
+      this.type = type;
+      this.label = label;
+    }
+  }
+
+  private Metrics() {
+  }
+
+  private static Family family(final String name, final String help, final String type, final String label) {
+    final Family result = new Family(name, help, type, label);
+    FAMILIES.add(result);
+    return result;
+  }
+
+  private static Counter counter(final String name, final String help) {
+    final Counter result = new Counter();
+    family(name, help, "counter", null).metrics.put("", result);
+    return result;
+  }
+
+  private static Gauge gauge(final String name, final String help) {
+    final Gauge result = new Gauge();
+    family(name, help, "gauge", null).metrics.put("", result);
+    return result;
+  }
+
+  private static Histogram histogram(final String name, final String help, final double[] buckets) {
+    final Histogram result = new Histogram(buckets);
+    family(name, help, "histogram", null).metrics.put("", result);
+    return result;
+  }
+
+  /**
+   * Get the counter for lines skipped for the given reason
+   *
+   * <p>Callers should keep the result in a constant, instead of looking it up for every line.</p>
+   *
+   * @param reason Reason for skipping, for example <code>http_status</code>
+   * @return The counter for this reason
+   */
+  public static Counter linesSkipped(final String reason) {
+    return (Counter) LINES_SKIPPED.metrics.computeIfAbsent(reason, ignored -> new Counter());
+  }
+
+  /**
+   * Get the histogram of the lag of impressions passing a stage, see {@link LagReport}
+   *
+   * <p>Callers should keep the result in a constant, instead of looking it up for every impression.</p>
+   *
+   * @param stage The stage, for example <code>evicted</code>
+   * @return The stage's histogram, registered on first use
+   */
+  public static Histogram impressionLag(final String stage) {
+    return (Histogram) IMPRESSION_LAG.metrics.computeIfAbsent(stage, ignored -> new Histogram(Histogram.LAG_BUCKETS));
+  }
+
+  /**
+   * Get the gauge for the items waiting in front of a pipeline stage, see {@link Stage}
+   *
+   * @param stage The stage's name
+   * @return The stage's gauge, registered on first use
+   */
+  public static Gauge stageQueueSize(final String stage) {
+    return (Gauge) STAGE_QUEUE_SIZE.metrics.computeIfAbsent(stage, ignored -> new Gauge());
+  }
+
+  /**
+   * Get the metrics of a sink
+   *
+   * @param sink The sink's name
+   * @return The sink's metrics, registered on first use
+   */
+  public static SinkMetrics forSink(final String sink) {
+    return new SinkMetrics(
+            (Counter) SINK_POINTS_WRITTEN.metrics.computeIfAbsent(sink, ignored -> new Counter()),
+            (Counter) SINK_POINTS_DROPPED.metrics.computeIfAbsent(sink, ignored -> new Counter()),
+            (Counter) SINK_WRITE_FAILURES.metrics.computeIfAbsent(sink, ignored -> new Counter()),
+            (Histogram) SINK_WRITE_DURATION.metrics.computeIfAbsent(
+                    sink,
+                    ignored -> new Histogram(Histogram.LATENCY_BUCKETS)),
+            (Gauge) SINK_QUEUE_SIZE.metrics.computeIfAbsent(sink, ignored -> new Gauge()),
+            (Gauge) SPOOL_SEGMENTS.metrics.computeIfAbsent(sink, ignored -> new Gauge()),
+            (Counter) SPOOL_POINTS_APPENDED.metrics.computeIfAbsent(sink, ignored -> new Counter()),
+            (Counter) SPOOL_POINTS_REPLAYED.metrics.computeIfAbsent(sink, ignored -> new Counter()),
+            (Histogram) SINK_IMPRESSION_LAG.metrics.computeIfAbsent(
+                    sink,
+                    ignored -> new Histogram(Histogram.LAG_BUCKETS)));
+  }
+
+  /**
+   * Render all metrics in Prometheus' text exposition format
+   *
+   * @return The rendered metrics
+   */
+  public static String toPrometheusText() {
+    final StringBuilder result = new StringBuilder(4096);
+    for (final Family family : FAMILIES) {
+      result.append("# HELP ").append(family.name).append(' ').append(escape(family.help, false)).append('\n');
+      result.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+      for (final Map.Entry<String, Object> e : family.metrics.entrySet()) {
+        final String labels = family.label != null ? family.label + "=\"" + escape(e.getKey(), true) + '"' : "";
+        final Object metric = e.getValue();
+        if (metric instanceof Counter) {
+          appendSample(result, family.name, labels, ((Counter) metric).get());
+        } else if (metric instanceof Gauge) {
+          appendSample(result, family.name, labels, ((Gauge) metric).get());
+        } else if (metric instanceof Histogram) {
+          appendHistogram(result, family.name, labels, (Histogram) metric);
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Escape backslashes and line feeds, and double quotes in label values, as the exposition format requires
+   */
+  private static String escape(final String s, final boolean labelValue) {
+    final StringBuilder result = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == '\\')
+        result.append("\\\\");
+      else if (c == '\n')
+        result.append("\\n");
+      else if (c == '"' && labelValue)
+        result.append("\\\"");
+      else
+        result.append(c);
+    }
+    return result.toString();
+  }
+
+  private static void appendHistogram(
+          final StringBuilder result,
+          final String name,
+          final String labels,
+          final Histogram histogram) {
+    final String labelPrefix = labels.isEmpty() ? "" : labels + ',';
+    final double[] upperBounds = histogram.getUpperBounds();
+    final long[] counts = histogram.getBucketCounts();
+    long cumulative = 0;
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+      final String le = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+      appendSample(result, name + "_bucket", labelPrefix + "le=\"" + le + '"', cumulative);
+    }
+    appendSample(result, name + "_sum", labels, histogram.getSum());
+    appendSample(result, name + "_count", labels, cumulative);
+  }
+
+  private static void appendSample(
+          final StringBuilder result,
+          final String name,
+          final String labels,
+          final Object value) {
+    result.append(name);
+    if (!labels.isEmpty())
+      result.append('{').append(labels).append('}');
+    result.append(' ').append(value).append('\n');
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * A tiny HTTP server exposing {@link Metrics} on <code>/metrics</code>, in Prometheus' text format
+ */
+public final class MetricsServer implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(MetricsServer.class);
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final HttpServer server;
+
+  private MetricsServer(final HttpServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Start the server in a separate (daemon) thread
+   *
+   * @param address Address and port to listen on
+   * @return The running server, close it to stop it
+   * @throws IOException If the server couldn't bind to the address
+   */
+  public static MetricsServer start(final InetSocketAddress address) throws IOException {
+    final HttpServer server = HttpServer.create(address, 0);
+    server.createContext("/metrics", MetricsServer::handle);
+    server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+      final Thread t = new Thread(r, "metrics-server");
+      t.setDaemon(true);
+      return t;
+    }));
+    server.start();
+    LOGGER.info("Metrics available at http://{}:{}/metrics", address.getHostString(), address.getPort());
+    return new MetricsServer(server);
+  }
+
+  private static void handle(final HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      final byte[] body = Metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * @return The address the server listens on, with the actual port if it was started on port 0
+   */
+  public InetSocketAddress getAddress() {
+    return this.server.getAddress();
+  }
+
+  @Override
+  public void close() {
+    this.server.stop(0);
+  }
+}
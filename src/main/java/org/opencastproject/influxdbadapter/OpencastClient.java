@@ -26,14 +26,20 @@ import com.google.common.cache.CacheBuilder;
 
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import devcsrj.okhttp3.logging.HttpLoggingInterceptor;
 import io.reactivex.Flowable;
-import okhttp3.Interceptor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -75,7 +81,10 @@ public final class OpencastClient {
   private final OpencastConfig opencastConfig;
   private final Map<String, OpencastExternalAPI> clients;
   private final OkHttpClient client;
-  private final Cache<CacheKey, Response<ResponseBody>> cache;
+  private final Cache<CacheKey, Response<byte[]>> cache;
+  private final CircuitBreaker circuitBreaker;
+  private final TokenBucket rateLimit;
+  private final Map<String, TokenBucket> organizationRateLimits = new ConcurrentHashMap<>();
 
   /**
    * Create the client
@@ -84,14 +93,75 @@ public final class OpencastClient {
    */
   public OpencastClient(final OpencastConfig opencastConfig) {
     this.opencastConfig = opencastConfig;
-    this.clients = new HashMap<>();
-    final Interceptor interceptor = new HttpLoggingInterceptor();
-    this.client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    this.clients = new ConcurrentHashMap<>();
+    this.client = opencastConfig != null
+            ? httpClient(opencastConfig.getHttpClientProfile())
+            : new OkHttpClient();
+    this.circuitBreaker = opencastConfig != null
+            ? new CircuitBreaker(opencastConfig.getFailurePolicy().getCircuitBreakerFailures(),
+                                 opencastConfig.getFailurePolicy().getCircuitBreakerOpenDuration(),
+                                 System::nanoTime)
+            : null;
+    this.rateLimit = opencastConfig != null
+            ? tokenBucket(opencastConfig.getHttpClientProfile().getRequestsPerSecond())
+            : null;
     this.cache = opencastConfig != null && !opencastConfig.getCacheExpirationDuration().isZero() ?
             CacheBuilder.newBuilder().expireAfterWrite(opencastConfig.getCacheExpirationDuration()).build() :
             null;
   }
 
+  /**
+   * Create the HTTP client all organizations share, so they share its connection pool and dispatcher, too
+   */
+  private static OkHttpClient httpClient(final HttpClientProfile profile) {
+    final Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(profile.getMaxRequests());
+    dispatcher.setMaxRequestsPerHost(profile.getMaxRequestsPerHost());
+    final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectTimeout(profile.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .readTimeout(profile.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .writeTimeout(profile.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .connectionPool(new ConnectionPool(profile.getMaxIdleConnections(),
+                                               profile.getKeepAlive().toMillis(),
+                                               TimeUnit.MILLISECONDS))
+            .dispatcher(dispatcher);
+    if (profile.getHttp2().equals(HttpClientProfile.HTTP2_OFF))
+      builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+    else if (profile.getHttp2().equals(HttpClientProfile.HTTP2_PRIOR_KNOWLEDGE))
+      builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+    // Logging requests (and peeking at their bodies) is expensive, so only do it when debugging
+    if (LoggerFactory.getLogger(HttpLoggingInterceptor.DEFAULT_LOGGER_NAME).isDebugEnabled())
+      builder.addInterceptor(new HttpLoggingInterceptor());
+    return builder.build();
+  }
+
+  /**
+   * Create a token bucket holding one second worth of requests, or none if the rate is unlimited
+   */
+  private static TokenBucket tokenBucket(final double perSecond) {
+    return perSecond > 0
+            ? new TokenBucket(perSecond, (int) Math.max(1, Math.ceil(perSecond)), System::nanoTime)
+            : null;
+  }
+
+  /**
+   * Take a token from the global bucket and the organization's one
+   *
+   * @return Nanoseconds to wait before the request may start
+   */
+  private long reserve(final String organization) {
+    long result = this.rateLimit != null ? this.rateLimit.reserve() : 0;
+    final double perOrganization = this.opencastConfig.getHttpClientProfile().getRequestsPerSecondPerOrganization();
+    if (perOrganization > 0) {
+      result = Math.max(result,
+                        this.organizationRateLimits
+                                .computeIfAbsent(organization != null ? organization : "",
+                                                 ignored -> tokenBucket(perOrganization))
+                                .reserve());
+    }
+    return result;
+  }
+
   private String getRawAddress(final CharSequence organization) {
     return this.opencastConfig.getUri().replace(ORGANIZATION, organization);
   }
@@ -107,19 +177,22 @@ public final class OpencastClient {
    * @return A retrofit interface to be used to make HTTP calls
    */
   private OpencastExternalAPI getClient(final String organization) {
-    return this.clients.computeIfAbsent(organization, ignored -> {
+    if (organization == null && hostHasPlaceholder()) {
+      throw new OpencastClientConfigurationException(String.format(
+              "the Opencast URI \"%s\" contains an organization placeholder \"%s\", but we have no organization; "
+                      + "this is most likely a configuration file issue, which you should fix",
+              this.opencastConfig.getUri(),
+              ORGANIZATION));
+    }
+    // Without a placeholder, the organization doesn't matter (and the map cannot hold null keys)
+    final String key = organization != null ? organization : "";
+    return this.clients.computeIfAbsent(key, ignored -> {
       try {
-        if (organization == null && hostHasPlaceholder()) {
-          throw new OpencastClientConfigurationException(String.format(
-                  "the Opencast URI \"%s\" contains an organization placeholder \"%s\", but we have no organization; "
-                          + "this is most likely a configuration file issue, which you should fix",
-                  this.opencastConfig.getUri(),
-                  ORGANIZATION));
-        }
         final Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(getRawAddress(organization))
+                .baseUrl(getRawAddress(key))
                 .client(this.client)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                // Run calls on the client's dispatcher, which limits them as configured
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync())
                 .build();
         return retrofit.create(OpencastExternalAPI.class);
       } catch (final IllegalArgumentException e) {
@@ -140,33 +213,85 @@ public final class OpencastClient {
     if (this.cache == null)
       return requestUncached;
     final CacheKey cacheKey = new CacheKey(organization, episodeId);
-    return Flowable.concat(Util.nullableToFlowable(this.cache.getIfPresent(cacheKey)),
-                           requestUncached.doOnNext(response -> addToCache(cacheKey,
-                                                                           response,
-                                                                           organization,
-                                                                           episodeId)));
+    final Response<byte[]> cached = this.cache.getIfPresent(cacheKey);
+    if (cached != null) {
+      Metrics.OPENCAST_CACHE_HITS.inc();
+      return Flowable.fromCallable(() -> fromCache(cached));
+    }
+    Metrics.OPENCAST_CACHE_MISSES.inc();
+    return requestUncached.map(response -> addToCache(cacheKey, response, organization, episodeId));
   }
 
-  private void addToCache(
+  /**
+   * Look for a response another request added to the cache while this one was waiting for the rate limit
+   */
+  private Flowable<Response<ResponseBody>> cachedOr(
+          final String organization,
+          final String episodeId,
+          final Flowable<Response<ResponseBody>> request) {
+    final Response<byte[]> cached = this.cache != null
+            ? this.cache.getIfPresent(new CacheKey(organization, episodeId))
+            : null;
+    return cached != null ? Flowable.fromCallable(() -> fromCache(cached)) : request;
+  }
+
+  /**
+   * Create a fresh response from a cached one (response bodies can only be consumed once)
+   */
+  private static Response<ResponseBody> fromCache(final Response<byte[]> cached) {
+    final String contentType = cached.raw().header("Content-Type");
+    return Response.success(ResponseBody.create(contentType != null ? MediaType.parse(contentType) : null,
+                                                Objects.requireNonNull(cached.body())),
+                            cached.raw());
+  }
+
+  private Response<ResponseBody> addToCache(
           final CacheKey cacheKey,
           final Response<ResponseBody> response,
           final String organization,
-          final String episodeId) {
-    if (response.isSuccessful()) {
-      LOGGER.debug("OCCACHEADD, episode {}, organization {}", episodeId, organization);
-      this.cache.put(cacheKey, response);
+          final String episodeId) throws IOException {
+    if (!response.isSuccessful() || response.body() == null)
+      return response;
+    LOGGER.debug("OCCACHEADD, episode {}, organization {}", episodeId, organization);
+    final Response<byte[]> buffered;
+    try (final ResponseBody body = response.body()) {
+      buffered = Response.success(body.bytes(), response.raw());
     }
+    this.cache.put(cacheKey, buffered);
+    return fromCache(buffered);
   }
 
   private Flowable<Response<ResponseBody>> getRequestUncached(final String organization, final String episodeId) {
-    LOGGER.debug("OCREQUESTSTART, episode {}, organization {}", episodeId, organization);
-    return getClient(organization).getEvent(episodeId, getAuthHeader());
+    final Flowable<Response<ResponseBody>> request = Flowable.defer(() -> {
+      LOGGER.debug("OCREQUESTSTART, episode {}, organization {}", episodeId, organization);
+      final long start = System.nanoTime();
+      return getClient(organization)
+              .getEvent(episodeId, getAuthHeader())
+              .doOnNext(response -> Metrics.OPENCAST_REQUEST_DURATION.observeSince(start))
+              .doOnError(e -> Metrics.OPENCAST_REQUEST_FAILURES.inc());
+    });
+    return Flowable.defer(() -> {
+      // Over the rate limit, the request waits (without holding a thread) instead of failing
+      final long waitNanos = reserve(organization);
+      if (waitNanos == 0)
+        return request;
+      Metrics.OPENCAST_REQUESTS_DELAYED.inc();
+      return Flowable.timer(waitNanos, TimeUnit.NANOSECONDS)
+                     .concatMap(ignored -> cachedOr(organization, episodeId, request));
+    });
   }
 
   private String getAuthHeader() {
     return Util.basicAuthHeader(this.opencastConfig.getUser(), this.opencastConfig.getPassword());
   }
 
+  /**
+   * @return The circuit breaker guarding the External API, or <code>null</code> if there is no configuration
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return this.circuitBreaker;
+  }
+
   /**
    * Check if we even need an Opencast request
    *
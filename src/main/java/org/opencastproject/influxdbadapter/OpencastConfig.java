@@ -32,18 +32,24 @@ public final class OpencastConfig {
   private final String password;
   private final boolean seriesAreOptional;
   private final Duration cacheExpirationDuration;
+  private final HttpClientProfile httpClientProfile;
+  private final OpencastFailurePolicy failurePolicy;
 
   public OpencastConfig(
           final String uri,
           final String user,
           final String password,
           final boolean seriesAreOptional,
-          final Duration cacheExpirationDuration) {
+          final Duration cacheExpirationDuration,
+          final HttpClientProfile httpClientProfile,
+          final OpencastFailurePolicy failurePolicy) {
     this.uri = uri;
     this.user = user;
     this.password = password;
     this.seriesAreOptional = seriesAreOptional;
     this.cacheExpirationDuration = cacheExpirationDuration;
+    this.httpClientProfile = httpClientProfile;
+    this.failurePolicy = failurePolicy;
   }
 
   public String getUri() {
@@ -65,4 +71,12 @@ public final class OpencastConfig {
   public Duration getCacheExpirationDuration() {
     return this.cacheExpirationDuration;
   }
+
+  public HttpClientProfile getHttpClientProfile() {
+    return this.httpClientProfile;
+  }
+
+  public OpencastFailurePolicy getFailurePolicy() {
+    return this.failurePolicy;
+  }
 }
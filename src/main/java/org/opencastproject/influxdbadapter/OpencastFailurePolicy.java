@@ -0,0 +1,99 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+
+/**
+ * How to deal with failing External API requests (immutable)
+ */
+public final class OpencastFailurePolicy {
+  /**
+   * Write the impression without a series
+   */
+  public static final String FALLBACK_EMPTY_SERIES = "empty-series";
+  /**
+   * Drop the impression
+   */
+  public static final String FALLBACK_DROP = "drop";
+
+  private final int maxRetries;
+  private final Duration retryBackoff;
+  private final Duration maxRetryBackoff;
+  private final int circuitBreakerFailures;
+  private final Duration circuitBreakerOpenDuration;
+  private final String fallback;
+
+  public OpencastFailurePolicy(
+          final int maxRetries,
+          final Duration retryBackoff,
+          final Duration maxRetryBackoff,
+          final int circuitBreakerFailures,
+          final Duration circuitBreakerOpenDuration,
+          final String fallback) {
+    this.maxRetries = maxRetries;
+    this.retryBackoff = retryBackoff;
+    this.maxRetryBackoff = maxRetryBackoff;
+    this.circuitBreakerFailures = circuitBreakerFailures;
+    this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+    this.fallback = fallback;
+  }
+
+  /**
+   * @return How often a failed request is retried, at most
+   */
+  public int getMaxRetries() {
+    return this.maxRetries;
+  }
+
+  /**
+   * @return The backoff before the first retry, doubled for every further one
+   */
+  public Duration getRetryBackoff() {
+    return this.retryBackoff;
+  }
+
+  public Duration getMaxRetryBackoff() {
+    return this.maxRetryBackoff;
+  }
+
+  /**
+   * @return Number of impressions in a row that failed, after which requests are suspended
+   */
+  public int getCircuitBreakerFailures() {
+    return this.circuitBreakerFailures;
+  }
+
+  /**
+   * @return How long requests are suspended, before a single one is tried again
+   */
+  public Duration getCircuitBreakerOpenDuration() {
+    return this.circuitBreakerOpenDuration;
+  }
+
+  /**
+   * @return What to do with an impression without metadata, {@link #FALLBACK_EMPTY_SERIES} or {@link #FALLBACK_DROP}
+   */
+  public String getFallback() {
+    return this.fallback;
+  }
+}
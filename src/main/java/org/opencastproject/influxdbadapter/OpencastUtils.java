@@ -26,9 +26,14 @@ import com.google.gson.JsonSyntaxException;
 
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Flowable;
 import okhttp3.ResponseBody;
@@ -107,7 +112,7 @@ public final class OpencastUtils {
           final String episodeId) {
     final boolean correctResponse = x.code() / 200 == 1;
     if (!correctResponse) {
-      logger.error("OCHTTPERROR, episode {}, organization {}: code, {}", x.code(), episodeId, organization);
+      logger.error("OCHTTPERROR, episode {}, organization {}: code {}", episodeId, organization, x.code());
     } else {
       logger.debug("OCHTTPSUCCESS, episode {}, organization {}", episodeId, organization);
     }
@@ -119,6 +124,12 @@ public final class OpencastUtils {
   /**
    * Create a resolved {@link Impression} from a {@link RawImpression} and Opencast metadata
    *
+   * <p>
+   * Failed requests are retried with exponential backoff, and if they still fail, the impression is handled according
+   * to the configured fallback, so a failure only affects a single impression. After too many failed impressions in a
+   * row, Opencast isn't asked at all for a while (see {@link CircuitBreaker}), and the fallback applies right away.
+   * </p>
+   *
    * @param logger         The logger to use
    * @param opencastConfig Opencast configuration
    * @param client         The Opencast client to use
@@ -132,11 +143,95 @@ public final class OpencastUtils {
           final RawImpression rawImpression) {
     if (client.isUnavailable())
       return Flowable.just(rawImpression.toImpression(""));
+    final OpencastFailurePolicy policy = opencastConfig.getFailurePolicy();
+    final CircuitBreaker circuitBreaker = client.getCircuitBreaker();
+    if (!circuitBreaker.allowRequest())
+      return fallback(logger, policy, rawImpression);
     return seriesForEvent(
             logger,
-            opencastConfig == null || opencastConfig.isSeriesAreOptional(),
+            opencastConfig.isSeriesAreOptional(),
             client,
             rawImpression.getOrganizationId(),
-            rawImpression.getEpisodeId()).flatMap(series -> Flowable.just(rawImpression.toImpression(series)));
+            rawImpression.getEpisodeId())
+            .retryWhen(errors -> {
+              final AtomicInteger retries = new AtomicInteger();
+              return errors.concatMap(e -> {
+                if (!isTransient(e) || retries.get() >= policy.getMaxRetries())
+                  return Flowable.error(e);
+                Metrics.OPENCAST_RETRIES.inc();
+                return Flowable.timer(backoffMillis(policy.getRetryBackoff(),
+                                                    policy.getMaxRetryBackoff(),
+                                                    retries.incrementAndGet(),
+                                                    ThreadLocalRandom.current().nextDouble()),
+                                      TimeUnit.MILLISECONDS);
+              });
+            })
+            .map(series -> {
+              circuitBreaker.recordSuccess();
+              Metrics.OPENCAST_CIRCUIT_OPEN.set(0);
+              return rawImpression.toImpression(series);
+            })
+            .onErrorResumeNext((final Throwable e) -> {
+              if (e instanceof OpencastClientConfigurationException)
+                return Flowable.error(e);
+              logger.warn("OCFAILURE, episode \"{}\", organization \"{}\": {}",
+                          rawImpression.getEpisodeId(),
+                          rawImpression.getOrganizationId(),
+                          e.toString());
+              // Opencast answering that it doesn't know the episode is no sign of trouble
+              if (isTransient(e) || e instanceof OurJsonSyntaxException) {
+                final boolean wasOpen = circuitBreaker.isOpen();
+                circuitBreaker.recordFailure();
+                if (circuitBreaker.isOpen() && !wasOpen) {
+                  logger.warn("OCSUSPENDED, suspending requests to Opencast for {} after {} failures in a row",
+                              policy.getCircuitBreakerOpenDuration(),
+                              policy.getCircuitBreakerFailures());
+                }
+                Metrics.OPENCAST_CIRCUIT_OPEN.set(circuitBreaker.isOpen() ? 1 : 0);
+              } else {
+                circuitBreaker.recordSuccess();
+              }
+              return fallback(logger, policy, rawImpression);
+            });
+  }
+
+  /**
+   * @return Whether a request failing this way might succeed if it is retried
+   */
+  private static boolean isTransient(final Throwable e) {
+    if (e instanceof InvalidOpencastResponse) {
+      final int code = ((InvalidOpencastResponse) e).getCode();
+      return code >= 500 || code == 429 || code == 408;
+    }
+    return e instanceof IOException;
+  }
+
+  /**
+   * Compute the backoff before a retry: exponential, capped, with "full jitter" (a random time up to that), so
+   * retries of many impressions don't all hit Opencast at once
+   *
+   * @param base   The backoff before the first retry
+   * @param max    The maximum backoff
+   * @param retry  The number of the retry, starting at 1
+   * @param random A random number between 0 (inclusive) and 1 (exclusive)
+   * @return The backoff, in milliseconds
+   */
+  static long backoffMillis(final Duration base, final Duration max, final int retry, final double random) {
+    final long cap = base.toMillis() << Math.min(retry - 1, 30);
+    return (long) (random * Math.min(max.toMillis(), cap < 0 ? Long.MAX_VALUE : cap));
+  }
+
+  private static Flowable<Impression> fallback(
+          final Logger logger,
+          final OpencastFailurePolicy policy,
+          final RawImpression rawImpression) {
+    Metrics.OPENCAST_FALLBACKS.inc();
+    logger.debug("OCFALLBACK, episode \"{}\", organization \"{}\": {}",
+                 rawImpression.getEpisodeId(),
+                 rawImpression.getOrganizationId(),
+                 policy.getFallback());
+    return policy.getFallback().equals(OpencastFailurePolicy.FALLBACK_DROP)
+            ? Flowable.empty()
+            : Flowable.just(rawImpression.toImpression(""));
   }
 }
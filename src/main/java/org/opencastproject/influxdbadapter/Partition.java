@@ -0,0 +1,134 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The organizations one of several adapter instances handles, assigned by consistent hashing (immutable)
+ *
+ * <p>
+ * Every instance is given the same list of members and its own name. Each member gets a number of points on a hash
+ * ring, and an organization belongs to the member owning the first point at or after the organization's hash. So
+ * every organization is handled by exactly one instance, and adding or removing a member only moves the
+ * organizations of its share of the ring.
+ * </p>
+ *
+ * <p>
+ * {@link #accepts(CharSequence, int, int)} checks raw log lines, before they are parsed, by hashing the organization
+ * (the first path segment of the request) in place.
+ * </p>
+ */
+public final class Partition {
+  private static final int POINTS_PER_MEMBER = 128;
+
+  private final String self;
+  private final long[] points;
+  private final int[] owners;
+  private final int selfIndex;
+  private final List<String> members;
+
+  /**
+   * @param members All members, in any order, but the same for every instance
+   * @param self    This instance's name, one of the members
+   */
+  public Partition(final List<String> members, final String self) {
+    this.members = members;
+    this.self = self;
+    this.selfIndex = members.indexOf(self);
+    if (this.selfIndex < 0)
+      throw new IllegalArgumentException("\"" + self + "\" is not one of the members " + members);
+    final long[][] ring = new long[members.size() * POINTS_PER_MEMBER][];
+    for (int m = 0; m < members.size(); m++) {
+      for (int i = 0; i < POINTS_PER_MEMBER; i++) {
+        final String point = members.get(m) + "#" + i;
+        ring[m * POINTS_PER_MEMBER + i] = new long[] { hash(point, 0, point.length()), m };
+      }
+    }
+    Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+    this.points = new long[ring.length];
+    this.owners = new int[ring.length];
+    for (int i = 0; i < ring.length; i++) {
+      this.points[i] = ring[i][0];
+      this.owners[i] = (int) ring[i][1];
+    }
+  }
+
+  /**
+   * Check whether a log line belongs to this instance
+   *
+   * @param line         A raw log line
+   * @param requestStart Where the request line (<code>GET /organization/...</code>) starts in the log line
+   * @param requestEnd   Where the request line ends
+   * @return <code>false</code> if the line is a request for an organization of another instance, <code>true</code>
+   * otherwise (including requests that don't have an organization at all, which are left to the parser)
+   */
+  public boolean accepts(final CharSequence line, final int requestStart, final int requestEnd) {
+    final int start = indexOf(line, '/', requestStart, requestEnd);
+    final int end = start < 0 ? -1 : indexOf(line, '/', start + 1, requestEnd);
+    if (end < 0)
+      return true;
+    return owner(hash(line, start + 1, end)) == this.selfIndex;
+  }
+
+  /**
+   * @param organizationId An organization
+   * @return The member handling that organization
+   */
+  public String ownerOf(final String organizationId) {
+    return this.members.get(owner(hash(organizationId, 0, organizationId.length())));
+  }
+
+  /**
+   * @return This instance's name
+   */
+  public String getSelf() {
+    return this.self;
+  }
+
+  private int owner(final long hash) {
+    final int index = Arrays.binarySearch(this.points, hash);
+    final int position = index >= 0 ? index : -index - 1;
+    return this.owners[position < this.points.length ? position : 0];
+  }
+
+  private static int indexOf(final CharSequence s, final char c, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (s.charAt(i) == c)
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * FNV-1a over the UTF-16 code units of a range, finished with a mixing step
+   */
+  private static long hash(final CharSequence s, final int start, final int end) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = start; i < end; i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return HyperLogLog.hash(h, end - start);
+  }
+}
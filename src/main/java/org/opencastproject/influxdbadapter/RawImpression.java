@@ -33,7 +33,7 @@ public final class RawImpression {
   private final String organizationId;
   private final String publicationChannel;
   private final OffsetDateTime date;
-  private final String ip;
+  private final ClientAddress ip;
 
   public RawImpression(
           final LogLine originalLine,
@@ -41,7 +41,7 @@ public final class RawImpression {
           final String organizationId,
           final String publicationChannel,
           final OffsetDateTime date,
-          final String ip) {
+          final ClientAddress ip) {
     this.originalLine = originalLine;
     this.episodeId = episodeId;
     this.organizationId = organizationId;
@@ -62,7 +62,8 @@ public final class RawImpression {
             this.organizationId,
             this.publicationChannel,
             seriesId,
-            this.getDate());
+            this.getDate(),
+            this.ip);
   }
 
   @Override
@@ -83,7 +84,7 @@ public final class RawImpression {
 
   @Override
   public String toString() {
-    return String.format("RawImpression{episodeId='%s', organizationId='%s', date=%s, ip='%s'}",
+    return String.format("RawImpression{episodeId='%s', organizationId='%s', date=%s, ip=%s}",
                          this.getEpisodeId(),
                          this.getOrganizationId(),
                          this.getDate(),
@@ -102,7 +103,7 @@ public final class RawImpression {
     return this.date;
   }
 
-  public String getIp() {
+  public ClientAddress getIp() {
     return this.ip;
   }
 
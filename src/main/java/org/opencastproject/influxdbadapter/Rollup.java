@@ -0,0 +1,95 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+/**
+ * Impressions of one series and publication channel, counted in a time bucket (immutable)
+ *
+ * <p>See {@link Rollups}.</p>
+ */
+public final class Rollup implements DataPoint {
+  private static final String[] FIELDS = { "value" };
+
+  private final String measurement;
+  private final String organizationId;
+  private final String publicationChannel;
+  private final String seriesId;
+  private final long count;
+  private final long timeNanos;
+
+  public Rollup(
+          final String measurement,
+          final String organizationId,
+          final String publicationChannel,
+          final String seriesId,
+          final long count,
+          final long timeNanos) {
+    this.measurement = measurement;
+    this.organizationId = organizationId;
+    this.publicationChannel = publicationChannel;
+    this.seriesId = seriesId;
+    this.count = count;
+    this.timeNanos = timeNanos;
+  }
+
+  @Override
+  public void encode(final LineProtocol encoder, final ByteBuilder out) {
+    LineProtocol.encodeAggregate(out,
+                                 this.measurement,
+                                 new String[] {
+                                         "organizationId", this.organizationId,
+                                         "publicationChannel", this.publicationChannel,
+                                         "seriesId", this.seriesId },
+                                 FIELDS,
+                                 new long[] { this.count },
+                                 this.timeNanos);
+  }
+
+  @Override
+  public boolean isAggregate() {
+    return true;
+  }
+
+  public String getMeasurement() {
+    return this.measurement;
+  }
+
+  public String getOrganizationId() {
+    return this.organizationId;
+  }
+
+  public String getPublicationChannel() {
+    return this.publicationChannel;
+  }
+
+  public String getSeriesId() {
+    return this.seriesId;
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  public long getTimeNanos() {
+    return this.timeNanos;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Impression counts per organization, series and publication channel, in hourly and daily buckets, kept up to date
+ * as impressions are made (thread-safe)
+ *
+ * <p>
+ * The counts are written as deltas: each flush produces, for every bucket that changed, the number of impressions
+ * counted since the previous flush, time-stamped inside that bucket (at the same offset the flush has into the
+ * current one, so flushes don't overwrite each other). Summing a bucket's points gives its total, even across
+ * restarts, and buckets only take memory until the next flush. Buckets are in UTC.
+ * </p>
+ */
+public final class Rollups implements Aggregator {
+  public static final String HOURLY = "hourly";
+  public static final String DAILY = "daily";
+  public static final String MEASUREMENT_PREFIX = "series_impressions_";
+
+  private final List<String> measurements = new ArrayList<>();
+  private final List<Long> bucketNanos = new ArrayList<>();
+  private final List<Map<Key, long[]>> counts = new ArrayList<>();
+
+  /**
+   * A bucket of one series and publication channel
+   */
+  private static final class Key {
+    private final String organizationId;
+    private final String publicationChannel;
+    private final String seriesId;
+    private final long bucketStartNanos;
+
+    private Key(
+            final String organizationId,
+            final String publicationChannel,
+            final String seriesId,
+            final long bucketStartNanos) {
+      this.organizationId = organizationId;
+      this.publicationChannel = publicationChannel;
+      this.seriesId = seriesId;
+      this.bucketStartNanos = bucketStartNanos;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      final Key that = (Key) o;
+      return this.bucketStartNanos == that.bucketStartNanos
+              && this.organizationId.equals(that.organizationId)
+              && this.publicationChannel.equals(that.publicationChannel)
+              && this.seriesId.equals(that.seriesId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.organizationId, this.publicationChannel, this.seriesId, this.bucketStartNanos);
+    }
+  }
+
+  /**
+   * @param resolutions The bucket sizes to keep, {@link #HOURLY} and/or {@link #DAILY}
+   */
+  public Rollups(final List<String> resolutions) {
+    for (final String resolution : resolutions) {
+      this.measurements.add(MEASUREMENT_PREFIX + resolution);
+      this.bucketNanos.add((resolution.equals(DAILY) ? Duration.ofDays(1) : Duration.ofHours(1)).toNanos());
+      this.counts.add(new HashMap<>());
+    }
+  }
+
+  @Override
+  public synchronized void add(final Impression impression) {
+    final long nanos = Duration.ofSeconds(impression.getDate().toEpochSecond()).toNanos();
+    for (int i = 0; i < this.counts.size(); i++) {
+      final Key key = new Key(impression.getOrganizationId(),
+                              impression.getPublicationChannel(),
+                              impression.getSeriesId(),
+                              nanos - Math.floorMod(nanos, this.bucketNanos.get(i)));
+      this.counts.get(i).computeIfAbsent(key, ignored -> new long[1])[0]++;
+    }
+  }
+
+  @Override
+  public synchronized List<Rollup> flush(final Instant now) {
+    final long nowNanos = Duration.ofSeconds(now.getEpochSecond(), now.getNano()).toNanos();
+    final List<Rollup> result = new ArrayList<>();
+    for (int i = 0; i < this.counts.size(); i++) {
+      final long offset = Math.floorMod(nowNanos, this.bucketNanos.get(i));
+      for (final Map.Entry<Key, long[]> e : this.counts.get(i).entrySet()) {
+        final Key key = e.getKey();
+        result.add(new Rollup(this.measurements.get(i),
+                              key.organizationId,
+                              key.publicationChannel,
+                              key.seriesId,
+                              e.getValue()[0],
+                              key.bucketStartNanos + offset));
+      }
+      this.counts.get(i).clear();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.subjects.CompletableSubject;
+
+/**
+ * Orderly shutdown, when the JVM is asked to stop (for example, by systemd sending SIGTERM)
+ *
+ * <p>
+ * A shutdown hook signals the pipeline to stop reading the log file, which makes it evict the whole view window,
+ * and waits for the main thread to finish. The pipeline gets half of the timeout to enrich and hand over the
+ * evicted impressions; if it's not done by then, it's cut off. The sinks get the rest of the time to write what
+ * they have, before their remaining points are spooled (or dropped). Either way, a report is logged.
+ * </p>
+ */
+public final class Shutdown {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Shutdown.class);
+
+  private final Duration timeout;
+  private final List<String> sinkNames;
+  private final CompletableSubject requested = CompletableSubject.create();
+  private final CompletableSubject cutOff = CompletableSubject.create();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private volatile long startNanos;
+  private volatile long deadlineNanos;
+  private volatile Snapshot atRequest;
+
+  /**
+   * Counters at one point in time, to report the difference
+   */
+  private static final class Snapshot {
+    private final double windowSize;
+    private final long evictions;
+    private final long impressions;
+    private final List<long[]> sinks = new ArrayList<>();
+
+    private Snapshot(final List<String> sinkNames) {
+      this.windowSize = Metrics.WINDOW_SIZE.get();
+      this.evictions = Metrics.WINDOW_EVICTIONS.get();
+      this.impressions = Metrics.IMPRESSIONS.get();
+      for (final String name : sinkNames) {
+        final SinkMetrics metrics = Metrics.forSink(name);
+        this.sinks.add(new long[] {
+                metrics.getPointsWritten().get(),
+                metrics.getSpoolPointsAppended().get(),
+                metrics.getPointsDropped().get() });
+      }
+    }
+  }
+
+  /**
+   * @param timeout   Time allowed for the whole shutdown
+   * @param sinkNames Names of the sinks, for the report
+   */
+  public Shutdown(final Duration timeout, final List<String> sinkNames) {
+    this.timeout = timeout;
+    this.sinkNames = sinkNames;
+  }
+
+  /**
+   * Register the shutdown hook. Before that, shutting down doesn't wait for anything.
+   */
+  public void install() {
+    Runtime.getRuntime().addShutdownHook(new Thread(this::run, "shutdown"));
+  }
+
+  /**
+   * @return Completes when the shutdown starts, so the log file shouldn't be read any further
+   */
+  public Flowable<Object> requested() {
+    return this.requested.toFlowable();
+  }
+
+  /**
+   * @return Completes when the pipeline has run out of time, so impressions shouldn't be processed any further
+   */
+  public Flowable<Object> cutOff() {
+    return this.cutOff.toFlowable();
+  }
+
+  /**
+   * @return Whether a shutdown was requested
+   */
+  public boolean isRequested() {
+    return this.requested.hasComplete();
+  }
+
+  /**
+   * @return Time allowed for the whole shutdown
+   */
+  public Duration getTimeout() {
+    return this.timeout;
+  }
+
+  /**
+   * @return Deadline for the sinks, in terms of {@link System#nanoTime()}. Only valid if a shutdown was requested.
+   */
+  public long getDeadlineNanos() {
+    return this.deadlineNanos;
+  }
+
+  /**
+   * Report what happened since the shutdown was requested, and let the JVM exit. To be called by the main thread
+   * once it's done, whether a shutdown was requested or not.
+   */
+  public void finished() {
+    if (isRequested())
+      report();
+    this.finished.countDown();
+  }
+
+  private void run() {
+    // The main thread exiting on its own doesn't need anything from us
+    if (this.finished.getCount() == 0)
+      return;
+    this.startNanos = System.nanoTime();
+    this.deadlineNanos = this.startNanos + this.timeout.toNanos();
+    this.atRequest = new Snapshot(this.sinkNames);
+    LOGGER.info("Shutting down: stopped reading the log file, draining {} impressions from the window",
+                (long) this.atRequest.windowSize);
+    this.requested.onComplete();
+    try {
+      if (!this.finished.await(this.timeout.toNanos() / 2, TimeUnit.NANOSECONDS)) {
+        LOGGER.warn("Shutdown: the window wasn't drained in time, cutting it off");
+        this.cutOff.onComplete();
+      }
+      if (!this.finished.await(Math.max(1, this.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+        LOGGER.error("Shutdown didn't finish within {}", this.timeout);
+        report();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void report() {
+    final Snapshot now = new Snapshot(this.sinkNames);
+    LOGGER.info("Shutdown report after {}ms: {} impressions evicted from the window, {} enriched",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos),
+                now.evictions - this.atRequest.evictions,
+                now.impressions - this.atRequest.impressions);
+    for (int i = 0; i < this.sinkNames.size(); i++) {
+      final long[] before = this.atRequest.sinks.get(i);
+      final long[] after = now.sinks.get(i);
+      LOGGER.info("Shutdown report, sink \"{}\": {} points written, {} spooled, {} dropped",
+                  this.sinkNames.get(i),
+                  after[0] - before[0],
+                  after[1] - before[1],
+                  after[2] - before[2]);
+    }
+  }
+}
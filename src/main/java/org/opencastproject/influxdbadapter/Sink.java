@@ -0,0 +1,52 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination for impressions and aggregates, such as InfluxDB or a file
+ *
+ * <p>
+ * Sinks are driven by a {@link SinkWriter}, which calls them from a single thread, so implementations don't have to
+ * be thread-safe. A sink signals a transient failure (the batch should be written again later) by throwing an
+ * <code>IOException</code>; any other exception means the batch cannot be written and is dropped.
+ * </p>
+ */
+public interface Sink extends AutoCloseable {
+  /**
+   * Write a batch of points, in order
+   *
+   * @param points The points to write
+   * @throws IOException If writing failed, but might succeed later
+   */
+  void write(List<DataPoint> points) throws IOException;
+
+  /**
+   * Release all resources, making sure everything written so far is persisted
+   *
+   * @throws IOException If closing failed
+   */
+  @Override
+  void close() throws IOException;
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Queueing and flushing parameters of one sink, see {@link SinkWriter} (immutable)
+ */
+public final class SinkConfig {
+  private final String name;
+  private final int queueSize;
+  private final int batchSize;
+  private final Duration flushInterval;
+  private final Path spoolDirectory;
+
+  public SinkConfig(
+          final String name,
+          final int queueSize,
+          final int batchSize,
+          final Duration flushInterval,
+          final Path spoolDirectory) {
+    this.name = name;
+    this.queueSize = queueSize;
+    this.batchSize = batchSize;
+    this.flushInterval = flushInterval;
+    this.spoolDirectory = spoolDirectory;
+  }
+
+  /**
+   * @return The sink's name, as used in the configuration file (<code>influxdb</code>, <code>file</code>, ...)
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return The number of impressions kept in memory before spooling (or waiting, if there's no spool)
+   */
+  public int getQueueSize() {
+    return this.queueSize;
+  }
+
+  /**
+   * @return The maximum number of impressions per write
+   */
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * @return How long to wait for a batch to fill up before writing it anyway
+   */
+  public Duration getFlushInterval() {
+    return this.flushInterval;
+  }
+
+  /**
+   * @return The spool directory, or <code>null</code> if the sink shouldn't spool
+   */
+  public Path getSpoolDirectory() {
+    return this.spoolDirectory;
+  }
+}
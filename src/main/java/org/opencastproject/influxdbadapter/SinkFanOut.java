@@ -0,0 +1,73 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.List;
+
+/**
+ * Hands every point to several sinks, each with its own {@link SinkWriter}
+ */
+public final class SinkFanOut implements AutoCloseable {
+  private final List<SinkWriter> writers;
+  private boolean closed;
+
+  public SinkFanOut(final List<SinkWriter> writers) {
+    this.writers = writers;
+  }
+
+  /**
+   * Hand a point to all sinks
+   *
+   * @param point The point to write
+   * @throws InterruptedException If interrupted while waiting for a sink without spool
+   * @throws SpoolException       If a sink's spool failed
+   */
+  public void write(final DataPoint point) throws InterruptedException, SpoolException {
+    for (final SinkWriter writer : this.writers)
+      writer.write(point);
+  }
+
+  /**
+   * Close all sinks, in order
+   */
+  @Override
+  public void close() {
+    if (this.closed)
+      return;
+    this.closed = true;
+    for (final SinkWriter writer : this.writers)
+      writer.close();
+  }
+
+  /**
+   * Close all sinks, in order, giving them until the deadline to write what they have
+   *
+   * @param deadlineNanos Deadline, in terms of {@link System#nanoTime()}
+   */
+  public void closeBy(final long deadlineNanos) {
+    if (this.closed)
+      return;
+    this.closed = true;
+    for (final SinkWriter writer : this.writers)
+      writer.closeBy(deadlineNanos);
+  }
+}
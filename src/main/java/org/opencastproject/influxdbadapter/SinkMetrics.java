@@ -0,0 +1,94 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+/**
+ * The metrics of one sink, see {@link Metrics#forSink(String)}
+ */
+public final class SinkMetrics {
+  private final Counter pointsWritten;
+  private final Counter pointsDropped;
+  private final Counter writeFailures;
+  private final Histogram writeDuration;
+  private final Gauge queueSize;
+  private final Gauge spoolSegments;
+  private final Counter spoolPointsAppended;
+  private final Counter spoolPointsReplayed;
+  private final Histogram impressionLag;
+
+  public SinkMetrics(
+          final Counter pointsWritten,
+          final Counter pointsDropped,
+          final Counter writeFailures,
+          final Histogram writeDuration,
+          final Gauge queueSize,
+          final Gauge spoolSegments,
+          final Counter spoolPointsAppended,
+          final Counter spoolPointsReplayed,
+          final Histogram impressionLag) {
+    this.pointsWritten = pointsWritten;
+    this.pointsDropped = pointsDropped;
+    this.writeFailures = writeFailures;
+    this.writeDuration = writeDuration;
+    this.queueSize = queueSize;
+    this.spoolSegments = spoolSegments;
+    this.spoolPointsAppended = spoolPointsAppended;
+    this.spoolPointsReplayed = spoolPointsReplayed;
+    this.impressionLag = impressionLag;
+  }
+
+  public Counter getPointsWritten() {
+    return this.pointsWritten;
+  }
+
+  public Counter getPointsDropped() {
+    return this.pointsDropped;
+  }
+
+  public Counter getWriteFailures() {
+    return this.writeFailures;
+  }
+
+  public Histogram getWriteDuration() {
+    return this.writeDuration;
+  }
+
+  public Gauge getQueueSize() {
+    return this.queueSize;
+  }
+
+  public Gauge getSpoolSegments() {
+    return this.spoolSegments;
+  }
+
+  public Counter getSpoolPointsAppended() {
+    return this.spoolPointsAppended;
+  }
+
+  public Counter getSpoolPointsReplayed() {
+    return this.spoolPointsReplayed;
+  }
+
+  public Histogram getImpressionLag() {
+    return this.impressionLag;
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a {@link Sink} in batches, from a separate thread, so the pipeline doesn't wait for it
+ *
+ * <p>
+ * Points are handed over in a bounded in-memory queue. A batch is written once it has reached the batch size,
+ * or the flush interval has passed since its first point arrived. Failed writes are retried with exponential
+ * backoff, unless the sink says retrying is pointless.
+ * </p>
+ *
+ * <p>
+ * If the queue is full (because the sink is slow or unavailable) and the sink has a {@link Spool}, points are
+ * appended to the spool instead, and keep going there until it has been replayed completely. The queue is written
+ * first and then the spool, so the sink receives the points in order. Without a spool, a full queue makes
+ * {@link #write(DataPoint)} wait.
+ * </p>
+ */
+public final class SinkWriter implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SinkWriter.class);
+
+  private static final long MIN_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 60_000;
+  private static final long POLL_MILLIS = 1000;
+  private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+  private final SinkConfig config;
+  private final Sink sink;
+  private final Spool spool;
+  private final SinkMetrics metrics;
+  private final BlockingQueue<DataPoint> queue;
+  private final Object lock = new Object();
+  // Used while holding the lock only
+  private final LineProtocol spoolEncoder = new LineProtocol();
+  private final ByteBuilder spoolBuffer = new ByteBuilder(1024);
+  private final Thread thread;
+  private volatile boolean closed;
+  private volatile boolean aborted;
+  // Set when the spool failed and the thread stopped
+  private volatile SpoolException failure;
+
+  /**
+   * Create the writer and start its thread
+   *
+   * @param config  Queue, batch and flush parameters
+   * @param sink    The sink to write to; it's closed with the writer
+   * @param spool   The spool to use when the sink falls behind, or <code>null</code>; it's closed with the writer
+   * @param metrics The sink's metrics
+   */
+  public SinkWriter(final SinkConfig config, final Sink sink, final Spool spool, final SinkMetrics metrics) {
+    this.config = config;
+    this.sink = sink;
+    this.spool = spool;
+    this.metrics = metrics;
+    this.queue = new ArrayBlockingQueue<>(config.getQueueSize());
+    this.thread = new Thread(this::run, config.getName() + "-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Hand over a point to be written. This only waits if the queue is full and there is no spool.
+   *
+   * @param point The point to write
+   * @throws InterruptedException If interrupted while waiting
+   * @throws SpoolException       If the spool failed, so the writer stopped
+   */
+  public void write(final DataPoint point) throws InterruptedException, SpoolException {
+    if (this.failure != null)
+      throw this.failure;
+    if (this.spool == null) {
+      if (this.closed)
+        throw new IllegalStateException("writer is closed");
+      this.queue.put(point);
+      return;
+    }
+    synchronized (this.lock) {
+      if (this.closed)
+        throw new IllegalStateException("writer is closed");
+      final boolean spoolEmpty = this.spool.isEmpty();
+      if (spoolEmpty && this.queue.offer(point))
+        return;
+      if (spoolEmpty)
+        LOGGER.warn("Sink \"{}\" is falling behind, spooling points", this.config.getName());
+      this.spoolBuffer.clear();
+      point.encode(this.spoolEncoder, this.spoolBuffer);
+      try {
+        this.spool.append(this.spoolBuffer, 1);
+      } catch (final IOException e) {
+        this.metrics.getPointsDropped().inc();
+        LOGGER.error("SPOOLERROR, sink \"{}\", dropping point: {}", this.config.getName(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stop accepting points, write the queued ones (waiting a bounded time), spool whatever is left and close
+   * the sink
+   */
+  @Override
+  public void close() {
+    closeBy(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS));
+  }
+
+  /**
+   * Like {@link #close()}, but wait until the given deadline at most
+   *
+   * @param deadlineNanos Deadline, in terms of {@link System#nanoTime()}
+   */
+  public void closeBy(final long deadlineNanos) {
+    synchronized (this.lock) {
+      this.closed = true;
+    }
+    try {
+      TimeUnit.NANOSECONDS.timedJoin(this.thread, Math.max(1, deadlineNanos - System.nanoTime()));
+      if (this.thread.isAlive()) {
+        LOGGER.warn("Sink \"{}\" didn't take all points in time", this.config.getName());
+        this.aborted = true;
+        this.thread.interrupt();
+        this.thread.join();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (this.spool != null)
+        this.spool.close();
+    } catch (final IOException e) {
+      LOGGER.error("SPOOLERROR, sink \"{}\", couldn't close spool: {}", this.config.getName(), e.getMessage());
+    }
+    try {
+      this.sink.close();
+    } catch (final IOException e) {
+      LOGGER.error("Couldn't close sink \"{}\": {}", this.config.getName(), e.getMessage());
+    }
+  }
+
+  private void run() {
+    final List<DataPoint> batch = new ArrayList<>(this.config.getBatchSize());
+    final long flushNanos = this.config.getFlushInterval().toNanos();
+    long batchStart = 0;
+    try {
+      while (!this.closed || !this.queue.isEmpty() || !batch.isEmpty()) {
+        if (batch.isEmpty()) {
+          if (!this.closed && replaySpool())
+            continue;
+          final DataPoint first = this.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (first == null)
+            continue;
+          batch.add(first);
+          batchStart = System.nanoTime();
+        }
+        this.queue.drainTo(batch, this.config.getBatchSize() - batch.size());
+        this.metrics.getQueueSize().set(this.queue.size());
+        final long lingerNanos = flushNanos - (System.nanoTime() - batchStart);
+        if (batch.size() < this.config.getBatchSize() && lingerNanos > 0 && !this.closed) {
+          // Wake up now and then, so closing doesn't wait for a long flush interval to pass
+          final DataPoint next = this.queue.poll(Math.min(lingerNanos, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)),
+                                                 TimeUnit.NANOSECONDS);
+          if (next != null)
+            batch.add(next);
+          continue;
+        }
+        send(batch);
+        batch.clear();
+      }
+    } catch (final InterruptedException e) {
+      // Closing, the remaining points are spooled below
+    } catch (final IOException e) {
+      LOGGER.error("SPOOLERROR, sink \"{}\", cannot continue: {}", this.config.getName(), e.getMessage());
+      this.failure = new SpoolException(this.config.getName(), e);
+    }
+    spoolRemaining(batch);
+  }
+
+  /**
+   * Replay the oldest spooled segment, if there is one and the queue is empty
+   *
+   * @return <code>true</code> if a segment was replayed
+   */
+  private boolean replaySpool() throws IOException, InterruptedException {
+    if (this.spool == null)
+      return false;
+    final Optional<Path> segment;
+    synchronized (this.lock) {
+      segment = this.queue.isEmpty() ? this.spool.oldestSegment() : Optional.empty();
+    }
+    if (!segment.isPresent())
+      return false;
+    List<String> points;
+    try {
+      points = Spool.read(segment.get());
+    } catch (final IOException e) {
+      LOGGER.error("SPOOLERROR, dropping unreadable segment \"{}\": {}", segment.get(), e.getMessage());
+      points = new ArrayList<>();
+    }
+    final List<DataPoint> batch = new ArrayList<>(this.config.getBatchSize());
+    for (final String point : points) {
+      batch.add(new SpooledPoint(point));
+      if (batch.size() == this.config.getBatchSize()) {
+        send(batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty())
+      send(batch);
+    synchronized (this.lock) {
+      this.spool.removeOldestSegment(points.size());
+      if (this.spool.isEmpty())
+        LOGGER.info("Spool of sink \"{}\" replayed, writing directly again", this.config.getName());
+    }
+    return true;
+  }
+
+  /**
+   * Record how far behind the log the impressions in a batch the sink just acknowledged are
+   */
+  private void observeLag(final List<DataPoint> batch) {
+    final long now = System.currentTimeMillis();
+    for (final DataPoint point : batch) {
+      if (point instanceof Impression)
+        this.metrics.getImpressionLag().observe(LagReport.lagSeconds(((Impression) point).getDate(), now));
+    }
+  }
+
+  /**
+   * Send a batch, retrying until it's written or dropped
+   */
+  private void send(final List<DataPoint> batch) throws InterruptedException {
+    long backoff = MIN_BACKOFF_MILLIS;
+    while (!this.aborted) {
+      final long start = System.nanoTime();
+      try {
+        this.sink.write(batch);
+        this.metrics.getWriteDuration().observeSince(start);
+        this.metrics.getPointsWritten().add(batch.size());
+        observeLag(batch);
+        return;
+      } catch (final IOException e) {
+        this.metrics.getWriteFailures().inc();
+        LOGGER.error("SINKWRITEERROR, sink \"{}\", retrying in {}ms: {}",
+                     this.config.getName(),
+                     backoff,
+                     e.getMessage());
+        Thread.sleep(backoff);
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+      } catch (final RuntimeException e) {
+        this.metrics.getWriteFailures().inc();
+        this.metrics.getPointsDropped().add(batch.size());
+        LOGGER.error("SINKWRITEERROR, sink \"{}\", dropping {} points: {}",
+                     this.config.getName(),
+                     batch.size(),
+                     e.getMessage());
+        return;
+      }
+    }
+    throw new InterruptedException();
+  }
+
+  /**
+   * Put the points taken from the queue, but not written, in front of the spool (they are older than
+   * everything in there)
+   */
+  private void spoolRemaining(final List<DataPoint> batch) {
+    synchronized (this.lock) {
+      this.queue.drainTo(batch);
+      if (batch.isEmpty())
+        return;
+      if (this.spool == null) {
+        this.metrics.getPointsDropped().add(batch.size());
+        LOGGER.error("Sink \"{}\" has no spool, dropping {} points", this.config.getName(), batch.size());
+        return;
+      }
+      this.spoolBuffer.clear();
+      for (final DataPoint point : batch)
+        point.encode(this.spoolEncoder, this.spoolBuffer);
+      try {
+        this.spool.prepend(this.spoolBuffer, batch.size());
+      } catch (final IOException e) {
+        this.metrics.getPointsDropped().add(batch.size());
+        LOGGER.error("SPOOLERROR, sink \"{}\", dropping {} points: {}",
+                     this.config.getName(),
+                     batch.size(),
+                     e.getMessage());
+      }
+    }
+  }
+}
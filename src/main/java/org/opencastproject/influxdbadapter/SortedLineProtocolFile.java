@@ -0,0 +1,364 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes points to one gzip-compressed line protocol file, sorted by time stamp, for <code>influx -import</code>
+ *
+ * <p>
+ * This is an external merge sort: points are collected in memory up to a limit, sorted and written to a temporary
+ * "run" file next to the result, and once the sink is closed, the runs are merged into the result. So memory use is
+ * bounded, however many points there are. Points with the same time stamp keep their order. The result has the suffix
+ * <code>.part</code> until it's complete.
+ * </p>
+ *
+ * <p>
+ * Like {@link InfluxDBSink}, aggregates can go to a retention policy of their own. They are then sorted separately
+ * and written after the other points, in a section starting with another <code># CONTEXT-RETENTION-POLICY</code>.
+ * </p>
+ */
+public final class SortedLineProtocolFile implements Sink {
+  private static final String PART_SUFFIX = ".part";
+  private static final int BUFFER_SIZE = 65536;
+
+  private final Path file;
+  private final String database;
+  private final String retentionPolicy;
+  private final String aggregateRetentionPolicy;
+  private final int runBytes;
+  private final LineProtocol encoder = new LineProtocol();
+  private final Section section;
+  private final Section aggregates;
+  private long points;
+  private long bytes;
+
+  /**
+   * @param file     The file to write
+   * @param database The database to name in the header <code>influx -import</code> expects, or <code>null</code>
+   *                 for no header
+   * @param runBytes Bytes of line protocol to sort in memory, at most
+   */
+  public SortedLineProtocolFile(final Path file, final String database, final int runBytes) {
+    this(file, database, null, null, runBytes);
+  }
+
+  /**
+   * @param file                     The file to write
+   * @param database                 The database to name in the header <code>influx -import</code> expects, or
+   *                                 <code>null</code> for no header (and no retention policies)
+   * @param retentionPolicy          The retention policy to write to, or <code>null</code> for the database's default
+   * @param aggregateRetentionPolicy The retention policy for aggregates, or <code>null</code> for the same as the
+   *                                 other points
+   * @param runBytes                 Bytes of line protocol to sort in memory, at most
+   */
+  public SortedLineProtocolFile(
+          final Path file,
+          final String database,
+          final String retentionPolicy,
+          final String aggregateRetentionPolicy,
+          final int runBytes) {
+    this.file = file;
+    this.database = database;
+    this.retentionPolicy = retentionPolicy;
+    this.aggregateRetentionPolicy = aggregateRetentionPolicy;
+    this.runBytes = runBytes;
+    this.section = new Section(Math.min(runBytes, BUFFER_SIZE));
+    this.aggregates = database != null && aggregateRetentionPolicy != null
+            ? new Section(Math.min(runBytes, BUFFER_SIZE))
+            : this.section;
+  }
+
+  @Override
+  public void write(final List<DataPoint> batch) throws IOException {
+    for (final DataPoint point : batch) {
+      final Section target = point.isAggregate() ? this.aggregates : this.section;
+      this.bytes += target.add(this.encoder, point);
+      this.points++;
+      if (this.section.lines.length() + (this.aggregates != this.section ? this.aggregates.lines.length() : 0)
+              >= this.runBytes) {
+        if (this.aggregates.lines.length() > this.section.lines.length())
+          this.aggregates.writeRun(this.file);
+        else
+          this.section.writeRun(this.file);
+      }
+    }
+  }
+
+  /**
+   * @return Points written so far
+   */
+  public long getPoints() {
+    return this.points;
+  }
+
+  /**
+   * @return Bytes of line protocol written so far, before compression
+   */
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Merge everything written into the result
+   *
+   * @throws IOException If reading the runs or writing the result failed
+   */
+  @Override
+  public void close() throws IOException {
+    final Path part = this.file.resolveSibling(this.file.getFileName() + PART_SUFFIX);
+    try (OutputStream out = new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(part), BUFFER_SIZE),
+            BUFFER_SIZE)) {
+      if (this.database != null) {
+        out.write(("# DML\n# CONTEXT-DATABASE: " + this.database + '\n').getBytes(StandardCharsets.UTF_8));
+        if (this.retentionPolicy != null)
+          out.write(("# CONTEXT-RETENTION-POLICY: " + this.retentionPolicy + '\n').getBytes(StandardCharsets.UTF_8));
+      }
+      this.section.writeTo(out, this.file);
+      if (this.aggregates != this.section && !this.aggregates.isEmpty()) {
+        out.write(("# CONTEXT-RETENTION-POLICY: " + this.aggregateRetentionPolicy + '\n')
+                          .getBytes(StandardCharsets.UTF_8));
+        this.aggregates.writeTo(out, this.file);
+      }
+    } finally {
+      deleteRuns();
+    }
+    Files.move(part, this.file, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Throw away everything written, without creating the result
+   *
+   * @throws IOException If deleting the temporary files failed
+   */
+  public void abort() throws IOException {
+    deleteRuns();
+    Files.deleteIfExists(this.file.resolveSibling(this.file.getFileName() + PART_SUFFIX));
+  }
+
+  private void deleteRuns() throws IOException {
+    this.section.deleteRuns();
+    this.aggregates.deleteRuns();
+  }
+
+  /**
+   * Points sorted together: the lines in memory, and the runs written so far
+   */
+  private static final class Section {
+    private final ByteBuilder lines;
+    // Time stamp and start of each line in lines
+    private long[] times = new long[1024];
+    private int[] starts = new int[1024];
+    private int count;
+    private final List<Path> runs = new ArrayList<>();
+
+    private Section(final int capacity) {
+      this.lines = new ByteBuilder(capacity);
+    }
+
+    /**
+     * @return The bytes of line protocol added
+     */
+    private int add(final LineProtocol encoder, final DataPoint point) {
+      if (this.count == this.times.length) {
+        this.times = Arrays.copyOf(this.times, this.count * 2);
+        this.starts = Arrays.copyOf(this.starts, this.count * 2);
+      }
+      final int start = this.lines.length();
+      point.encode(encoder, this.lines);
+      this.starts[this.count] = start;
+      this.times[this.count] = timeStamp(this.lines.array(), start, this.lines.length() - 1);
+      this.count++;
+      return this.lines.length() - start;
+    }
+
+    private boolean isEmpty() {
+      return this.count == 0 && this.runs.isEmpty();
+    }
+
+    private void writeRun(final Path file) throws IOException {
+      if (this.count == 0)
+        return;
+      final Path run = Files.createTempFile(file.toAbsolutePath().getParent(), ".run-", ".lp.gz");
+      run.toFile().deleteOnExit();
+      this.runs.add(run);
+      try (OutputStream out = new FastGzipOutputStream(Files.newOutputStream(run))) {
+        writeSorted(out);
+      }
+      this.lines.clear();
+      this.count = 0;
+    }
+
+    private void writeTo(final OutputStream out, final Path file) throws IOException {
+      if (this.runs.isEmpty()) {
+        // Everything fit into memory
+        writeSorted(out);
+      } else {
+        writeRun(file);
+        merge(out);
+      }
+    }
+
+    private void writeSorted(final OutputStream out) throws IOException {
+      for (final int i : sortedOrder())
+        out.write(this.lines.array(), this.starts[i], end(i) - this.starts[i]);
+    }
+
+    /**
+     * Merge the runs (each sorted already), taking the earliest line of any of them each time
+     */
+    private void merge(final OutputStream out) throws IOException {
+      final List<BufferedReader> readers = new ArrayList<>();
+      try {
+        final PriorityQueue<RunLine> heads = new PriorityQueue<>(
+                Comparator.comparingLong((RunLine l) -> l.time).thenComparingInt(l -> l.run));
+        for (final Path run : this.runs) {
+          final BufferedReader reader = new BufferedReader(
+                  new InputStreamReader(new GZIPInputStream(Files.newInputStream(run), BUFFER_SIZE),
+                                        StandardCharsets.ISO_8859_1),
+                  BUFFER_SIZE);
+          readers.add(reader);
+          next(reader, readers.size() - 1, heads);
+        }
+        while (!heads.isEmpty()) {
+          final RunLine head = heads.poll();
+          // Read and written as ISO 8859-1, so the UTF-8 bytes go through unchanged
+          out.write(head.line.getBytes(StandardCharsets.ISO_8859_1));
+          out.write('\n');
+          next(readers.get(head.run), head.run, heads);
+        }
+      } finally {
+        for (final BufferedReader reader : readers)
+          reader.close();
+      }
+    }
+
+    private void deleteRuns() throws IOException {
+      for (final Path run : this.runs)
+        Files.deleteIfExists(run);
+      this.runs.clear();
+    }
+
+    private int end(final int i) {
+      return i + 1 < this.count ? this.starts[i + 1] : this.lines.length();
+    }
+
+    /**
+     * @return Indexes of the lines in memory, ordered by time stamp (a stable merge sort, so ties keep their order)
+     */
+    private int[] sortedOrder() {
+      int[] order = new int[this.count];
+      for (int i = 0; i < this.count; i++)
+        order[i] = i;
+      int[] scratch = new int[this.count];
+      for (int width = 1; width < this.count; width *= 2) {
+        for (int lo = 0; lo < this.count; lo += 2 * width) {
+          final int mid = Math.min(lo + width, this.count);
+          final int hi = Math.min(lo + 2 * width, this.count);
+          int a = lo;
+          int b = mid;
+          int k = lo;
+          while (a < mid && b < hi)
+            scratch[k++] = this.times[order[b]] < this.times[order[a]] ? order[b++] : order[a++];
+          while (a < mid)
+            scratch[k++] = order[a++];
+          while (b < hi)
+            scratch[k++] = order[b++];
+        }
+        final int[] swap = order;
+        order = scratch;
+        scratch = swap;
+      }
+      return order;
+    }
+  }
+
+  private static void next(final BufferedReader reader, final int run, final PriorityQueue<RunLine> heads)
+          throws IOException {
+    final String line = reader.readLine();
+    if (line == null)
+      return;
+    final int space = line.lastIndexOf(' ');
+    heads.add(new RunLine(Long.parseLong(line.substring(space + 1)), run, line));
+  }
+
+  /**
+   * Parse the time stamp at the end of a line
+   *
+   * @param line  Bytes containing the line
+   * @param start Where the line starts
+   * @param end   Where the line ends (its line break)
+   * @return The time stamp
+   */
+  private static long timeStamp(final byte[] line, final int start, final int end) {
+    int i = end;
+    while (i > start && line[i - 1] != ' ')
+      i--;
+    long result = 0;
+    while (i < end)
+      result = result * 10 + (line[i++] - '0');
+    return result;
+  }
+
+  /**
+   * A line read from a run
+   */
+  private static final class RunLine {
+    private final long time;
+    private final int run;
+    private final String line;
+
+    private RunLine(final long time, final int run, final String line) {
+      this.time = time;
+      this.run = run;
+      this.line = line;
+    }
+  }
+
+  /**
+   * Compresses the runs quickly, as they are only read once
+   */
+  private static final class FastGzipOutputStream extends GZIPOutputStream {
+    private FastGzipOutputStream(final OutputStream out) throws IOException {
+      super(out, BUFFER_SIZE);
+      this.def.setLevel(Deflater.BEST_SPEED);
+    }
+  }
+}
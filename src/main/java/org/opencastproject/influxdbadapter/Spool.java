@@ -0,0 +1,268 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A directory of gzip compressed line protocol files ("segments") holding points that couldn't be written yet
+ *
+ * <p>
+ * Points are appended to the newest segment, and segments are replayed oldest first, so the order of the points is
+ * kept. Segments left over from a previous run are picked up on {@link #open(Path, SinkMetrics)}. The directory is locked while
+ * the spool is open, so two adapters cannot share it.
+ * </p>
+ *
+ * <p>
+ * This class isn't thread-safe, see {@link SinkWriter} for how it's used.
+ * </p>
+ */
+public final class Spool implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Spool.class);
+
+  private static final String SUFFIX = ".lp.gz";
+  private static final int SEGMENT_POINTS = 100_000;
+
+  private final Path directory;
+  private final SinkMetrics metrics;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+  private final Deque<Long> closedSegments;
+  private long nextSequence;
+  private OutputStream openStream;
+  private int openPoints;
+
+  private Spool(
+          final Path directory,
+          final SinkMetrics metrics,
+          final FileChannel lockChannel,
+          final FileLock lock,
+          final Deque<Long> closedSegments,
+          final long nextSequence) {
+    this.directory = directory;
+    this.metrics = metrics;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+    this.closedSegments = closedSegments;
+    this.nextSequence = nextSequence;
+  }
+
+  /**
+   * Open (and possibly create) a spool directory
+   *
+   * @param directory The directory to use
+   * @param metrics   The metrics of the sink the spool belongs to
+   * @return The opened spool, including all segments from previous runs
+   * @throws IOException If the directory couldn't be created or read, or is in use by another process
+   */
+  public static Spool open(final Path directory, final SinkMetrics metrics) throws IOException {
+    Files.createDirectories(directory);
+    final FileChannel lockChannel = FileChannel.open(directory.resolve("lock"),
+                                                     StandardOpenOption.CREATE,
+                                                     StandardOpenOption.WRITE);
+    FileLock lock;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (final OverlappingFileLockException e) {
+      // Locked in this very process
+      lock = null;
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException("spool directory \"" + directory + "\" is in use by another process");
+    }
+    final TreeMap<Long, Path> segments = new TreeMap<>();
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (final Path segment : stream) {
+        final String name = segment.getFileName().toString();
+        try {
+          segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), segment);
+        } catch (final NumberFormatException e) {
+          LOGGER.warn("Ignoring unknown file \"{}\" in spool directory", segment);
+        }
+      }
+    }
+    if (!segments.isEmpty())
+      LOGGER.info("Found {} spooled segments in \"{}\", replaying them", segments.size(), directory);
+    metrics.getSpoolSegments().set(segments.size());
+    return new Spool(directory,
+                     metrics,
+                     lockChannel,
+                     lock,
+                     new ArrayDeque<>(segments.keySet()),
+                     segments.isEmpty() ? 0 : segments.lastKey() + 1);
+  }
+
+  /**
+   * @return <code>true</code> if there are no spooled points
+   */
+  public boolean isEmpty() {
+    return this.closedSegments.isEmpty() && this.openPoints == 0;
+  }
+
+  /**
+   * Append points to the newest segment
+   *
+   * @param lineProtocol The points, in InfluxDB's line protocol, one per line
+   * @param pointCount   The number of points
+   * @throws IOException If writing failed
+   */
+  public void append(final ByteBuilder lineProtocol, final int pointCount) throws IOException {
+    if (this.openStream == null) {
+      this.openStream = newStream(segmentPath(this.nextSequence));
+      this.nextSequence++;
+      this.metrics.getSpoolSegments().set(this.closedSegments.size() + 1);
+    }
+    this.openStream.write(lineProtocol.array(), 0, lineProtocol.length());
+    this.openPoints += pointCount;
+    this.metrics.getSpoolPointsAppended().add(pointCount);
+    if (this.openPoints >= SEGMENT_POINTS)
+      closeOpenSegment();
+  }
+
+  /**
+   * Write points in front of all other spooled points (used for points that were taken out of order)
+   *
+   * @param lineProtocol The points, in InfluxDB's line protocol, one per line
+   * @param pointCount   The number of points
+   * @throws IOException If writing failed
+   */
+  public void prepend(final ByteBuilder lineProtocol, final int pointCount) throws IOException {
+    if (pointCount == 0)
+      return;
+    final long sequence;
+    if (!this.closedSegments.isEmpty())
+      sequence = this.closedSegments.peekFirst() - 1;
+    else if (this.openStream != null)
+      sequence = this.nextSequence - 2;
+    else
+      sequence = this.nextSequence - 1;
+    try (final OutputStream stream = newStream(segmentPath(sequence))) {
+      stream.write(lineProtocol.array(), 0, lineProtocol.length());
+    }
+    this.closedSegments.addFirst(sequence);
+    this.metrics.getSpoolPointsAppended().add(pointCount);
+    this.metrics.getSpoolSegments().set(this.closedSegments.size() + (this.openStream != null ? 1 : 0));
+  }
+
+  /**
+   * Get the oldest segment to replay, closing the newest segment if it's the only one left
+   *
+   * @return The oldest segment, or nothing if the spool is empty
+   * @throws IOException If closing the newest segment failed
+   */
+  public Optional<Path> oldestSegment() throws IOException {
+    if (this.closedSegments.isEmpty() && this.openPoints > 0)
+      closeOpenSegment();
+    return this.closedSegments.isEmpty()
+            ? Optional.empty()
+            : Optional.of(segmentPath(this.closedSegments.peekFirst()));
+  }
+
+  /**
+   * Read the points of a segment. A segment truncated by a crash is read up to the truncation.
+   *
+   * @param segment The segment, as returned by {@link #oldestSegment()}
+   * @return The points, in InfluxDB's line protocol
+   * @throws IOException If reading failed
+   */
+  public static List<String> read(final Path segment) throws IOException {
+    final List<String> result = new ArrayList<>();
+    try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(segment)),
+            StandardCharsets.UTF_8))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (!line.isEmpty())
+          result.add(line);
+      }
+    } catch (final EOFException e) {
+      LOGGER.warn("Spool segment \"{}\" is truncated, read {} points from it", segment, result.size());
+    }
+    return result;
+  }
+
+  /**
+   * Remove the oldest segment, after it was replayed
+   *
+   * @param pointCount The number of points in the segment (for metrics)
+   * @throws IOException If deleting failed
+   */
+  public void removeOldestSegment(final int pointCount) throws IOException {
+    Files.delete(segmentPath(this.closedSegments.removeFirst()));
+    this.metrics.getSpoolPointsReplayed().add(pointCount);
+    this.metrics.getSpoolSegments().set(this.closedSegments.size() + (this.openStream != null ? 1 : 0));
+  }
+
+  /**
+   * Close the newest segment and release the directory; spooled points are kept for the next run
+   *
+   * @throws IOException If closing failed
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (this.openStream != null)
+        closeOpenSegment();
+    } finally {
+      this.lock.release();
+      this.lockChannel.close();
+    }
+  }
+
+  private void closeOpenSegment() throws IOException {
+    this.openStream.close();
+    this.openStream = null;
+    this.closedSegments.addLast(this.nextSequence - 1);
+    this.openPoints = 0;
+  }
+
+  private Path segmentPath(final long sequence) {
+    return this.directory.resolve(sequence + SUFFIX);
+  }
+
+  private static OutputStream newStream(final Path segment) throws IOException {
+    return new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(segment), 65536), 65536);
+  }
+}
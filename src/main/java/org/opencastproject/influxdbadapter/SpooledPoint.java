@@ -0,0 +1,51 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A point read back from a {@link Spool}, already encoded (immutable)
+ */
+public final class SpooledPoint implements DataPoint {
+  private final byte[] line;
+  private final boolean aggregate;
+
+  /**
+   * @param line The encoded point, without the line break
+   */
+  public SpooledPoint(final String line) {
+    this.line = line.getBytes(StandardCharsets.UTF_8);
+    this.aggregate = !line.startsWith(LineProtocol.IMPRESSIONS_MEASUREMENT + ',')
+            && !line.startsWith(LineProtocol.IMPRESSIONS_MEASUREMENT + ' ');
+  }
+
+  @Override
+  public void encode(final LineProtocol encoder, final ByteBuilder out) {
+    out.append(this.line).append((byte) '\n');
+  }
+
+  @Override
+  public boolean isAggregate() {
+    return this.aggregate;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Runs everything downstream of it on a thread of its own, so it overlaps with what's upstream
+ *
+ * <p>
+ * The items are handed over in a {@link StageQueue}. Upstream is asked for as many items as fit into the queue, and
+ * for more whenever the stage's thread has taken a good part of them, so neither side waits for the other as long as
+ * there is something to do, and a slow downstream holds back upstream without anything growing. The stage's thread
+ * takes the items in batches, and only waits when the queue is empty. An error upstream reaches downstream after the
+ * items before it.
+ * </p>
+ *
+ * @param <T> Type of the items
+ */
+public final class Stage<T> implements FlowableTransformer<T, T> {
+  private static final int MAX_BATCH = 256;
+
+  private final String name;
+  private final int capacity;
+
+  /**
+   * @param name     The stage's name, used for its thread and for the <code>stage_queue_size</code> metric
+   * @param capacity Items handed over but not yet taken, at most
+   */
+  public Stage(final String name, final int capacity) {
+    this.name = name;
+    this.capacity = capacity;
+  }
+
+  @Override
+  public Flowable<T> apply(final Flowable<T> upstream) {
+    return Flowable.defer(() -> {
+      final StageQueue<T> queue = new StageQueue<>(this.capacity, Metrics.stageQueueSize(this.name));
+      final Producer<T> producer = new Producer<>(queue);
+      final int batch = Math.min(MAX_BATCH, Math.max(1, this.capacity / 4));
+      final Scheduler thread = RxJavaPlugins.createNewThreadScheduler(r -> {
+        final Thread result = new Thread(r, this.name + "-stage");
+        result.setDaemon(true);
+        return result;
+      });
+      return Flowable.<List<T>, List<T>>generate(
+              () -> {
+                upstream.subscribe(producer);
+                return new ArrayList<>(batch);
+              },
+              (taken, emitter) -> {
+                final List<T> items = new ArrayList<>(batch);
+                final int n;
+                try {
+                  n = queue.take(items, batch);
+                } catch (final InterruptedException e) {
+                  // Only happens when cancelled, so this doesn't reach anyone
+                  emitter.onComplete();
+                  return taken;
+                }
+                if (n < 0) {
+                  if (queue.getError() != null)
+                    emitter.onError(queue.getError());
+                  else
+                    emitter.onComplete();
+                  return taken;
+                }
+                producer.taken(n);
+                emitter.onNext(items);
+                return taken;
+              },
+              taken -> producer.cancel())
+              .subscribeOn(thread)
+              // One batch at a time, the next one is taken once this one is through
+              .concatMapIterable(items -> items, 1);
+    });
+  }
+
+  /**
+   * Subscribes upstream and puts its items into the queue
+   */
+  private static final class Producer<T> implements FlowableSubscriber<T> {
+    private final StageQueue<T> queue;
+    // Items taken from the queue, but not requested again (used by the stage's thread only)
+    private int taken;
+    private volatile Subscription subscription;
+    private volatile boolean cancelled;
+
+    private Producer(final StageQueue<T> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+      this.subscription = s;
+      if (this.cancelled)
+        s.cancel();
+      else
+        s.request(this.queue.getCapacity());
+    }
+
+    @Override
+    public void onNext(final T item) {
+      // Never more items than were requested, so there's room
+      if (!this.queue.offer(item)) {
+        this.subscription.cancel();
+        this.queue.fail(new IllegalStateException("stage queue overflow"));
+      }
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+      this.queue.fail(e);
+    }
+
+    @Override
+    public void onComplete() {
+      this.queue.complete();
+    }
+
+    /**
+     * Ask upstream for more, once enough items have been taken from the queue (called by the stage's thread)
+     *
+     * @param n Items just taken
+     */
+    private void taken(final int n) {
+      this.taken += n;
+      if (this.taken >= Math.max(1, this.queue.getCapacity() / 4)) {
+        this.subscription.request(this.taken);
+        this.taken = 0;
+      }
+    }
+
+    private void cancel() {
+      this.cancelled = true;
+      final Subscription s = this.subscription;
+      if (s != null)
+        s.cancel();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue handing items from one thread to another, see {@link Stage} (one producer and one consumer only)
+ *
+ * <p>
+ * The items are kept in a ring buffer. Each side advances its own index and only reads the other one when it has to
+ * (the producer when the ring looks full, the consumer when it looks empty), and the consumer takes everything that
+ * is there in one go, so a batch costs about as much synchronization as a single item. A side that has to wait
+ * parks its thread until the other one wakes it up.
+ * </p>
+ *
+ * @param <T> Type of the items
+ */
+public final class StageQueue<T> {
+  // Only a safety net, waiting sides are woken up explicitly
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Object[] ring;
+  private final int mask;
+  private final int capacity;
+  private final Gauge depth;
+  // Index of the next item to write, advanced by the producer
+  private final AtomicLong tail = new AtomicLong();
+  // Index of the next item to read, advanced by the consumer
+  private final AtomicLong head = new AtomicLong();
+  // The producer's last look at the head, and the consumer's last look at the tail
+  private long headCache;
+  private long tailCache;
+  private volatile Thread waitingProducer;
+  private volatile Thread waitingConsumer;
+  private volatile boolean done;
+  private volatile Throwable error;
+
+  /**
+   * @param capacity Items the queue holds, at least 1
+   * @param depth    Gauge to keep the number of waiting items in
+   */
+  public StageQueue(final int capacity, final Gauge depth) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("capacity has to be at least 1, got " + capacity);
+    int length = 1;
+    while (length < capacity)
+      length <<= 1;
+    this.ring = new Object[length];
+    this.mask = length - 1;
+    this.capacity = capacity;
+    this.depth = depth;
+  }
+
+  /**
+   * @return Items the queue holds, at most
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * @return Items waiting to be taken (a snapshot, any thread)
+   */
+  public int size() {
+    return (int) (this.tail.get() - this.head.get());
+  }
+
+  /**
+   * Add an item, unless the queue is full (producer only)
+   *
+   * @param item The item
+   * @return <code>false</code> if the queue is full
+   */
+  public boolean offer(final T item) {
+    final long t = this.tail.get();
+    if (t - this.headCache >= this.capacity) {
+      this.headCache = this.head.get();
+      if (t - this.headCache >= this.capacity)
+        return false;
+    }
+    this.ring[(int) t & this.mask] = item;
+    this.tail.set(t + 1);
+    wake(this.waitingConsumer);
+    return true;
+  }
+
+  /**
+   * Add an item, waiting while the queue is full (producer only)
+   *
+   * @param item The item
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public void put(final T item) throws InterruptedException {
+    while (!offer(item)) {
+      this.depth.set(this.capacity);
+      this.waitingProducer = Thread.currentThread();
+      if (size() >= this.capacity)
+        LockSupport.parkNanos(this, PARK_NANOS);
+      this.waitingProducer = null;
+      if (Thread.interrupted())
+        throw new InterruptedException();
+    }
+  }
+
+  /**
+   * Mark the end of the items; the consumer gets the ones already added first (producer only)
+   */
+  public void complete() {
+    this.done = true;
+    wake(this.waitingConsumer);
+  }
+
+  /**
+   * Mark the end of the items because of an error; the consumer gets the ones already added first (producer only)
+   *
+   * @param e The error
+   */
+  public void fail(final Throwable e) {
+    this.error = e;
+    complete();
+  }
+
+  /**
+   * @return The error the producer ended with, or <code>null</code>
+   */
+  public Throwable getError() {
+    return this.error;
+  }
+
+  /**
+   * Take the items that are there, without waiting (consumer only)
+   *
+   * @param into Where to add the items
+   * @param max  Items to take, at most
+   * @return Number of items taken
+   */
+  public int drain(final List<? super T> into, final int max) {
+    final long h = this.head.get();
+    if (this.tailCache - h < max)
+      this.tailCache = this.tail.get();
+    final int n = (int) Math.min(this.tailCache - h, max);
+    for (long i = h; i < h + n; i++) {
+      final int slot = (int) i & this.mask;
+      @SuppressWarnings("unchecked") final T item = (T) this.ring[slot];
+      this.ring[slot] = null;
+      into.add(item);
+    }
+    if (n > 0) {
+      this.head.set(h + n);
+      this.depth.set(this.tailCache - h - n);
+      wake(this.waitingProducer);
+    }
+    return n;
+  }
+
+  /**
+   * Take the items that are there, waiting for at least one (consumer only)
+   *
+   * @param into Where to add the items
+   * @param max  Items to take, at most
+   * @return Number of items taken, <code>-1</code> once the queue is empty and the producer is done (see
+   *         {@link #getError()})
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public int take(final List<? super T> into, final int max) throws InterruptedException {
+    while (true) {
+      // Read the flag first: if it's set, everything the producer added before is visible
+      final boolean finished = this.done;
+      final int n = drain(into, max);
+      if (n > 0)
+        return n;
+      if (finished)
+        return -1;
+      this.waitingConsumer = Thread.currentThread();
+      if (size() == 0 && !this.done)
+        LockSupport.parkNanos(this, PARK_NANOS);
+      this.waitingConsumer = null;
+      if (Thread.interrupted())
+        throw new InterruptedException();
+    }
+  }
+
+  private static void wake(final Thread waiting) {
+    if (waiting != null)
+      LockSupport.unpark(waiting);
+  }
+}
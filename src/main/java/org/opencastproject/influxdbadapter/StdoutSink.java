@@ -0,0 +1,53 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes impressions and aggregates to standard output, in InfluxDB's line protocol
+ */
+public final class StdoutSink implements Sink {
+  private final OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 65536);
+  private final LineProtocol encoder = new LineProtocol();
+  private final ByteBuilder buffer = new ByteBuilder(64 * 1024);
+
+  @Override
+  public void write(final List<DataPoint> points) throws IOException {
+    this.buffer.clear();
+    for (final DataPoint point : points)
+      point.encode(this.encoder, this.buffer);
+    this.out.write(this.buffer.array(), 0, this.buffer.length());
+    this.out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Standard output itself stays open
+    this.out.flush();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of something, allowing short bursts (thread-safe)
+ *
+ * <p>
+ * Tokens are added at a fixed rate, up to the bucket's capacity, and every request takes one. Instead of blocking or
+ * failing when the bucket is empty, {@link #reserve()} takes the token in advance and returns how long the caller has
+ * to wait for it, so requests can be delayed without holding a thread. This is implemented by keeping the time the
+ * bucket will be full again (the "generic cell rate algorithm"), so it takes no background work.
+ * </p>
+ */
+public final class TokenBucket {
+  private final long intervalNanos;
+  private final long burstNanos;
+  private final LongSupplier nanoTime;
+  private long fullAt;
+
+  /**
+   * @param perSecond Tokens added per second
+   * @param capacity  Tokens the bucket holds, at least 1
+   * @param nanoTime  The clock, usually <code>System::nanoTime</code>
+   */
+  public TokenBucket(final double perSecond, final int capacity, final LongSupplier nanoTime) {
+    this.intervalNanos = (long) (1_000_000_000L / perSecond);
+    this.burstNanos = (capacity - 1) * this.intervalNanos;
+    this.nanoTime = nanoTime;
+    this.fullAt = nanoTime.getAsLong();
+  }
+
+  /**
+   * Take a token, possibly one that hasn't been added yet
+   *
+   * @return Nanoseconds to wait until the token is there, <code>0</code> if it is there already
+   */
+  public synchronized long reserve() {
+    final long now = this.nanoTime.getAsLong();
+    final long start = this.fullAt - now > 0 ? this.fullAt : now;
+    this.fullAt = start + this.intervalNanos;
+    return Math.max(0, start - this.burstNanos - now);
+  }
+}
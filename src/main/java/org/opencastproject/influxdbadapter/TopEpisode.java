@@ -0,0 +1,122 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+/**
+ * An entry of the most-watched episodes list (immutable)
+ *
+ * <p>See {@link TopEpisodes}.</p>
+ */
+public final class TopEpisode implements DataPoint {
+  public static final String MEASUREMENT = "top_episodes";
+
+  private static final String[] FIELDS = { "error", "value" };
+
+  private final String partition;
+  private final int rank;
+  private final String organizationId;
+  private final String seriesId;
+  private final String episodeId;
+  private final long count;
+  private final long error;
+  private final long timeNanos;
+
+  public TopEpisode(
+          final String partition,
+          final int rank,
+          final String organizationId,
+          final String seriesId,
+          final String episodeId,
+          final long count,
+          final long error,
+          final long timeNanos) {
+    this.partition = partition;
+    this.rank = rank;
+    this.organizationId = organizationId;
+    this.seriesId = seriesId;
+    this.episodeId = episodeId;
+    this.count = count;
+    this.error = error;
+    this.timeNanos = timeNanos;
+  }
+
+  @Override
+  public void encode(final LineProtocol encoder, final ByteBuilder out) {
+    // The episode is a field, not a tag, so the measurement has as many series as there are ranks
+    LineProtocol.encodeAggregate(out,
+                                 MEASUREMENT,
+                                 new String[] { "partition", this.partition, "rank", Integer.toString(this.rank) },
+                                 FIELDS,
+                                 new long[] { this.error, this.count },
+                                 new String[] {
+                                         "episodeId", this.episodeId,
+                                         "organizationId", this.organizationId,
+                                         "seriesId", this.seriesId },
+                                 this.timeNanos);
+  }
+
+  @Override
+  public boolean isAggregate() {
+    return true;
+  }
+
+  /**
+   * @return The partition member that counted this entry, empty if there is no partitioning
+   */
+  public String getPartition() {
+    return this.partition;
+  }
+
+  /**
+   * @return The position in the list, starting at 1
+   */
+  public int getRank() {
+    return this.rank;
+  }
+
+  public String getOrganizationId() {
+    return this.organizationId;
+  }
+
+  public String getSeriesId() {
+    return this.seriesId;
+  }
+
+  public String getEpisodeId() {
+    return this.episodeId;
+  }
+
+  /**
+   * @return The estimated number of impressions, which is too high by at most {@link #getError()}
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  public long getError() {
+    return this.error;
+  }
+
+  public long getTimeNanos() {
+    return this.timeNanos;
+  }
+}
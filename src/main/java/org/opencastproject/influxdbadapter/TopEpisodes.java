@@ -0,0 +1,187 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The most-watched episodes since the last flush, tracked in bounded memory with the Space-Saving algorithm
+ * (thread-safe)
+ *
+ * <p>
+ * A fixed number of counters is kept, ten times the size of the list. An episode without a counter takes over the
+ * smallest one, inheriting its count as possible error, so counts are too high by at most that error, and every
+ * episode watched more often than the smallest counter is guaranteed to be in the list. The counters are kept in a
+ * min-heap, so an impression costs a hash lookup and a few swaps. Each flush writes the list and starts over.
+ * </p>
+ */
+public final class TopEpisodes implements Aggregator {
+  private static final int COUNTERS_PER_ENTRY = 10;
+
+  private final int size;
+  private final String partition;
+  private final Counter[] heap;
+  private final Map<Key, Counter> counters = new HashMap<>();
+  private int heapSize;
+
+  private static final class Key {
+    private final String organizationId;
+    private final String episodeId;
+
+    private Key(final String organizationId, final String episodeId) {
+      this.organizationId = organizationId;
+      this.episodeId = episodeId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      final Key that = (Key) o;
+      return this.organizationId.equals(that.organizationId) && this.episodeId.equals(that.episodeId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.organizationId, this.episodeId);
+    }
+  }
+
+  private static final class Counter {
+    private Key key;
+    private String seriesId;
+    private long count;
+    private long error;
+    private int position;
+  }
+
+  /**
+   * @param size The length of the list
+   */
+  public TopEpisodes(final int size) {
+    this(size, "");
+  }
+
+  /**
+   * @param size      The length of the list
+   * @param partition The instance's partition member, tagging the list so instances don't overwrite each other's;
+   *                  empty if there is no partitioning
+   */
+  public TopEpisodes(final int size, final String partition) {
+    this.size = size;
+    this.partition = partition;
+    this.heap = new Counter[size * COUNTERS_PER_ENTRY];
+  }
+
+  @Override
+  public synchronized void add(final Impression impression) {
+    final Key key = new Key(impression.getOrganizationId(), impression.getEpisodeId());
+    Counter counter = this.counters.get(key);
+    if (counter == null && this.heapSize < this.heap.length) {
+      counter = new Counter();
+      counter.key = key;
+      counter.seriesId = impression.getSeriesId();
+      counter.count = 1;
+      this.counters.put(key, counter);
+      siftUp(counter, this.heapSize++);
+      return;
+    }
+    if (counter == null) {
+      // Take over the smallest counter
+      counter = this.heap[0];
+      this.counters.remove(counter.key);
+      counter.key = key;
+      counter.error = counter.count;
+      this.counters.put(key, counter);
+    }
+    counter.seriesId = impression.getSeriesId();
+    counter.count++;
+    siftDown(counter);
+  }
+
+  @Override
+  public synchronized List<TopEpisode> flush(final Instant now) {
+    final long nowNanos = Duration.ofSeconds(now.getEpochSecond(), now.getNano()).toNanos();
+    final Counter[] sorted = Arrays.copyOf(this.heap, this.heapSize);
+    Arrays.sort(sorted, Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+    final List<TopEpisode> result = new ArrayList<>(this.size);
+    for (int i = 0; i < Math.min(this.size, sorted.length); i++) {
+      result.add(new TopEpisode(this.partition,
+                                i + 1,
+                                sorted[i].key.organizationId,
+                                sorted[i].seriesId,
+                                sorted[i].key.episodeId,
+                                sorted[i].count,
+                                sorted[i].error,
+                                nowNanos));
+    }
+    Arrays.fill(this.heap, 0, this.heapSize, null);
+    this.heapSize = 0;
+    this.counters.clear();
+    return result;
+  }
+
+  /**
+   * Insert a counter at the given leaf, moving it up while its parent is bigger
+   */
+  private void siftUp(final Counter counter, final int leaf) {
+    int position = leaf;
+    while (position > 0 && this.heap[(position - 1) / 2].count > counter.count) {
+      this.heap[position] = this.heap[(position - 1) / 2];
+      this.heap[position].position = position;
+      position = (position - 1) / 2;
+    }
+    this.heap[position] = counter;
+    counter.position = position;
+  }
+
+  /**
+   * Restore the heap property after a counter was incremented
+   */
+  private void siftDown(final Counter counter) {
+    int position = counter.position;
+    while (true) {
+      final int left = 2 * position + 1;
+      if (left >= this.heapSize)
+        break;
+      final int right = left + 1;
+      final int smallest = right < this.heapSize && this.heap[right].count < this.heap[left].count ? right : left;
+      if (this.heap[smallest].count >= counter.count)
+        break;
+      this.heap[position] = this.heap[smallest];
+      this.heap[position].position = position;
+      position = smallest;
+    }
+    this.heap[position] = counter;
+    counter.position = position;
+  }
+}
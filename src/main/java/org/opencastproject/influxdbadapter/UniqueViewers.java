@@ -0,0 +1,168 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Estimated unique viewers (client addresses) per episode and per series, in hourly and daily buckets, kept up to
+ * date as impressions are made (thread-safe)
+ *
+ * <p>
+ * Every bucket has a {@link HyperLogLog} sketch. Each flush writes the current estimate of every bucket that changed,
+ * time-stamped at the start of the bucket, so it replaces the previous estimate. Only the bucket of the latest
+ * impression and the one before are kept; impressions older than that are not counted, since their bucket's estimate
+ * would start over. Buckets are in UTC, and series are counted across publication channels.
+ * </p>
+ */
+public final class UniqueViewers implements Aggregator {
+  public static final String EPISODE_MEASUREMENT_PREFIX = "episode_viewers_";
+  public static final String SERIES_MEASUREMENT_PREFIX = "series_viewers_";
+
+  private final List<String> resolutions;
+  private final List<Long> bucketNanos = new ArrayList<>();
+  private final List<Map<Key, Sketch>> sketches = new ArrayList<>();
+  private long latestNanos = Long.MIN_VALUE;
+
+  /**
+   * An episode's (or, with an empty episode ID, a series') bucket
+   */
+  private static final class Key {
+    private final String organizationId;
+    private final String seriesId;
+    private final String episodeId;
+    private final long bucketStartNanos;
+
+    private Key(
+            final String organizationId,
+            final String seriesId,
+            final String episodeId,
+            final long bucketStartNanos) {
+      this.organizationId = organizationId;
+      this.seriesId = seriesId;
+      this.episodeId = episodeId;
+      this.bucketStartNanos = bucketStartNanos;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      final Key that = (Key) o;
+      return this.bucketStartNanos == that.bucketStartNanos
+              && this.organizationId.equals(that.organizationId)
+              && this.seriesId.equals(that.seriesId)
+              && this.episodeId.equals(that.episodeId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.organizationId, this.seriesId, this.episodeId, this.bucketStartNanos);
+    }
+  }
+
+  private static final class Sketch {
+    private final HyperLogLog viewers = new HyperLogLog();
+    private boolean changed;
+  }
+
+  /**
+   * @param resolutions The bucket sizes to keep, {@link Rollups#HOURLY} and/or {@link Rollups#DAILY}
+   */
+  public UniqueViewers(final List<String> resolutions) {
+    this.resolutions = resolutions;
+    for (final String resolution : resolutions) {
+      this.bucketNanos.add((resolution.equals(Rollups.DAILY) ? Duration.ofDays(1) : Duration.ofHours(1)).toNanos());
+      this.sketches.add(new HashMap<>());
+    }
+  }
+
+  @Override
+  public synchronized void add(final Impression impression) {
+    if (impression.getViewer() == null)
+      return;
+    final long nanos = Duration.ofSeconds(impression.getDate().toEpochSecond()).toNanos();
+    this.latestNanos = Math.max(this.latestNanos, nanos);
+    final long hash = HyperLogLog.hash(impression.getViewer().getHigh(), impression.getViewer().getLow());
+    for (int i = 0; i < this.sketches.size(); i++) {
+      final long bucketStart = bucketStart(nanos, i);
+      if (bucketStart < oldestBucketStart(i))
+        continue;
+      add(new Key(impression.getOrganizationId(), impression.getSeriesId(), impression.getEpisodeId(), bucketStart),
+          i,
+          hash);
+      if (!impression.getSeriesId().isEmpty())
+        add(new Key(impression.getOrganizationId(), impression.getSeriesId(), "", bucketStart), i, hash);
+    }
+  }
+
+  private void add(final Key key, final int resolution, final long hash) {
+    final Sketch sketch = this.sketches.get(resolution).computeIfAbsent(key, ignored -> new Sketch());
+    sketch.changed |= sketch.viewers.add(hash);
+  }
+
+  @Override
+  public synchronized List<ViewerCount> flush(final Instant now) {
+    final List<ViewerCount> result = new ArrayList<>();
+    for (int i = 0; i < this.sketches.size(); i++) {
+      final long oldest = oldestBucketStart(i);
+      final Iterator<Map.Entry<Key, Sketch>> entries = this.sketches.get(i).entrySet().iterator();
+      while (entries.hasNext()) {
+        final Map.Entry<Key, Sketch> e = entries.next();
+        final Key key = e.getKey();
+        final Sketch sketch = e.getValue();
+        if (sketch.changed) {
+          result.add(new ViewerCount((key.episodeId.isEmpty() ? SERIES_MEASUREMENT_PREFIX : EPISODE_MEASUREMENT_PREFIX)
+                                             + this.resolutions.get(i),
+                                     key.organizationId,
+                                     key.seriesId,
+                                     key.episodeId,
+                                     sketch.viewers.estimate(),
+                                     key.bucketStartNanos));
+          sketch.changed = false;
+        }
+        if (key.bucketStartNanos < oldest)
+          entries.remove();
+      }
+    }
+    return result;
+  }
+
+  private long bucketStart(final long nanos, final int resolution) {
+    return nanos - Math.floorMod(nanos, this.bucketNanos.get(resolution));
+  }
+
+  private long oldestBucketStart(final int resolution) {
+    return this.latestNanos == Long.MIN_VALUE
+            ? Long.MIN_VALUE
+            : bucketStart(this.latestNanos, resolution) - this.bucketNanos.get(resolution);
+  }
+}
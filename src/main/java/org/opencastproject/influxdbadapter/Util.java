@@ -23,9 +23,6 @@ package org.opencastproject.influxdbadapter;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.Optional;
-
-import io.reactivex.Flowable;
 
 /**
  * Various utils not fitting any other category
@@ -34,16 +31,6 @@ public final class Util {
   private Util() {
   }
 
-  public static <T> Flowable<T> optionalToFlowable(final Optional<? extends T> o) {
-    return nullableToFlowable(o.orElse(null));
-  }
-
-  public static <T> Flowable<T> nullableToFlowable(final T o) {
-    if (o == null)
-      return Flowable.empty();
-    return Flowable.just(o);
-  }
-
   public static String basicAuthHeader(final String user, final String pw) {
     final String userAndPass = user + ":" + pw;
     final String userAndPassBase64 = Base64.getEncoder().encodeToString(userAndPass.getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,98 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+/**
+ * The estimated number of unique viewers of an episode or a series in a time bucket (immutable)
+ *
+ * <p>See {@link UniqueViewers}.</p>
+ */
+public final class ViewerCount implements DataPoint {
+  private static final String[] FIELDS = { "value" };
+
+  private final String measurement;
+  private final String organizationId;
+  private final String seriesId;
+  private final String episodeId;
+  private final long viewers;
+  private final long timeNanos;
+
+  public ViewerCount(
+          final String measurement,
+          final String organizationId,
+          final String seriesId,
+          final String episodeId,
+          final long viewers,
+          final long timeNanos) {
+    this.measurement = measurement;
+    this.organizationId = organizationId;
+    this.seriesId = seriesId;
+    this.episodeId = episodeId;
+    this.viewers = viewers;
+    this.timeNanos = timeNanos;
+  }
+
+  @Override
+  public void encode(final LineProtocol encoder, final ByteBuilder out) {
+    LineProtocol.encodeAggregate(out,
+                                 this.measurement,
+                                 new String[] {
+                                         "episodeId", this.episodeId,
+                                         "organizationId", this.organizationId,
+                                         "seriesId", this.seriesId },
+                                 FIELDS,
+                                 new long[] { this.viewers },
+                                 this.timeNanos);
+  }
+
+  @Override
+  public boolean isAggregate() {
+    return true;
+  }
+
+  public String getMeasurement() {
+    return this.measurement;
+  }
+
+  public String getOrganizationId() {
+    return this.organizationId;
+  }
+
+  public String getSeriesId() {
+    return this.seriesId;
+  }
+
+  /**
+   * @return The episode, or an empty string if this counts the viewers of a whole series
+   */
+  public String getEpisodeId() {
+    return this.episodeId;
+  }
+
+  public long getViewers() {
+    return this.viewers;
+  }
+
+  public long getTimeNanos() {
+    return this.timeNanos;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The sliding window, updated in place (not thread-safe)
+ *
+ * <p>
+ * Entries are evicted against a watermark, the event time up to which all impressions are assumed to have arrived.
+ * It trails the latest log time stamp seen by the allowed lateness, so lines Apache writes a little out of order
+ * still end up in the right view. While no lines arrive, the watermark moves on with the wall clock, so the last
+ * views are evicted on time even if traffic stops.
+ * </p>
+ *
+ * <p>
+ * The entries are kept in a priority queue by time, so an update only looks at the entries it evicts, not at every
+ * entry in the window. An entry whose view is extended stays in the queue under its old time, and is put back under
+ * its new one when it comes up. Evictions come out roughly oldest first.
+ * </p>
+ */
+public final class Window {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Window.class);
+
+  private final Duration viewInterval;
+  private final Duration allowedLateness;
+  private final Map<RawImpression, Entry> entries = new HashMap<>();
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparing((Entry entry) -> entry.queuedAt));
+  private Instant latestEventTime;
+  private Instant watermark;
+  private Instant lastLineAt;
+
+  private static final class Entry {
+    // The latest line of the view, which is what's evicted
+    private RawImpression impression;
+    private Instant time;
+    private Instant queuedAt;
+
+    private Entry(final RawImpression impression, final Instant time) {
+      this.impression = impression;
+      this.time = time;
+      this.queuedAt = time;
+    }
+  }
+
+  /**
+   * @param viewInterval    The sliding window interval
+   * @param allowedLateness How far out of order impressions may arrive
+   */
+  public Window(final Duration viewInterval, final Duration allowedLateness) {
+    this.viewInterval = viewInterval;
+    this.allowedLateness = allowedLateness;
+  }
+
+  /**
+   * Add an impression, or just let the time pass, and evict what's no longer current
+   *
+   * @param rawImpression The impression, or <code>null</code> for a timer tick
+   * @param now           The wall clock time, or <code>null</code> if the watermark should only follow the lines
+   * @param evictions     Receives the evicted impressions
+   */
+  public void advance(final RawImpression rawImpression, final Instant now, final List<RawImpression> evictions) {
+    final Instant eventTime = rawImpression != null ? rawImpression.getDate().toInstant() : null;
+    if (eventTime != null) {
+      if (this.latestEventTime == null || eventTime.isAfter(this.latestEventTime))
+        this.latestEventTime = eventTime;
+      this.lastLineAt = now;
+    }
+    // Nothing to evict before the first impression
+    if (this.latestEventTime == null)
+      return;
+    Instant newWatermark = this.latestEventTime.minus(this.allowedLateness);
+    if (now != null && this.lastLineAt != null)
+      newWatermark = newWatermark.plus(Duration.between(this.lastLineAt, now));
+    if (this.watermark != null && newWatermark.isBefore(this.watermark))
+      newWatermark = this.watermark;
+    if (eventTime != null && this.watermark != null && eventTime.isBefore(this.watermark)) {
+      LOGGER.debug("LATE, {} behind the watermark: {}",
+                   Duration.between(eventTime, this.watermark),
+                   rawImpression.getOrigin());
+      Metrics.WINDOW_LATE_IMPRESSIONS.inc();
+    }
+    this.watermark = newWatermark;
+    evict(this.watermark.minus(this.viewInterval), evictions);
+    if (rawImpression != null) {
+      final Entry known = this.entries.get(rawImpression);
+      if (known != null) {
+        LOGGER.debug("UPDATETIME: {}", rawImpression.getOrigin());
+        known.impression = rawImpression;
+        // A late line doesn't move its view back in time
+        if (eventTime.isAfter(known.time))
+          known.time = eventTime;
+      } else {
+        LOGGER.debug("ADD: {}", rawImpression.getOrigin());
+        final Entry entry = new Entry(rawImpression, eventTime);
+        this.entries.put(rawImpression, entry);
+        this.queue.add(entry);
+      }
+    }
+    Metrics.WINDOW_SIZE.set(this.entries.size());
+  }
+
+  /**
+   * Evict the whole window, for example when shutting down
+   *
+   * @param evictions Receives the evicted impressions
+   */
+  public void drain(final List<RawImpression> evictions) {
+    final int before = evictions.size();
+    while (!this.queue.isEmpty())
+      evictions.add(this.queue.poll().impression);
+    this.entries.clear();
+    Metrics.WINDOW_EVICTIONS.add(evictions.size() - before);
+    Metrics.WINDOW_SIZE.set(0);
+  }
+
+  /**
+   * @return Number of views in the window
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Evict the entries whose time is at or before the cutoff
+   */
+  private void evict(final Instant cutoff, final List<RawImpression> evictions) {
+    int evicted = 0;
+    while (!this.queue.isEmpty() && !this.queue.peek().queuedAt.isAfter(cutoff)) {
+      final Entry entry = this.queue.poll();
+      if (entry.time.isAfter(cutoff)) {
+        // Extended since it was queued
+        entry.queuedAt = entry.time;
+        this.queue.add(entry);
+        continue;
+      }
+      LOGGER.debug("EVICT, entry {} old: {}", Duration.between(entry.time, this.watermark), entry.impression.getOrigin());
+      this.entries.remove(entry.impression);
+      evictions.add(entry.impression);
+      evicted++;
+    }
+    Metrics.WINDOW_EVICTIONS.add(evicted);
+  }
+}
@@ -0,0 +1,53 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.DoubleRange;
+import net.jqwik.api.constraints.IntRange;
+
+class CircuitBreakerTest {
+  @Test
+  void testOpensAfterFailuresAndClosesAfterSuccessfulTrial() {
+    AtomicLong now = new AtomicLong();
+    CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(30), now::get);
+    breaker.recordFailure();
+    breaker.recordFailure();
+    breaker.recordSuccess();
+    breaker.recordFailure();
+    breaker.recordFailure();
+    Assertions.assertThat(breaker.allowRequest()).isTrue();
+    breaker.recordFailure();
+    Assertions.assertThat(breaker.isOpen()).isTrue();
+    Assertions.assertThat(breaker.allowRequest()).isFalse();
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    // A single trial request, which fails and opens the breaker again
+    Assertions.assertThat(breaker.allowRequest()).isTrue();
+    Assertions.assertThat(breaker.allowRequest()).isFalse();
+    breaker.recordFailure();
+    now.addAndGet(Duration.ofSeconds(29).toNanos());
+    Assertions.assertThat(breaker.allowRequest()).isFalse();
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    Assertions.assertThat(breaker.allowRequest()).isTrue();
+    breaker.recordSuccess();
+    Assertions.assertThat(breaker.isOpen()).isFalse();
+    Assertions.assertThat(breaker.allowRequest()).isTrue();
+  }
+
+  @Property
+  void backoffIsExponentialCappedAndJittered(
+          @ForAll @IntRange(min = 1, max = 100) int retry,
+          @ForAll @DoubleRange(min = 0, max = 0.999) double random) {
+    long backoff = OpencastUtils.backoffMillis(Duration.ofMillis(500), Duration.ofSeconds(10), retry, random);
+    Assertions.assertThat(backoff)
+              .isGreaterThanOrEqualTo(0)
+              .isLessThanOrEqualTo(Math.min(10_000L, 500L << Math.min(retry - 1, 30)));
+  }
+}
@@ -0,0 +1,92 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+class ClientAddressTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+          "0.0.0.0",
+          "127.0.0.1",
+          "192.168.178.23",
+          "255.255.255.255",
+          "::",
+          "::1",
+          "1::",
+          "2001:db8::1",
+          "2001:0db8:0000:0000:0000:ff00:0042:8329",
+          "2001:db8:85a3::8a2e:370:7334",
+          "fe80::1:2:3:4:5:6",
+          "1:2:3:4:5:6:7::",
+          "::2:3:4:5:6:7:8",
+          "1:2:3:4:5:6:7:8",
+          "::ffff:10.0.0.1",
+          "64:ff9b::192.0.2.33",
+          "1:2:3:4:5:6:1.2.3.4",
+  })
+  void testParsingMatchesInetAddress(String address) throws Exception {
+    Optional<ClientAddress> parsed = ClientAddress.parse(address);
+    Assertions.assertThat(parsed.isPresent()).isEqualTo(true);
+    byte[] expected = InetAddress.getByName(address).getAddress();
+    ByteBuffer actual = ByteBuffer.allocate(16).putLong(parsed.get().getHigh()).putLong(parsed.get().getLow());
+    if (expected.length == 4) {
+      Assertions.assertThat(parsed.get().isIPv4()).isEqualTo(true);
+      Assertions.assertThat(actual.array()).endsWith(expected);
+    } else {
+      Assertions.assertThat(actual.array()).isEqualTo(expected);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+          "",
+          "1.2.3",
+          "1.2.3.4.5",
+          "256.1.1.1",
+          "1.2.3.",
+          "1..2.3",
+          "1:2:3:4:5:6:7",
+          "1:2:3:4:5:6:7:8:9",
+          "1::2::3",
+          ":1::",
+          "1:",
+          ":::",
+          "12345::",
+          "::1.2.3",
+          "1:2:3:4:5:6:7:1.2.3.4",
+          "g::1",
+  })
+  void testInvalidAddressesAreRejected(String address) {
+    Assertions.assertThat(ClientAddress.parse(address).isPresent()).isEqualTo(false);
+  }
+
+  @Test
+  void testIPv4AndMappedIPv6AreEqual() {
+    Assertions.assertThat(ClientAddress.parse("192.168.0.1")).isEqualTo(ClientAddress.parse("::ffff:192.168.0.1"));
+    Assertions.assertThat(ClientAddress.parse("192.168.0.1")).isEqualTo(ClientAddress.parse("::ffff:c0a8:1"));
+    Assertions.assertThat(ClientAddress.parse("192.168.0.1").hashCode())
+              .isEqualTo(ClientAddress.parse("::FFFF:C0A8:0001").hashCode());
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+          "192.168.0.1, 192.168.0.1",
+          "::ffff:10.0.0.1, 10.0.0.1",
+          "::, ::",
+          "::1, ::1",
+          "2001:0DB8:0000:0000:0000:0000:0000:0001, 2001:db8::1",
+          "1:0:0:2:0:0:0:3, 1:0:0:2::3",
+          "1:2:3:4:5:6:7:8, 1:2:3:4:5:6:7:8",
+  })
+  void testToString(String address, String expected) {
+    Assertions.assertThat(ClientAddress.parse(address).map(ClientAddress::toString)).contains(expected);
+  }
+}
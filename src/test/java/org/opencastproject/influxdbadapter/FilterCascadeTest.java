@@ -0,0 +1,75 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Set;
+
+class FilterCascadeTest {
+  private static final Set<String> INVALID_AGENTS = Collections.singleton("bot");
+  private static final Set<String> VALID_EXTENSIONS = Collections.singleton(".mp4");
+  private static final Set<String> INVALID_PUBLICATIONS = Collections.singleton("internal");
+
+  private static String line(String ip, String time, String path, int status, String agent) {
+    return ip + " - - [" + time + "] \"GET " + path + " HTTP/1.1\" " + status + " 1234 \"-\" \"" + agent + "\"";
+  }
+
+  private static String line(String path, int status, String agent) {
+    return line("192.0.2.1", "10/Feb/2019:03:38:22 +0100", path, status, agent);
+  }
+
+  @Test
+  void testAcceptedLines() {
+    FilterCascade cascade = new FilterCascade(LogFormat.COMBINED, INVALID_AGENTS, VALID_EXTENSIONS, INVALID_PUBLICATIONS);
+    RawImpression impression = cascade.apply(line("/org/engage-player/episode/asset/video.mp4", 200, "Mozilla/5.0"));
+    Assertions.assertThat(impression.getEpisodeId()).isEqualTo("episode");
+    Assertions.assertThat(impression.getOrganizationId()).isEqualTo("org");
+    Assertions.assertThat(impression.getPublicationChannel()).isEqualTo("engage-player");
+    Assertions.assertThat(impression.getIp()).isEqualTo(ClientAddress.parse("192.0.2.1").get());
+    Assertions.assertThat(impression.getDate())
+              .isEqualTo(OffsetDateTime.of(2019, 2, 10, 3, 38, 22, 0, ZoneOffset.ofHours(1)));
+    impression = cascade.apply(line("2001:db8::1", "10/Feb/2019:03:38:22 +0100", "/org/ch/episode/asset/video.mp4", 206, "Mozilla"));
+    Assertions.assertThat(impression.getPublicationChannel()).isEqualTo("ch");
+    Assertions.assertThat(impression.getIp()).isEqualTo(ClientAddress.parse("2001:db8::1").get());
+  }
+
+  private static void assertRejected(FilterCascade cascade, String line, String reason) {
+    long before = Metrics.linesSkipped(reason).get();
+    Assertions.assertThat(cascade.apply(line)).as(line).isNull();
+    Assertions.assertThat(Metrics.linesSkipped(reason).get() - before).as(line).isEqualTo(1);
+  }
+
+  @Test
+  void testRejectedLines() {
+    FilterCascade cascade = new FilterCascade(LogFormat.COMBINED, INVALID_AGENTS, VALID_EXTENSIONS, INVALID_PUBLICATIONS);
+    assertRejected(cascade, line("/org/engage-player/episode/asset/video.mp4", 404, "Mozilla/5.0"), "http_status");
+    assertRejected(cascade, line("/org/engage-player/episode/asset/video.mp4", 200, "Googlebot"), "user_agent");
+    assertRejected(cascade, line("/org/engage-player/episode/asset/video.mp4", 200, "Apache-HttpClient"), "user_agent");
+    assertRejected(cascade, line("/org/engage-player/episode/asset/video.webm", 200, "Mozilla/5.0"), "file_extension");
+    assertRejected(cascade, line("/org/internal/episode/asset/video.mp4", 200, "Mozilla/5.0"), "publication_channel");
+    assertRejected(cascade, line("/video.mp4", 200, "Mozilla/5.0"), "request_line");
+    assertRejected(cascade,
+                   line("300.0.0.1", "10/Feb/2019:03:38:22 +0100", "/org/engage-player/episode/asset/video.mp4", 200, "Mozilla"),
+                   "client_address");
+    assertRejected(cascade,
+                   line("192.0.2.1", "10/Feb/2019:03:38:61 +0100", "/org/engage-player/episode/asset/video.mp4", 200, "Mozilla"),
+                   "line_pattern");
+    assertRejected(cascade, "garbage", "line_pattern");
+    Assertions.assertThat(cascade.apply("")).isNull();
+  }
+
+  @Test
+  void testRulesRejectingMostRunFirst() {
+    FilterCascade cascade = new FilterCascade(LogFormat.COMBINED, INVALID_AGENTS, VALID_EXTENSIONS, INVALID_PUBLICATIONS);
+    Assertions.assertThat(cascade.getOrder().get(0)).isEqualTo("http_status");
+    for (int i = 0; i < 10_000; i++)
+      Assertions.assertThat(cascade.apply(line("/org/engage-player/episode/asset/video.mp4", 200, "some bot"))).isNull();
+    Assertions.assertThat(cascade.getOrder().get(0)).isEqualTo("user_agent");
+    for (int i = 0; i < 100_000; i++)
+      cascade.apply(line("/org/engage-player/episode/asset/video.webm", 200, "Mozilla/5.0"));
+    Assertions.assertThat(cascade.getOrder().get(0)).isEqualTo("file_extension");
+  }
+}
@@ -0,0 +1,68 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class HyperLogLogTest {
+  private static final OffsetDateTime START = OffsetDateTime.of(2019, 2, 10, 10, 0, 0, 0, ZoneOffset.UTC);
+
+  private static long hash(final long i) {
+    return HyperLogLog.hash(0, i);
+  }
+
+  @Test
+  void testSmallCountsAreNearlyExact() {
+    HyperLogLog sketch = new HyperLogLog();
+    Assertions.assertThat(sketch.estimate()).isZero();
+    for (long i = 0; i < 50; i++) {
+      sketch.add(hash(i));
+      Assertions.assertThat(sketch.add(hash(i))).isFalse();
+    }
+    Assertions.assertThat(sketch.estimate()).isBetween(49L, 51L);
+  }
+
+  @Test
+  void testLargeCountsAreClose() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (long i = 0; i < 1_000_000; i++)
+      sketch.add(hash(i % 200_000));
+    Assertions.assertThat(sketch.estimate()).isBetween(190_000L, 210_000L);
+  }
+
+  @Test
+  void testUniqueViewersPerEpisodeAndSeries() {
+    UniqueViewers uniqueViewers = new UniqueViewers(Collections.singletonList(Rollups.DAILY));
+    for (int viewer = 0; viewer < 3; viewer++) {
+      ClientAddress address = new ClientAddress(0, viewer);
+      uniqueViewers.add(new Impression("e1", "org", "engage-player", "s", START, address));
+      uniqueViewers.add(new Impression("e2", "org", "engage-player", "s", START.plusHours(1), address));
+    }
+    uniqueViewers.add(new Impression("e2", "org", "api", "s", START, new ClientAddress(0, 3)));
+    uniqueViewers.add(new Impression("e2", "org", "api", "s", START, null));
+    long day = START.minusHours(10).toEpochSecond() * 1_000_000_000L;
+    List<String> points = uniqueViewers.flush(Instant.now())
+                                       .stream()
+                                       .map(HyperLogLogTest::describe)
+                                       .sorted()
+                                       .collect(Collectors.toList());
+    Assertions.assertThat(points).containsExactly(
+            "episode_viewers_daily e1 s 3 " + day,
+            "episode_viewers_daily e2 s 4 " + day,
+            "series_viewers_daily  s 4 " + day);
+    // Unchanged estimates aren't written again
+    uniqueViewers.add(new Impression("e1", "org", "engage-player", "s", START, new ClientAddress(0, 0)));
+    Assertions.assertThat(uniqueViewers.flush(Instant.now())).isEmpty();
+  }
+
+  private static String describe(final ViewerCount count) {
+    return count.getMeasurement() + " " + count.getEpisodeId() + " " + count.getSeriesId() + " "
+            + count.getViewers() + " " + count.getTimeNanos();
+  }
+}
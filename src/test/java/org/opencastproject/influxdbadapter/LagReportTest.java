@@ -0,0 +1,53 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+class LagReportTest {
+  @Test
+  void testQuantileInterpolatesWithinBuckets() {
+    final double[] bounds = { 1, 10, 100 };
+    // 10 observations up to 1, 10 between 1 and 10
+    final long[] counts = { 10, 10, 0, 0 };
+    Assertions.assertThat(Histogram.quantile(bounds, counts, 0.25)).isCloseTo(0.5, Offset.offset(1e-9));
+    Assertions.assertThat(Histogram.quantile(bounds, counts, 0.5)).isCloseTo(1, Offset.offset(1e-9));
+    Assertions.assertThat(Histogram.quantile(bounds, counts, 0.75)).isCloseTo(5.5, Offset.offset(1e-9));
+    Assertions.assertThat(Histogram.quantile(bounds, new long[] { 0, 0, 0, 5 }, 0.5)).isEqualTo(100);
+    Assertions.assertThat(Histogram.quantile(bounds, new long[4], 0.5)).isZero();
+  }
+
+  @Test
+  void testReportsLagSinceLastFlushAndAlerts() {
+    final LagReport report = new LagReport(Duration.ofMinutes(10), Collections.singletonList("lag-test-sink"));
+    final Histogram written = Metrics.forSink("lag-test-sink").getImpressionLag();
+    for (int i = 0; i < 100; i++)
+      written.observe(3600);
+
+    final List<DataPoint> points = report.flush(Instant.ofEpochSecond(1000));
+    Assertions.assertThat(points).hasSize(1);
+    final ByteBuilder line = new ByteBuilder(256);
+    points.get(0).encode(new LineProtocol(), line);
+    Assertions.assertThat(new String(line.array(), 0, line.length(), StandardCharsets.UTF_8))
+              .startsWith("ingest_lag,sink=lag-test-sink,stage=written count=100i,p50_ms=")
+              .endsWith(" 1000000000000\n");
+    Assertions.assertThat(Metrics.IMPRESSION_LAG_ALERT.get()).isEqualTo(1);
+
+    // Only what was observed since, and the alert ends
+    for (int i = 0; i < 10; i++)
+      written.observe(2);
+    final List<DataPoint> next = report.flush(Instant.ofEpochSecond(1060));
+    line.clear();
+    next.get(0).encode(new LineProtocol(), line);
+    Assertions.assertThat(new String(line.array(), 0, line.length(), StandardCharsets.UTF_8)).contains("count=10i");
+    Assertions.assertThat(Metrics.IMPRESSION_LAG_ALERT.get()).isZero();
+
+    Assertions.assertThat(report.flush(Instant.ofEpochSecond(1120))).isEmpty();
+  }
+}
@@ -0,0 +1,96 @@
+package org.opencastproject.influxdbadapter;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Assume;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import org.assertj.core.api.Assertions;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the direct encoder produces exactly what <code>Point.lineProtocol()</code> produces
+ */
+class LineProtocolTest {
+  private static final LineProtocol ENCODER = new LineProtocol();
+
+  @Provide
+  Arbitrary<String> tagValues() {
+    return Arbitraries.oneOf(
+            Arbitraries.of("", "a b", "a,b", "a=b", "a\\b", "a\"b", "ä ß 中", "😀", "\ud800"),
+            Arbitraries.strings().withChars(' ', ',', '=', '\\', '"', 'a', 'Z', '0', '-', '_').ofMaxLength(6),
+            Arbitraries.strings().all().ofMaxLength(6));
+  }
+
+  @Provide
+  Arbitrary<OffsetDateTime> dates() {
+    return Arbitraries
+            .longs()
+            .between(-5_000_000_000L, 5_000_000_000L)
+            .map(seconds -> OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneOffset.ofHours(2)));
+  }
+
+  @Property
+  void encodingMatchesPoint(
+          @ForAll("tagValues") String episodeId,
+          @ForAll("tagValues") String organizationId,
+          @ForAll("tagValues") String publicationChannel,
+          @ForAll("tagValues") String seriesId,
+          @ForAll("dates") OffsetDateTime date) {
+    Impression impression = new Impression(episodeId, organizationId, publicationChannel, seriesId, date);
+    ByteBuilder out = new ByteBuilder(4);
+    ENCODER.encode(impression, out);
+    Assertions.assertThat(Arrays.copyOf(out.array(), out.length()))
+              .isEqualTo((impression.toPoint().lineProtocol() + '\n').getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Property
+  void cachedPrefixesFollowMetadataChanges(@ForAll("tagValues") String seriesId, @ForAll("dates") OffsetDateTime date) {
+    LineProtocol encoder = new LineProtocol();
+    List<Impression> impressions = Arrays.asList(new Impression("e", "o", "c", "s", date),
+                                                 new Impression("e", "o", "c", seriesId, date),
+                                                 new Impression("e", "o", "c", "s", date));
+    for (Impression impression : impressions) {
+      ByteBuilder out = new ByteBuilder(4);
+      encoder.encode(impression, out);
+      Assertions.assertThat(Arrays.copyOf(out.array(), out.length()))
+                .isEqualTo((impression.toPoint().lineProtocol() + '\n').getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Property
+  void decodingReversesEncoding(
+          @ForAll("tagValues") String episodeId,
+          @ForAll("tagValues") String seriesId,
+          @ForAll("dates") OffsetDateTime date) {
+    // A trailing backslash would escape the separator, and lone surrogates don't survive UTF-8
+    Assume.that(!episodeId.endsWith("\\") && !seriesId.endsWith("\\"));
+    Assume.that(episodeId.equals(new String(episodeId.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+    Assume.that(seriesId.equals(new String(seriesId.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+    Impression impression = new Impression(episodeId, "org", "", seriesId, date);
+    ByteBuilder out = new ByteBuilder(4);
+    ENCODER.encode(impression, out);
+    Impression decoded = LineProtocol.decode(new String(out.array(), 0, out.length() - 1, StandardCharsets.UTF_8));
+    Assertions.assertThat(decoded.getEpisodeId()).isEqualTo(episodeId);
+    Assertions.assertThat(decoded.getOrganizationId()).isEqualTo("org");
+    Assertions.assertThat(decoded.getPublicationChannel()).isEqualTo("");
+    Assertions.assertThat(decoded.getSeriesId()).isEqualTo(seriesId);
+    Assertions.assertThat(decoded.getDate().toInstant()).isEqualTo(date.toInstant());
+  }
+
+  @Property
+  void decimalsMatchLongToString(@ForAll long value) {
+    ByteBuilder out = new ByteBuilder(1);
+    out.appendDecimal(value);
+    Assertions.assertThat(new String(out.array(), 0, out.length(), StandardCharsets.US_ASCII))
+              .isEqualTo(Long.toString(value));
+  }
+}
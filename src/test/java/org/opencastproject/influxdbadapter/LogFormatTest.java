@@ -0,0 +1,103 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+class LogFormatTest {
+  private static final String REQUEST = "GET /org/engage-player/episode/asset/video.mp4 HTTP/1.1";
+
+  private static RawImpression impression(LogFormat format, String line) {
+    return new FilterCascade(format, Collections.singleton("bot"), Collections.singleton(".mp4"), Collections.emptySet())
+            .apply(line);
+  }
+
+  private static boolean extract(LogFormat format, String line) {
+    return format.extract(line, new int[LogFormat.BOUNDS]);
+  }
+
+  @Test
+  void testCombined() {
+    RawImpression impression = impression(LogFormat.COMBINED,
+                                          "192.0.2.1 - frank [10/Feb/2019:03:38:22 +0100] \"" + REQUEST
+                                                  + "\" 200 1234 \"http://x/\\\"y\\\"\" \"Mozilla/5.0\"");
+    Assertions.assertThat(impression.getEpisodeId()).isEqualTo("episode");
+    Assertions.assertThat(impression.getOrganizationId()).isEqualTo("org");
+    Assertions.assertThat(impression.getDate())
+            .isEqualTo(OffsetDateTime.of(2019, 2, 10, 3, 38, 22, 0, ZoneOffset.ofHours(1)));
+    Assertions.assertThat(impression(LogFormat.COMBINED, "192.0.2.1 - - [10/Feb/2019:03:38:22 +0100] \"" + REQUEST
+            + "\" 200 1234 \"-\" \"some bot\"")).isNull();
+    Assertions.assertThat(impression(LogFormat.COMBINED, "192.0.2.1 - - [10/Feb/2019:03:38:22 +0100] \"" + REQUEST
+            + "\" 404 1234 \"-\" \"Mozilla/5.0\"")).isNull();
+    Assertions.assertThat(extract(LogFormat.COMBINED, "garbage")).isFalse();
+  }
+
+  @Test
+  void testLinesMustEndWithTheTemplate() {
+    String line = "192.0.2.1 - - [10/Feb/2019:03:38:22 +0100] \"" + REQUEST + "\" 200 1234 \"-\" \"Mozilla/5.0\"";
+    Assertions.assertThat(extract(LogFormat.COMBINED, line)).isTrue();
+    Assertions.assertThat(extract(LogFormat.COMBINED, line + " 0.003")).isFalse();
+    Assertions.assertThat(extract(LogFormat.COMBINED, line.substring(0, line.length() - 1))).isFalse();
+    // The last field extends to the end, even if it contains the final literal
+    int[] bounds = new int[LogFormat.BOUNDS];
+    String quoted = line.substring(0, line.length() - 1) + " \"quoted\"\"";
+    Assertions.assertThat(LogFormat.COMBINED.extract(quoted, bounds)).isTrue();
+    Assertions.assertThat(LogFormat.COMBINED.value(quoted, bounds, LogFormat.USER_AGENT))
+              .isEqualTo("Mozilla/5.0 \"quoted\"");
+    // A field at the very end takes the rest of the line
+    LogFormat open = LogFormat.template("%h %t \"%r\" %{User-Agent}i");
+    String unquoted = "192.0.2.1 [10/Feb/2019:03:38:22 +0100] \"" + REQUEST + "\" Mozilla/5.0 (X11)";
+    Assertions.assertThat(open.extract(unquoted, bounds)).isTrue();
+    Assertions.assertThat(open.value(unquoted, bounds, LogFormat.USER_AGENT)).isEqualTo("Mozilla/5.0 (X11)");
+  }
+
+  @Test
+  void testNginxTemplateWithExtraFields() {
+    LogFormat format = LogFormat.template(
+            "$remote_addr - $remote_user [$time_iso8601] \"$request\" $status $body_bytes_sent $request_time "
+                    + "\"$http_user_agent\"");
+    RawImpression impression = impression(format, "2001:db8::1 - - [2019-02-10T03:38:22+01:00] \"" + REQUEST
+            + "\" 206 1234 0.003 \"Mozilla/5.0 (X11; Linux)\"");
+    Assertions.assertThat(impression.getEpisodeId()).isEqualTo("episode");
+    Assertions.assertThat(impression.getDate())
+            .isEqualTo(OffsetDateTime.of(2019, 2, 10, 3, 38, 22, 0, ZoneOffset.ofHours(1)));
+  }
+
+  @Test
+  void testJson() {
+    Map<String, String> keys = new HashMap<>();
+    keys.put("client", "ip");
+    keys.put("time", "ts");
+    keys.put("request", "req");
+    keys.put("status", "code");
+    LogFormat format = LogFormat.json(keys);
+    RawImpression impression = impression(format, "{\"ts\": \"2019-02-10T03:38:22+01:00\", \"extra\": {\"a\": [1, \"}\"]},"
+            + " \"ip\":\"192.0.2.1\", \"code\": 200, \"req\": \"GET \\/org\\/engage-player\\/episode\\/asset\\/video.mp4"
+            + " HTTP\\/1.1\"}");
+    Assertions.assertThat(impression.getEpisodeId()).isEqualTo("episode");
+    Assertions.assertThat(impression.getOrganizationId()).isEqualTo("org");
+    // Escaped user agents are unescaped before they are filtered
+    keys.put("user-agent", "ua");
+    Assertions.assertThat(impression(LogFormat.json(keys), "{\"ip\": \"192.0.2.1\", \"ts\": \"2019-02-10T03:38:22Z\", "
+            + "\"req\": \"" + REQUEST + "\", \"ua\": \"\\u0062ot\"}")).isNull();
+    Assertions.assertThat(impression(LogFormat.json(keys), "{\"ip\": \"192.0.2.1\", \"ts\": \"2019-02-10T03:38:22Z\", "
+            + "\"req\": \"" + REQUEST + "\", \"ua\": \"\\u0042ot\"}")).isNotNull();
+    Assertions.assertThat(extract(format, "{\"ip\": \"192.0.2.1\"}")).isFalse();
+    Assertions.assertThat(extract(format, "{\"ip\": \"192.0.2.1\", ")).isFalse();
+  }
+
+  @Test
+  void testInvalidFormats() {
+    Assertions.assertThatThrownBy(() -> LogFormat.template("%h %t")).isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> LogFormat.template("%h%u %t \"%r\"")).isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> LogFormat.template("%h %{%s}t \"%r\""))
+            .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> LogFormat.json(Collections.singletonMap("nope", "x")))
+            .isInstanceOf(IllegalArgumentException.class);
+  }
+}
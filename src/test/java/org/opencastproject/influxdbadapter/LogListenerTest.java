@@ -0,0 +1,77 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+class LogListenerTest {
+  private static void send(OutputStream out, String s) throws Exception {
+    out.write(s.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  @Test
+  void testReceivesLinesFromSeveralSenders() throws Exception {
+    try (LogListener listener = new LogListener(new InetSocketAddress("127.0.0.1", 0), 10);
+         Socket first = new Socket("127.0.0.1", listener.getLocalAddress().getPort());
+         Socket second = new Socket("127.0.0.1", listener.getLocalAddress().getPort())) {
+      send(first.getOutputStream(), "a\r\nb");
+      Assertions.assertThat(listener.take()).isEqualTo("a");
+      // Each sender's incomplete line is kept apart from the others'
+      send(second.getOutputStream(), "c\n");
+      Assertions.assertThat(listener.take()).isEqualTo("c");
+      send(first.getOutputStream(), "b\n");
+      Assertions.assertThat(listener.take()).isEqualTo("bb");
+      // The last line may lack its terminator
+      send(second.getOutputStream(), "d");
+      second.close();
+      Assertions.assertThat(listener.take()).isEqualTo("d");
+    }
+  }
+
+  @Test
+  void testStripsSyslogHeaders() throws Exception {
+    try (LogListener listener = new LogListener(new InetSocketAddress("127.0.0.1", 0), 10);
+         Socket sender = new Socket("127.0.0.1", listener.getLocalAddress().getPort())) {
+      send(sender.getOutputStream(), "<150>Oct 18 10:00:00 web1 httpd[42]: 127.0.0.1 - - [x] \"GET / HTTP/1.1\"\n"
+              + "::1 - - [x] \"GET / HTTP/1.1\"\n");
+      Assertions.assertThat(listener.take()).isEqualTo("127.0.0.1 - - [x] \"GET / HTTP/1.1\"");
+      Assertions.assertThat(listener.take()).isEqualTo("::1 - - [x] \"GET / HTTP/1.1\"");
+    }
+  }
+
+  private static String repeat(char c, int n) {
+    char[] result = new char[n];
+    Arrays.fill(result, c);
+    return new String(result);
+  }
+
+  @Test
+  void testDiscardsOverlongLines() throws Exception {
+    try (LogListener listener = new LogListener(new InetSocketAddress("127.0.0.1", 0), 10);
+         Socket sender = new Socket("127.0.0.1", listener.getLocalAddress().getPort())) {
+      String longest = repeat('a', LogListener.MAX_LINE_LENGTH);
+      send(sender.getOutputStream(), longest + "\n");
+      Assertions.assertThat(listener.take()).isEqualTo(longest);
+      // Too long within a single read, and spread over several reads
+      send(sender.getOutputStream(), repeat('b', LogListener.MAX_LINE_LENGTH + 1) + "\nc\n");
+      Assertions.assertThat(listener.take()).isEqualTo("c");
+      for (int i = 0; i < 5; i++)
+        send(sender.getOutputStream(), repeat('d', LogListener.MAX_LINE_LENGTH / 2));
+      send(sender.getOutputStream(), "d\ne\n");
+      Assertions.assertThat(listener.take()).isEqualTo("e");
+      // Still skipped if the sender disconnects before the line ends
+      send(sender.getOutputStream(), repeat('f', LogListener.MAX_LINE_LENGTH + 1));
+      sender.close();
+      try (Socket next = new Socket("127.0.0.1", listener.getLocalAddress().getPort())) {
+        send(next.getOutputStream(), "g\n");
+        Assertions.assertThat(listener.take()).isEqualTo("g");
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+class LogTailerTest {
+  private static void append(Path file, String s) throws IOException {
+    Files.write(file, s.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @Test
+  void testReadsExistingLinesAndAppendedOnes(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("access.log");
+    append(file, "a\nb\r\nc");
+    try (LogTailer tailer = new LogTailer(file, 0, 2)) {
+      Assertions.assertThat(tailer.take()).isEqualTo("a");
+      Assertions.assertThat(tailer.take()).isEqualTo("b");
+      // The last line is only handed over once it's complete
+      append(file, "d\ne\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("cd");
+      Assertions.assertThat(tailer.take()).isEqualTo("e");
+    }
+  }
+
+  @Test
+  void testStartPosition(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("access.log");
+    append(file, "old\n");
+    try (LogTailer tailer = new LogTailer(file, Files.size(file), 10)) {
+      append(file, "new\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("new");
+    }
+  }
+
+  @Test
+  void testRotationAndTruncation(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("access.log");
+    append(file, "a\n");
+    try (LogTailer tailer = new LogTailer(file, 0, 10)) {
+      Assertions.assertThat(tailer.take()).isEqualTo("a");
+      append(file, "b");
+      Files.move(file, directory.resolve("access.log.1"));
+      append(file, "ccc\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("b");
+      Assertions.assertThat(tailer.take()).isEqualTo("ccc");
+      // Truncated to less than what was read
+      Files.write(file, new byte[0]);
+      append(file, "d\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("d");
+    }
+  }
+
+  private static String repeat(char c, int n) {
+    char[] result = new char[n];
+    Arrays.fill(result, c);
+    return new String(result);
+  }
+
+  @Test
+  void testDiscardsOverlongLines(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("access.log");
+    String longest = repeat('a', LogListener.MAX_LINE_LENGTH);
+    append(file, longest + "\n" + repeat('b', LogListener.MAX_LINE_LENGTH + 1) + "\nc\n");
+    long skipped = Metrics.linesSkipped("line_length").get();
+    try (LogTailer tailer = new LogTailer(file, 0, 10)) {
+      Assertions.assertThat(tailer.take()).isEqualTo(longest);
+      Assertions.assertThat(tailer.take()).isEqualTo("c");
+      // Written bit by bit, without a line terminator for a long time
+      for (int i = 0; i < 5; i++) {
+        append(file, repeat('d', LogListener.MAX_LINE_LENGTH / 2));
+        Thread.sleep(50);
+      }
+      append(file, "d\ne\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("e");
+      // Still skipped if the file is rotated before the line ends
+      append(file, repeat('f', LogListener.MAX_LINE_LENGTH + 1));
+      Files.move(file, directory.resolve("access.log.1"));
+      append(file, "g\n");
+      Assertions.assertThat(tailer.take()).isEqualTo("g");
+    }
+    Assertions.assertThat(Metrics.linesSkipped("line_length").get() - skipped).isEqualTo(3);
+  }
+
+  @Test
+  void testMissingFile(@TempDir Path directory) {
+    Assertions.assertThatThrownBy(() -> new LogTailer(directory.resolve("missing.log"), 0, 10))
+              .isInstanceOf(FileNotFoundException.class);
+  }
+}
@@ -0,0 +1,121 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class MetricsTest {
+  private static final String PREFIX = "opencast_influxdb_adapter_";
+
+  /**
+   * The rendered lines mentioning the given sink, in order
+   */
+  private static List<String> linesFor(final String text, final String sink) {
+    return Arrays.stream(text.split("\n"))
+                 .filter(line -> line.contains("{sink=\"" + sink + '"'))
+                 .collect(Collectors.toList());
+  }
+
+  @Test
+  void testCountersAndGauges() {
+    final SinkMetrics metrics = Metrics.forSink("metrics-test-simple");
+    metrics.getPointsWritten().add(5);
+    metrics.getPointsDropped().inc();
+    metrics.getQueueSize().set(3);
+
+    final String text = Metrics.toPrometheusText();
+    Assertions.assertThat(linesFor(text, "metrics-test-simple"))
+              .contains(PREFIX + "sink_points_written_total{sink=\"metrics-test-simple\"} 5",
+                        PREFIX + "sink_points_dropped_total{sink=\"metrics-test-simple\"} 1",
+                        PREFIX + "sink_write_failures_total{sink=\"metrics-test-simple\"} 0",
+                        PREFIX + "sink_queue_size{sink=\"metrics-test-simple\"} 3.0");
+    Assertions.assertThat(text)
+              .contains("# HELP " + PREFIX + "sink_points_written_total Points written, by sink\n"
+                                + "# TYPE " + PREFIX + "sink_points_written_total counter\n")
+              .contains("# HELP " + PREFIX + "sink_queue_size Impressions waiting in memory, by sink\n"
+                                + "# TYPE " + PREFIX + "sink_queue_size gauge\n")
+              .contains("# TYPE " + PREFIX + "lines_read_total counter\n" + PREFIX + "lines_read_total ");
+  }
+
+  @Test
+  void testHistogram() {
+    final Histogram histogram = Metrics.forSink("metrics-test-histogram").getWriteDuration();
+    histogram.observe(0.003);
+    histogram.observe(0.003);
+    histogram.observe(0.2);
+    histogram.observe(20);
+
+    final String text = Metrics.toPrometheusText();
+    final String name = PREFIX + "sink_write_duration_seconds";
+    Assertions.assertThat(text).contains("# TYPE " + name + " histogram\n");
+    Assertions.assertThat(linesFor(text, "metrics-test-histogram"))
+              .containsSubsequence(
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.001\"} 0",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.0025\"} 0",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.005\"} 2",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.01\"} 2",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.025\"} 2",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.05\"} 2",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.1\"} 2",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.25\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"0.5\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"1.0\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"2.5\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"5.0\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"10.0\"} 3",
+                      name + "_bucket{sink=\"metrics-test-histogram\",le=\"+Inf\"} 4",
+                      name + "_sum{sink=\"metrics-test-histogram\"} 20.206",
+                      name + "_count{sink=\"metrics-test-histogram\"} 4");
+  }
+
+  @Test
+  void testEscapesLabelValues() {
+    Metrics.forSink("metrics-test-\"quoted\"\\path\nline").getPointsWritten().add(2);
+
+    Assertions.assertThat(Metrics.toPrometheusText())
+              .contains(PREFIX + "sink_points_written_total{sink=\"metrics-test-\\\"quoted\\\"\\\\path\\nline\"} 2\n");
+  }
+
+  private static String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int n = in.read(buffer);
+    while (n != -1) {
+      result.write(buffer, 0, n);
+      n = in.read(buffer);
+    }
+    return new String(result.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testServer() throws IOException {
+    Metrics.forSink("metrics-test-server").getPointsWritten().add(7);
+    try (MetricsServer server = MetricsServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+      final URL url = new URL("http", "localhost", server.getAddress().getPort(), "/metrics");
+
+      final HttpURLConnection get = (HttpURLConnection) url.openConnection();
+      Assertions.assertThat(get.getResponseCode()).isEqualTo(200);
+      Assertions.assertThat(get.getContentType()).isEqualTo("text/plain; version=0.0.4; charset=utf-8");
+      try (InputStream in = get.getInputStream()) {
+        Assertions.assertThat(read(in))
+                  .startsWith("# HELP ")
+                  .contains(PREFIX + "sink_points_written_total{sink=\"metrics-test-server\"} 7\n");
+      }
+
+      final HttpURLConnection post = (HttpURLConnection) url.openConnection();
+      post.setRequestMethod("POST");
+      Assertions.assertThat(post.getResponseCode()).isEqualTo(405);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package org.opencastproject.influxdbadapter;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests how {@link OpencastUtils#makeImpression} handles failures, against a local server answering with scripted
+ * status codes
+ */
+class OpencastUtilsTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpencastUtilsTest.class);
+  private static final int MAX_RETRIES = 2;
+  // A successful response whose body isn't the JSON object we expect
+  private static final int INVALID_JSON = -1;
+
+  private static final LogLine LOG_LINE = new LogLine("origin",
+                                                      new ClientAddress(0, 0),
+                                                      OffsetDateTime.now(),
+                                                      "request",
+                                                      200,
+                                                      "unknown",
+                                                      "referrer",
+                                                      "agent",
+                                                      Optional.empty());
+  private static final RawImpression RAW_IMPRESSION = new RawImpression(
+          LOG_LINE,
+          "episode",
+          "org",
+          "channel",
+          OffsetDateTime.now(),
+          new ClientAddress(0, 1));
+
+  private final Queue<Integer> responses = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/api/events/", exchange -> {
+      this.requests.incrementAndGet();
+      final Integer scripted = this.responses.poll();
+      final int code = scripted != null ? scripted : 200;
+      final String body = code == INVALID_JSON ? "[1, 2]" : "{\"is_part_of\":\"series\"}";
+      final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(code == INVALID_JSON ? 200 : code, bytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(bytes);
+      }
+    });
+    this.server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    this.server.stop(0);
+  }
+
+  private static OpencastConfig config(final String uri, final String fallback) {
+    return new OpencastConfig(
+            uri,
+            "user",
+            "password",
+            false,
+            Duration.ZERO,
+            new HttpClientProfile(Duration.ofSeconds(1),
+                                  Duration.ofSeconds(5),
+                                  5,
+                                  Duration.ofMinutes(1),
+                                  64,
+                                  64,
+                                  HttpClientProfile.HTTP2_AUTO,
+                                  0,
+                                  0),
+            new OpencastFailurePolicy(MAX_RETRIES,
+                                      Duration.ofMillis(1),
+                                      Duration.ofMillis(10),
+                                      1000,
+                                      Duration.ofMinutes(1),
+                                      fallback));
+  }
+
+  private List<Impression> makeImpression(final String fallback, final Integer... codes) {
+    this.responses.addAll(Arrays.asList(codes));
+    final OpencastConfig config = config("http://localhost:" + this.server.getAddress().getPort(), fallback);
+    return OpencastUtils.makeImpression(LOGGER, config, new OpencastClient(config), RAW_IMPRESSION)
+                        .<Impression>map(impression -> impression)
+                        .toList()
+                        .blockingGet();
+  }
+
+  private static List<String> series(final List<Impression> impressions) {
+    return impressions.stream().map(Impression::getSeriesId).collect(Collectors.toList());
+  }
+
+  @Test
+  void testSuccess() {
+    Assertions.assertThat(series(makeImpression(OpencastFailurePolicy.FALLBACK_DROP))).containsExactly("series");
+    Assertions.assertThat(this.requests.get()).isEqualTo(1);
+  }
+
+  @Test
+  void testRetriesTransientStatusCodes() {
+    for (final int code : new int[] { 500, 503, 429 }) {
+      this.requests.set(0);
+      final long retries = Metrics.OPENCAST_RETRIES.get();
+      Assertions.assertThat(series(makeImpression(OpencastFailurePolicy.FALLBACK_DROP, code)))
+                .as("status %d", code)
+                .containsExactly("series");
+      Assertions.assertThat(this.requests.get()).as("status %d", code).isEqualTo(2);
+      Assertions.assertThat(Metrics.OPENCAST_RETRIES.get() - retries).as("status %d", code).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testRetriesRequestTimeouts() {
+    // OkHttp repeats a request after a single 408 itself, so only a second one reaches us
+    final long retries = Metrics.OPENCAST_RETRIES.get();
+    Assertions.assertThat(series(makeImpression(OpencastFailurePolicy.FALLBACK_DROP, 408, 408)))
+              .containsExactly("series");
+    Assertions.assertThat(this.requests.get()).isEqualTo(3);
+    Assertions.assertThat(Metrics.OPENCAST_RETRIES.get() - retries).isEqualTo(1);
+  }
+
+  @Test
+  void testDoesNotRetryOtherClientErrors() {
+    for (final int code : new int[] { 400, 401, 403, 404 }) {
+      this.requests.set(0);
+      Assertions.assertThat(makeImpression(OpencastFailurePolicy.FALLBACK_DROP, code)).as("status %d", code).isEmpty();
+      Assertions.assertThat(this.requests.get()).as("status %d", code).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testDoesNotRetryInvalidJson() {
+    Assertions.assertThat(makeImpression(OpencastFailurePolicy.FALLBACK_DROP, INVALID_JSON)).isEmpty();
+    Assertions.assertThat(this.requests.get()).isEqualTo(1);
+  }
+
+  @Test
+  void testGivesUpAfterMaxRetries() {
+    final long fallbacks = Metrics.OPENCAST_FALLBACKS.get();
+    Assertions.assertThat(makeImpression(OpencastFailurePolicy.FALLBACK_DROP, 500, 500, 500, 500)).isEmpty();
+    Assertions.assertThat(this.requests.get()).isEqualTo(1 + MAX_RETRIES);
+    Assertions.assertThat(Metrics.OPENCAST_FALLBACKS.get() - fallbacks).isEqualTo(1);
+  }
+
+  @Test
+  void testFallbackWithEmptySeries() {
+    Assertions.assertThat(series(makeImpression(OpencastFailurePolicy.FALLBACK_EMPTY_SERIES, 404)))
+              .containsExactly("");
+    Assertions.assertThat(series(makeImpression(OpencastFailurePolicy.FALLBACK_EMPTY_SERIES, 500, 500, 500)))
+              .containsExactly("");
+  }
+
+  @Test
+  void testRetriesIOExceptions() throws IOException {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    // Nobody listens on the port anymore, so connecting fails
+    final OpencastConfig config = config("http://localhost:" + port, OpencastFailurePolicy.FALLBACK_EMPTY_SERIES);
+    final long retries = Metrics.OPENCAST_RETRIES.get();
+    final List<? extends Impression> impressions = OpencastUtils
+            .makeImpression(LOGGER, config, new OpencastClient(config), RAW_IMPRESSION)
+            .toList()
+            .blockingGet();
+    Assertions.assertThat(impressions).extracting(Impression::getSeriesId).containsExactly("");
+    Assertions.assertThat(Metrics.OPENCAST_RETRIES.get() - retries).isEqualTo(MAX_RETRIES);
+  }
+
+  @Test
+  void testConfigurationErrorsAreFatal() {
+    final OpencastConfig config = config("localhost:8080", OpencastFailurePolicy.FALLBACK_EMPTY_SERIES);
+    Assertions.assertThatThrownBy(() -> OpencastUtils
+            .makeImpression(LOGGER, config, new OpencastClient(config), RAW_IMPRESSION)
+            .toList()
+            .blockingGet())
+              .isInstanceOf(OpencastClientConfigurationException.class);
+  }
+
+  @Test
+  void testMissingOrganizationForPlaceholderIsFatal() {
+    final OpencastConfig config = config("http://{organization}.localhost:" + this.server.getAddress().getPort(),
+                                         OpencastFailurePolicy.FALLBACK_EMPTY_SERIES);
+    final RawImpression withoutOrganization = new RawImpression(LOG_LINE,
+                                                                "episode",
+                                                                null,
+                                                                "channel",
+                                                                OffsetDateTime.now(),
+                                                                new ClientAddress(0, 1));
+    Assertions.assertThatThrownBy(() -> OpencastUtils
+            .makeImpression(LOGGER, config, new OpencastClient(config), withoutOrganization)
+            .toList()
+            .blockingGet())
+              .isInstanceOf(OpencastClientConfigurationException.class)
+              .hasMessageContaining("placeholder");
+  }
+
+  @Test
+  void testMissingOrganizationWithoutPlaceholder() {
+    final OpencastConfig config = config("http://localhost:" + this.server.getAddress().getPort(),
+                                         OpencastFailurePolicy.FALLBACK_DROP);
+    final RawImpression withoutOrganization = new RawImpression(LOG_LINE,
+                                                                "episode",
+                                                                null,
+                                                                "channel",
+                                                                OffsetDateTime.now(),
+                                                                new ClientAddress(0, 1));
+    Assertions.assertThat(OpencastUtils
+                                  .makeImpression(LOGGER, config, new OpencastClient(config), withoutOrganization)
+                                  .toList()
+                                  .blockingGet())
+              .extracting(Impression::getSeriesId)
+              .containsExactly("series");
+  }
+}
@@ -0,0 +1,90 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class PartitionTest {
+  private static final List<String> MEMBERS = Arrays.asList("a", "b", "c");
+
+  private static String line(final String organizationId) {
+    return "127.0.0.1 - - [10/Feb/2019:10:00:00 +0000] \"GET /" + organizationId
+            + "/engage-player/episode/asset/video.mp4 HTTP/1.1\" 200 1000 \"http://x/y\" \"Mozilla/5.0\"";
+  }
+
+  private static boolean accepts(final Partition partition, final String line) {
+    final int[] bounds = new int[LogFormat.BOUNDS];
+    Assertions.assertThat(LogFormat.COMBINED.extract(line, bounds)).isTrue();
+    return partition.accepts(line, LogFormat.start(bounds, LogFormat.REQUEST), LogFormat.end(bounds, LogFormat.REQUEST));
+  }
+
+  private static List<Partition> partitions(final List<String> members) {
+    final List<Partition> result = new ArrayList<>();
+    for (final String member : members)
+      result.add(new Partition(members, member));
+    return result;
+  }
+
+  @Test
+  void testEveryOrganizationHasExactlyOneOwner() {
+    final List<Partition> partitions = partitions(MEMBERS);
+    final Map<String, Integer> owned = new HashMap<>();
+    for (int i = 0; i < 3_000; i++) {
+      final String organizationId = "org-" + i;
+      final List<String> accepting = new ArrayList<>();
+      for (final Partition partition : partitions) {
+        if (accepts(partition, line(organizationId)))
+          accepting.add(partition.getSelf());
+      }
+      Assertions.assertThat(accepting).containsExactly(partitions.get(0).ownerOf(organizationId));
+      owned.merge(accepting.get(0), 1, Integer::sum);
+    }
+    Assertions.assertThat(owned.values()).allSatisfy(count -> Assertions.assertThat(count).isBetween(700, 1_300));
+  }
+
+  @Test
+  void testAddingAMemberOnlyMovesItsShare() {
+    final Partition before = new Partition(MEMBERS, "a");
+    final Partition after = new Partition(Arrays.asList("a", "b", "c", "d"), "a");
+    int moved = 0;
+    for (int i = 0; i < 4_000; i++) {
+      final String organizationId = "org-" + i;
+      final String owner = after.ownerOf(organizationId);
+      if (!owner.equals(before.ownerOf(organizationId))) {
+        Assertions.assertThat(owner).isEqualTo("d");
+        moved++;
+      }
+    }
+    Assertions.assertThat(moved).isBetween(600, 1_400);
+  }
+
+  @Test
+  void testRequestsWithoutAnOrganizationAreLeftToTheParser() {
+    final Partition partition = new Partition(MEMBERS, "a");
+    Assertions.assertThat(accepts(partition, "127.0.0.1 - - [10/Feb/2019:10:00:00 +0000] \"-\" 400 0 \"http://x/y\" \"-\""))
+            .isTrue();
+    Assertions.assertThat(accepts(partition, "127.0.0.1 - - [10/Feb/2019:10:00:00 +0000] \"GET /\" 404 0 \"-\" \"-\""))
+            .isTrue();
+    Assertions.assertThatThrownBy(() -> new Partition(MEMBERS, "d")).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testTopEpisodesAreTaggedWithThePartition() {
+    final TopEpisodes topEpisodes = new TopEpisodes(1, "b");
+    topEpisodes.add(new Impression("e", "org", "engage-player", "",
+                                   OffsetDateTime.of(2019, 2, 10, 10, 0, 0, 0, ZoneOffset.UTC)));
+    final ByteBuilder out = new ByteBuilder(16);
+    topEpisodes.flush(Instant.ofEpochSecond(1)).get(0).encode(new LineProtocol(), out);
+    Assertions.assertThat(new String(out.array(), 0, out.length(), StandardCharsets.UTF_8))
+            .startsWith("top_episodes,partition=b,rank=1 ");
+  }
+}
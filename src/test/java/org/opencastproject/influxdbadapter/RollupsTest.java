@@ -0,0 +1,61 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class RollupsTest {
+  private static final OffsetDateTime START = OffsetDateTime.of(2019, 2, 10, 10, 0, 0, 0, ZoneOffset.UTC);
+
+  private static Impression impression(String seriesId, OffsetDateTime date) {
+    return new Impression("episode", "org", "engage-player", seriesId, date);
+  }
+
+  private static List<String> encode(List<Rollup> rollups) {
+    ByteBuilder out = new ByteBuilder(16);
+    for (Rollup rollup : rollups)
+      rollup.encode(new LineProtocol(), out);
+    return Arrays.stream(new String(out.array(), 0, out.length(), StandardCharsets.UTF_8).split("\n"))
+                 .sorted()
+                 .collect(Collectors.toList());
+  }
+
+  @Test
+  void testFlushWritesDeltasInsideTheirBuckets() {
+    Rollups rollups = new Rollups(Arrays.asList(Rollups.HOURLY, Rollups.DAILY));
+    rollups.add(impression("a", START.plusMinutes(5)));
+    rollups.add(impression("a", START.plusMinutes(50)));
+    rollups.add(impression("a", START.plusMinutes(70)));
+    rollups.add(impression("b c", START));
+    // 12:30:00.000000001
+    Instant now = START.plusMinutes(150).toInstant().plusNanos(1);
+    long hour = START.toEpochSecond() * 1_000_000_000L;
+    long day = START.minusHours(10).toEpochSecond() * 1_000_000_000L;
+    long hourOffset = 30 * 60 * 1_000_000_000L + 1;
+    long dayOffset = 12 * 3600 * 1_000_000_000L + hourOffset;
+    Assertions.assertThat(encode(rollups.flush(now))).containsExactly(
+            "series_impressions_daily,organizationId=org,publicationChannel=engage-player,seriesId=a value=3i "
+                    + (day + dayOffset),
+            "series_impressions_daily,organizationId=org,publicationChannel=engage-player,seriesId=b\\ c value=1i "
+                    + (day + dayOffset),
+            "series_impressions_hourly,organizationId=org,publicationChannel=engage-player,seriesId=a value=1i "
+                    + (hour + 3_600_000_000_000L + hourOffset),
+            "series_impressions_hourly,organizationId=org,publicationChannel=engage-player,seriesId=a value=2i "
+                    + (hour + hourOffset),
+            "series_impressions_hourly,organizationId=org,publicationChannel=engage-player,seriesId=b\\ c value=1i "
+                    + (hour + hourOffset));
+    // Only what was counted since the last flush
+    Assertions.assertThat(rollups.flush(now)).isEmpty();
+    rollups.add(impression("a", START));
+    Assertions.assertThat(rollups.flush(now.plusSeconds(60)))
+              .extracting(Rollup::getCount)
+              .containsExactly(1L, 1L);
+  }
+}
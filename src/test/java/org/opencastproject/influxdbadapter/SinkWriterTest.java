@@ -0,0 +1,213 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class SinkWriterTest {
+  private static final AtomicInteger SINKS = new AtomicInteger();
+
+  /**
+   * Records the lines it's given; can fail a number of times first, or wait until released
+   */
+  private static final class FakeSink implements Sink {
+    private final List<List<String>> batches = new ArrayList<>();
+    private final AtomicInteger ioFailures = new AtomicInteger();
+    private final AtomicInteger runtimeFailures = new AtomicInteger();
+    private volatile boolean alwaysFail;
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile boolean closed;
+
+    @Override
+    public void write(List<DataPoint> points) throws IOException {
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (alwaysFail || ioFailures.getAndDecrement() > 0)
+        throw new IOException("unavailable");
+      if (runtimeFailures.getAndDecrement() > 0)
+        throw new IllegalArgumentException("invalid");
+      List<String> lines = new ArrayList<>();
+      LineProtocol encoder = new LineProtocol();
+      for (DataPoint point : points) {
+        ByteBuilder out = new ByteBuilder(64);
+        point.encode(encoder, out);
+        lines.add(new String(out.array(), 0, out.length() - 1, StandardCharsets.UTF_8));
+      }
+      synchronized (batches) {
+        batches.add(lines);
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    List<List<String>> batches() {
+      synchronized (batches) {
+        return new ArrayList<>(batches);
+      }
+    }
+
+    List<String> lines() {
+      return batches().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+  }
+
+  private static String line(int i) {
+    return "test value=" + i + "i " + i;
+  }
+
+  private static List<String> lines(int from, int to) {
+    return IntStream.range(from, to).mapToObj(SinkWriterTest::line).collect(Collectors.toList());
+  }
+
+  private static SinkMetrics metrics() {
+    return Metrics.forSink("sink-writer-test-" + SINKS.incrementAndGet());
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      Assertions.assertThat(System.nanoTime()).as("waiting for condition").isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void testBatchesUpToBatchSize() throws Exception {
+    FakeSink sink = new FakeSink();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 3, Duration.ofSeconds(10), null),
+                                       sink, null, metrics());
+    for (int i = 0; i < 7; i++)
+      writer.write(new SpooledPoint(line(i)));
+    await(() -> sink.batches().size() == 2);
+    writer.close();
+    Assertions.assertThat(sink.batches()).containsExactly(lines(0, 3), lines(3, 6), lines(6, 7));
+    Assertions.assertThat(sink.closed).isTrue();
+  }
+
+  @Test
+  void testFlushesAfterFlushInterval() throws Exception {
+    FakeSink sink = new FakeSink();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 100, Duration.ofMillis(100), null),
+                                       sink, null, metrics());
+    writer.write(new SpooledPoint(line(0)));
+    writer.write(new SpooledPoint(line(1)));
+    // Written although the batch isn't full, without closing
+    await(() -> sink.batches().size() == 1);
+    Assertions.assertThat(sink.batches()).containsExactly(lines(0, 2));
+    writer.close();
+  }
+
+  @Test
+  void testRetriesIOExceptions() throws Exception {
+    FakeSink sink = new FakeSink();
+    sink.ioFailures.set(2);
+    SinkMetrics metrics = metrics();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 10, Duration.ZERO, null), sink, null, metrics);
+    writer.write(new SpooledPoint(line(0)));
+    await(() -> sink.batches().size() == 1);
+    writer.close();
+    Assertions.assertThat(sink.lines()).containsExactly(line(0));
+    Assertions.assertThat(metrics.getWriteFailures().get()).isEqualTo(2);
+    Assertions.assertThat(metrics.getPointsWritten().get()).isEqualTo(1);
+    Assertions.assertThat(metrics.getPointsDropped().get()).isZero();
+  }
+
+  @Test
+  void testDropsOnOtherExceptions() throws Exception {
+    FakeSink sink = new FakeSink();
+    sink.runtimeFailures.set(1);
+    SinkMetrics metrics = metrics();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 1, Duration.ZERO, null), sink, null, metrics);
+    writer.write(new SpooledPoint(line(0)));
+    writer.write(new SpooledPoint(line(1)));
+    await(() -> sink.batches().size() == 1);
+    writer.close();
+    Assertions.assertThat(sink.lines()).containsExactly(line(1));
+    Assertions.assertThat(metrics.getWriteFailures().get()).isEqualTo(1);
+    Assertions.assertThat(metrics.getPointsDropped().get()).isEqualTo(1);
+  }
+
+  @Test
+  void testSpoolsWhenQueueIsFullAndKeepsOrder(@TempDir Path directory) throws Exception {
+    FakeSink sink = new FakeSink();
+    sink.release = new CountDownLatch(1);
+    SinkMetrics metrics = metrics();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 2, 1, Duration.ZERO, directory),
+                                       sink,
+                                       Spool.open(directory, metrics),
+                                       metrics);
+    // The first point is stuck in the sink, two fit into the queue, the rest is spooled
+    writer.write(new SpooledPoint(line(0)));
+    Assertions.assertThat(sink.entered.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 1; i < 10; i++)
+      writer.write(new SpooledPoint(line(i)));
+    Assertions.assertThat(metrics.getSpoolPointsAppended().get()).isEqualTo(7);
+
+    sink.release.countDown();
+    // While the spool is replayed, new points go behind it
+    writer.write(new SpooledPoint(line(10)));
+    await(() -> sink.lines().size() == 11);
+    writer.close();
+    Assertions.assertThat(sink.lines()).containsExactlyElementsOf(lines(0, 11));
+    Assertions.assertThat(metrics.getSpoolPointsReplayed().get()).isEqualTo(metrics.getSpoolPointsAppended().get());
+  }
+
+  @Test
+  void testSpoolsUnwrittenPointsWhenAborted(@TempDir Path directory) throws Exception {
+    FakeSink sink = new FakeSink();
+    sink.alwaysFail = true;
+    SinkMetrics metrics = metrics();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 1, Duration.ZERO, directory),
+                                       sink,
+                                       Spool.open(directory, metrics),
+                                       metrics);
+    for (int i = 0; i < 3; i++)
+      writer.write(new SpooledPoint(line(i)));
+    await(() -> metrics.getWriteFailures().get() > 0);
+    // The sink never succeeds, so the writer gives up at the deadline
+    writer.closeBy(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200));
+    Assertions.assertThat(sink.lines()).isEmpty();
+
+    // The batch being retried and the queued points are in the spool, in order
+    try (Spool spool = Spool.open(directory, metrics)) {
+      Optional<Path> segment = spool.oldestSegment();
+      Assertions.assertThat(segment).isPresent();
+      Assertions.assertThat(Spool.read(segment.get())).containsExactlyElementsOf(lines(0, 3));
+    }
+  }
+
+  @Test
+  void testWithoutSpoolUnwrittenPointsAreDropped() throws Exception {
+    FakeSink sink = new FakeSink();
+    sink.alwaysFail = true;
+    SinkMetrics metrics = metrics();
+    SinkWriter writer = new SinkWriter(new SinkConfig("test", 100, 1, Duration.ZERO, null), sink, null, metrics);
+    for (int i = 0; i < 3; i++)
+      writer.write(new SpooledPoint(line(i)));
+    await(() -> metrics.getWriteFailures().get() > 0);
+    writer.closeBy(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200));
+    Assertions.assertThat(metrics.getPointsDropped().get()).isEqualTo(3);
+  }
+}
@@ -0,0 +1,156 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+class SortedLineProtocolFileTest {
+  private static DataPoint point(final long time, final int sequence) {
+    return point(time, sequence, false);
+  }
+
+  private static DataPoint point(final long time, final int sequence, final boolean aggregate) {
+    return new DataPoint() {
+      @Override
+      public void encode(final LineProtocol encoder, final ByteBuilder out) {
+        out.append(((aggregate ? "aggregate" : "test") + ",tag=ä value=").getBytes(StandardCharsets.UTF_8))
+           .appendDecimal(sequence)
+           .append("i ".getBytes(StandardCharsets.UTF_8))
+           .appendDecimal(time)
+           .append((byte) '\n');
+      }
+
+      @Override
+      public boolean isAggregate() {
+        return aggregate;
+      }
+    };
+  }
+
+  private static List<String> read(final Path file) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      return reader.lines().collect(Collectors.toList());
+    }
+  }
+
+  private static long time(final String line) {
+    return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+  }
+
+  private static int sequence(final String line) {
+    return Integer.parseInt(line.substring(line.indexOf('=', line.indexOf(' ')) + 1, line.indexOf("i ")));
+  }
+
+  private static void testSorted(final Path directory, final int runBytes) throws IOException {
+    final Random random = new Random(42);
+    final Path file = directory.resolve("export.lp.gz");
+    final SortedLineProtocolFile out = new SortedLineProtocolFile(file, "opencast", runBytes);
+    for (int i = 0; i < 10_000; i += 100) {
+      final List<DataPoint> batch = new ArrayList<>();
+      for (int j = i; j < i + 100; j++)
+        batch.add(point(1_000_000_000L * random.nextInt(500), j));
+      out.write(batch);
+    }
+    out.close();
+
+    final List<String> lines = read(file);
+    Assertions.assertThat(lines.subList(0, 2)).containsExactly("# DML", "# CONTEXT-DATABASE: opencast");
+    final List<String> points = lines.subList(2, lines.size());
+    Assertions.assertThat(points).hasSize(10_000).allMatch(line -> line.startsWith("test,tag=ä "));
+    for (int i = 1; i < points.size(); i++) {
+      final String previous = points.get(i - 1);
+      final String current = points.get(i);
+      Assertions.assertThat(time(current)).isGreaterThanOrEqualTo(time(previous));
+      // Ties keep their order
+      if (time(current) == time(previous))
+        Assertions.assertThat(sequence(current)).isGreaterThan(sequence(previous));
+    }
+    Assertions.assertThat(out.getPoints()).isEqualTo(10_000);
+    // Only the result is left
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files.collect(Collectors.toList())).containsExactly(file);
+    }
+  }
+
+  @Test
+  void testSortedInMemory(@TempDir Path directory) throws IOException {
+    testSorted(directory, Integer.MAX_VALUE);
+  }
+
+  @Test
+  void testSortedThroughRuns(@TempDir Path directory) throws IOException {
+    testSorted(directory, 10_000);
+  }
+
+  private static void assertSorted(final List<String> points) {
+    for (int i = 1; i < points.size(); i++)
+      Assertions.assertThat(time(points.get(i))).isGreaterThanOrEqualTo(time(points.get(i - 1)));
+  }
+
+  @Test
+  void testAggregatesInTheirOwnRetentionPolicy(@TempDir Path directory) throws IOException {
+    final Random random = new Random(42);
+    final Path file = directory.resolve("export.lp.gz");
+    final SortedLineProtocolFile out = new SortedLineProtocolFile(file, "opencast", "autogen", "aggregates", 10_000);
+    for (int i = 0; i < 5_000; i += 100) {
+      final List<DataPoint> batch = new ArrayList<>();
+      for (int j = i; j < i + 100; j++)
+        batch.add(point(1_000_000_000L * random.nextInt(500), j, j % 10 == 0));
+      out.write(batch);
+    }
+    out.close();
+
+    final List<String> lines = read(file);
+    Assertions.assertThat(lines.subList(0, 3))
+              .containsExactly("# DML", "# CONTEXT-DATABASE: opencast", "# CONTEXT-RETENTION-POLICY: autogen");
+    final int aggregatesStart = lines.indexOf("# CONTEXT-RETENTION-POLICY: aggregates");
+    final List<String> points = lines.subList(3, aggregatesStart);
+    final List<String> aggregates = lines.subList(aggregatesStart + 1, lines.size());
+    Assertions.assertThat(points).hasSize(4_500).allMatch(line -> line.startsWith("test,"));
+    Assertions.assertThat(aggregates).hasSize(500).allMatch(line -> line.startsWith("aggregate,"));
+    assertSorted(points);
+    assertSorted(aggregates);
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files.collect(Collectors.toList())).containsExactly(file);
+    }
+  }
+
+  @Test
+  void testAggregatesWithoutRetentionPolicy(@TempDir Path directory) throws IOException {
+    final Path file = directory.resolve("export.lp.gz");
+    final SortedLineProtocolFile out = new SortedLineProtocolFile(file, "opencast", null, null, 10_000);
+    out.write(Arrays.asList(point(2, 0, true), point(1, 1, false)));
+    out.close();
+    Assertions.assertThat(read(file)).containsExactly("# DML",
+                                                      "# CONTEXT-DATABASE: opencast",
+                                                      "test,tag=ä value=1i 1",
+                                                      "aggregate,tag=ä value=0i 2");
+  }
+
+  @Test
+  void testAbortLeavesNothing(@TempDir Path directory) throws IOException {
+    final Path file = directory.resolve("export.lp.gz");
+    final SortedLineProtocolFile out = new SortedLineProtocolFile(file, null, 100);
+    out.write(Collections.nCopies(100, point(1, 1)));
+    out.abort();
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files.count()).isZero();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+class SpoolTest {
+  private static final SinkMetrics METRICS = Metrics.forSink("test");
+
+  private static ByteBuilder lines(String... lines) {
+    ByteBuilder result = new ByteBuilder(16);
+    for (String line : lines)
+      result.append((line + '\n').getBytes(StandardCharsets.UTF_8));
+    return result;
+  }
+
+  private static List<String> replayAll(Spool spool) throws IOException {
+    List<String> result = new ArrayList<>();
+    for (Optional<Path> segment = spool.oldestSegment(); segment.isPresent(); segment = spool.oldestSegment()) {
+      List<String> points = Spool.read(segment.get());
+      result.addAll(points);
+      spool.removeOldestSegment(points.size());
+    }
+    return result;
+  }
+
+  @Test
+  void testEmptySpool(@TempDir Path directory) throws IOException {
+    try (Spool spool = Spool.open(directory, METRICS)) {
+      Assertions.assertThat(spool.isEmpty()).isEqualTo(true);
+      Assertions.assertThat(spool.oldestSegment().isPresent()).isEqualTo(false);
+    }
+  }
+
+  @Test
+  void testReplayKeepsOrder(@TempDir Path directory) throws IOException {
+    try (Spool spool = Spool.open(directory, METRICS)) {
+      spool.append(lines("a"), 1);
+      spool.append(lines("b"), 1);
+      Assertions.assertThat(spool.isEmpty()).isEqualTo(false);
+      Path first = spool.oldestSegment().get();
+      // Points appended while a segment is replayed go to the next one
+      spool.append(lines("c"), 1);
+      Assertions.assertThat(Spool.read(first)).containsExactly("a", "b");
+      spool.removeOldestSegment(2);
+      spool.prepend(lines("x", "y"), 2);
+      Assertions.assertThat(replayAll(spool)).containsExactly("x", "y", "c");
+      Assertions.assertThat(spool.isEmpty()).isEqualTo(true);
+    }
+  }
+
+  @Test
+  void testPointsSurviveReopening(@TempDir Path directory) throws IOException {
+    try (Spool spool = Spool.open(directory, METRICS)) {
+      spool.append(lines("a"), 1);
+      spool.append(lines("b"), 1);
+    }
+    try (Spool spool = Spool.open(directory, METRICS)) {
+      spool.append(lines("c"), 1);
+      spool.prepend(lines("x"), 1);
+      Assertions.assertThat(replayAll(spool)).containsExactly("x", "a", "b", "c");
+    }
+  }
+
+  @Test
+  void testTruncatedSegmentIsReadUpToTheTruncation(@TempDir Path directory) throws IOException {
+    try (Spool spool = Spool.open(directory, METRICS)) {
+      spool.append(lines("a"), 1);
+      Path segment = spool.oldestSegment().get();
+      byte[] content = Files.readAllBytes(segment);
+      // Cut off the gzip trailer, like a crash before closing the segment would
+      Files.write(segment, Arrays.copyOf(content, content.length - 8));
+      Assertions.assertThat(Spool.read(segment)).containsExactly("a");
+    }
+  }
+
+  @Test
+  void testDirectoryCannotBeShared(@TempDir Path directory) throws IOException {
+    try (Spool ignored = Spool.open(directory, METRICS)) {
+      Assertions.assertThatThrownBy(() -> Spool.open(directory, METRICS)).isInstanceOf(IOException.class);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+class StageTest {
+  @Test
+  void testQueueHandsOverInOrder() throws Exception {
+    final int count = 1_000_000;
+    final Gauge depth = new Gauge();
+    final StageQueue<Integer> queue = new StageQueue<>(100, depth);
+    final Thread producer = new Thread(() -> {
+      try {
+        for (int i = 0; i < count; i++)
+          queue.put(i);
+        queue.complete();
+      } catch (final InterruptedException e) {
+        queue.fail(e);
+      }
+    });
+    producer.start();
+    final List<Integer> batch = new ArrayList<>();
+    int expected = 0;
+    int largestBatch = 0;
+    while (queue.take(batch, 64) >= 0) {
+      Assertions.assertThat(batch.size()).isLessThanOrEqualTo(64);
+      largestBatch = Math.max(largestBatch, batch.size());
+      for (final int i : batch)
+        Assertions.assertThat(i).isEqualTo(expected++);
+      batch.clear();
+    }
+    producer.join();
+    Assertions.assertThat(expected).isEqualTo(count);
+    Assertions.assertThat(queue.getError()).isNull();
+    Assertions.assertThat(depth.get()).isZero();
+    Assertions.assertThat(largestBatch).isGreaterThan(1);
+  }
+
+  @Test
+  void testQueueIsBounded() {
+    final StageQueue<String> queue = new StageQueue<>(3, new Gauge());
+    Assertions.assertThat(queue.offer("a")).isTrue();
+    Assertions.assertThat(queue.offer("b")).isTrue();
+    Assertions.assertThat(queue.offer("c")).isTrue();
+    Assertions.assertThat(queue.offer("d")).isFalse();
+    final List<String> taken = new ArrayList<>();
+    Assertions.assertThat(queue.drain(taken, 2)).isEqualTo(2);
+    Assertions.assertThat(queue.offer("d")).isTrue();
+    Assertions.assertThat(queue.drain(taken, 10)).isEqualTo(2);
+    Assertions.assertThat(taken).containsExactly("a", "b", "c", "d");
+  }
+
+  @Test
+  void testStageKeepsOrderAndChangesThread() {
+    final List<String> threads = new ArrayList<>();
+    final List<Integer> result = Flowable.range(0, 100_000)
+            .subscribeOn(Schedulers.io())
+            .compose(new Stage<>("test", 1000))
+            .doOnNext(i -> {
+              if (i == 0)
+                threads.add(Thread.currentThread().getName());
+            })
+            .toList()
+            .blockingGet();
+    Assertions.assertThat(result).hasSize(100_000);
+    for (int i = 0; i < result.size(); i++)
+      Assertions.assertThat(result.get(i)).isEqualTo(i);
+    Assertions.assertThat(threads).containsExactly("test-stage");
+  }
+
+  @Test
+  void testStageForwardsErrorsAfterItems() {
+    final List<Integer> items = new ArrayList<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Flowable.range(0, 10)
+            .concatWith(Flowable.error(new IOException("broken")))
+            .compose(new Stage<>("test", 4))
+            .blockingSubscribe(items::add, error::set);
+    Assertions.assertThat(items).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    Assertions.assertThat(error.get()).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void testStageCancelsUpstream() {
+    final List<Integer> result = Flowable.interval(1, TimeUnit.MILLISECONDS)
+            .map(Long::intValue)
+            .onBackpressureDrop()
+            .compose(new Stage<>("test", 16))
+            .take(5)
+            .toList()
+            .blockingGet();
+    Assertions.assertThat(result).hasSize(5);
+  }
+}
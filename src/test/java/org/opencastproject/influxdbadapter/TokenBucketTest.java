@@ -0,0 +1,31 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TokenBucketTest {
+  @Test
+  void testBurstThenRate() {
+    AtomicLong now = new AtomicLong(1_000);
+    TokenBucket bucket = new TokenBucket(10, 3, now::get);
+    Assertions.assertThat(bucket.reserve()).isZero();
+    Assertions.assertThat(bucket.reserve()).isZero();
+    Assertions.assertThat(bucket.reserve()).isZero();
+    // The bucket is empty, further tokens come every 100ms
+    Assertions.assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    Assertions.assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+
+    // After waiting for those, the bucket is empty again
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    Assertions.assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+    // After a long pause, it's full, but holds no more than its capacity
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    for (int i = 0; i < 3; i++)
+      Assertions.assertThat(bucket.reserve()).isZero();
+    Assertions.assertThat(bucket.reserve()).isPositive();
+  }
+}
@@ -0,0 +1,58 @@
+package org.opencastproject.influxdbadapter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+class TopEpisodesTest {
+  private static final OffsetDateTime DATE = OffsetDateTime.of(2019, 2, 10, 10, 0, 0, 0, ZoneOffset.UTC);
+
+  private static Impression impression(final String episodeId) {
+    return new Impression(episodeId, "org", "engage-player", "series", DATE);
+  }
+
+  @Test
+  void testHeavyHittersAreFoundAmongManyRareEpisodes() {
+    TopEpisodes topEpisodes = new TopEpisodes(3);
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      if (i % 10 == 0)
+        topEpisodes.add(impression("hot"));
+      else if (i % 20 == 1)
+        topEpisodes.add(impression("warm"));
+      else
+        topEpisodes.add(impression("rare-" + random.nextInt(10_000)));
+    }
+    List<TopEpisode> top = topEpisodes.flush(Instant.ofEpochSecond(1));
+    Assertions.assertThat(top).hasSize(3);
+    Assertions.assertThat(top.get(0).getEpisodeId()).isEqualTo("hot");
+    Assertions.assertThat(top.get(0).getCount() - top.get(0).getError()).isLessThanOrEqualTo(10_000);
+    Assertions.assertThat(top.get(0).getCount()).isGreaterThanOrEqualTo(10_000);
+    Assertions.assertThat(top.get(1).getEpisodeId()).isEqualTo("warm");
+    Assertions.assertThat(top).extracting(TopEpisode::getRank).containsExactly(1, 2, 3);
+    // Each flush starts over
+    Assertions.assertThat(topEpisodes.flush(Instant.ofEpochSecond(2))).isEmpty();
+  }
+
+  @Test
+  void testEncoding() {
+    TopEpisodes topEpisodes = new TopEpisodes(50);
+    topEpisodes.add(impression("b"));
+    topEpisodes.add(impression("a \"1\""));
+    topEpisodes.add(impression("a \"1\""));
+    ByteBuilder out = new ByteBuilder(16);
+    for (TopEpisode episode : topEpisodes.flush(Instant.ofEpochSecond(1)))
+      episode.encode(new LineProtocol(), out);
+    Assertions.assertThat(new String(out.array(), 0, out.length(), StandardCharsets.UTF_8)).isEqualTo(
+            "top_episodes,rank=1 error=0i,value=2i,episodeId=\"a \\\"1\\\"\",organizationId=\"org\",seriesId=\"series\" "
+                    + "1000000000\n"
+                    + "top_episodes,rank=2 error=0i,value=1i,episodeId=\"b\",organizationId=\"org\",seriesId=\"series\" "
+                    + "1000000000\n");
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.influxdbadapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+import net.jqwik.api.arbitraries.SizableArbitrary;
+
+import org.assertj.core.api.Assertions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Property-based tests for the sliding window mechanism
+ *
+ * <p>For an introduction to property-based testing, see https://jqwik.net/</p>
+ */
+class WindowTest {
+  private static final LogLine DUMMY_LOG_LINE = new LogLine("origin",
+                                                            new ClientAddress(0, 0),
+                                                            OffsetDateTime.now(),
+                                                            "request",
+                                                            200,
+                                                            "unknown",
+                                                            "referrer",
+                                                            "agent",
+                                                            Optional.empty());
+
+  // Generate a random list of raw impression
+  @Provide
+  SizableArbitrary<List<RawImpression>> rawImpressionList() {
+    final Arbitrary<String> episodeIds = Arbitraries
+            .strings()
+            .withCharRange('a', 'z')
+            .ofLength(1)
+            .map(e -> "episode" + e);
+    final Arbitrary<String> organizationIds = Arbitraries
+            .strings()
+            .withCharRange('a', 'z')
+            .ofLength(1)
+            .map(org -> "org" + org);
+    final Arbitrary<String> channelIds = Arbitraries
+            .strings()
+            .withCharRange('a', 'z')
+            .ofLength(1)
+            .map(org -> "channel" + org);
+    final Arbitrary<OffsetDateTime> times = Arbitraries
+            .longs()
+            .between(0, Instant.now().getEpochSecond())
+            .map(Instant::ofEpochSecond)
+            .map(i -> i.atOffset(ZoneOffset.UTC));
+    final Arbitrary<ClientAddress> ips = Arbitraries.longs().between(0, 25).map(ip -> new ClientAddress(0, ip));
+    return episodeIds
+            .flatMap(episodeId -> organizationIds.flatMap(organizationId -> channelIds.flatMap(channelId -> times.flatMap(
+                    time -> ips.map(ip -> new RawImpression(
+                            DUMMY_LOG_LINE,
+                            episodeId,
+                            organizationId,
+                            channelId,
+                            time,
+                            ip))))))
+            .list();
+  }
+
+  // Generate a strictly positive duration
+  @Provide
+  Arbitrary<Duration> positiveDuration() {
+    return Arbitraries.integers().greaterOrEqual(1).map(Duration::ofMinutes);
+  }
+
+  // Generate an arbitrary duration
+  @Provide
+  Arbitrary<Duration> duration() {
+    return Arbitraries.integers().map(Duration::ofMinutes);
+  }
+
+  @Property
+  void evictionsShouldBeIndependentOfTimeFrame(
+          @ForAll("rawImpressionList") final List<RawImpression> rawImpressions,
+          @ForAll("positiveDuration") final Duration interval,
+          @ForAll("duration") final TemporalAmount addition) {
+    rawImpressions.sort(Comparator.comparing(RawImpression::getDate));
+    final List<RawImpression> evictions = runWindow(rawImpressions, interval);
+    final List<RawImpression> movedImpressions = rawImpressions
+            .stream()
+            .map(ri -> new RawImpression(DUMMY_LOG_LINE,
+                                         ri.getEpisodeId(),
+                                         ri.getOrganizationId(),
+                                         ri.getPublicationChannel(),
+                                         ri.getDate().plus(addition),
+                                         ri.getIp()))
+            .collect(Collectors.toList());
+    final List<RawImpression> movedEvictions = runWindow(movedImpressions, interval);
+    Assertions.assertThat(evictions).isEqualTo(movedEvictions);
+  }
+
+  @Property
+  void longerDurationsWillProduceLessEvictions(
+          @ForAll("rawImpressionList") final List<RawImpression> rawImpressions,
+          @ForAll("positiveDuration") final Duration interval) {
+    rawImpressions.sort(Comparator.comparing(RawImpression::getDate));
+    final List<RawImpression> evictions = runWindow(rawImpressions, interval);
+    final List<RawImpression> longerEvictions = runWindow(rawImpressions, interval.multipliedBy(2));
+    assertThat(longerEvictions.size()).isLessThanOrEqualTo(evictions.size());
+  }
+
+  @Property
+  void shorterDurationsWillProduceMoreEvictions(
+          @ForAll("rawImpressionList") final List<RawImpression> rawImpressions,
+          @ForAll("positiveDuration") final Duration interval) {
+    rawImpressions.sort(Comparator.comparing(RawImpression::getDate));
+    final List<RawImpression> evictions = runWindow(rawImpressions, interval);
+    final List<RawImpression> shorterEvictions = runWindow(rawImpressions, interval.dividedBy(2));
+    assertThat(evictions.size()).isLessThanOrEqualTo(shorterEvictions.size());
+  }
+
+  @Property
+  void runningTheWindowIsIdempotent(
+          @ForAll("rawImpressionList") final List<RawImpression> rawImpressions,
+          @ForAll("positiveDuration") final Duration interval) {
+    rawImpressions.sort(Comparator.comparing(RawImpression::getDate));
+    final List<RawImpression> evictions = runWindow(rawImpressions, interval);
+    final List<RawImpression> evictionsAgain = runWindow(evictions, interval);
+    // Views ending at the same time may come out in any order
+    Assertions.assertThat(evictionsAgain).containsExactlyInAnyOrderElementsOf(evictions);
+  }
+
+  private static RawImpression impression(final String episodeId, final Instant time) {
+    return new RawImpression(DUMMY_LOG_LINE,
+                             episodeId,
+                             "org",
+                             "channel",
+                             time.atOffset(ZoneOffset.UTC),
+                             new ClientAddress(0, 1));
+  }
+
+  private static Window window() {
+    return new Window(Duration.ofMinutes(1), Duration.ofSeconds(30));
+  }
+
+  private static List<RawImpression> advance(final Window window, final RawImpression rawImpression, final Instant now) {
+    final List<RawImpression> evictions = new ArrayList<>();
+    window.advance(rawImpression, now, evictions);
+    return evictions;
+  }
+
+  @Example
+  void lateImpressionsWithinTheAllowanceJoinTheirView() {
+    final Instant start = Instant.ofEpochSecond(1_000_000);
+    final Window window = window();
+    assertThat(advance(window, impression("a", start), start)).isEmpty();
+    assertThat(advance(window, impression("b", start.plusSeconds(70)), start)).isEmpty();
+    // Written 20s out of order, still within the allowed 30s
+    assertThat(advance(window, impression("a", start.plusSeconds(50)), start)).isEmpty();
+    assertThat(advance(window, impression("b", start.plusSeconds(139)), start)).isEmpty();
+    assertThat(advance(window, impression("b", start.plusSeconds(140)), start))
+            .extracting(RawImpression::getEpisodeId)
+            .containsExactly("a");
+  }
+
+  @Example
+  void lateImpressionsDoNotMoveTheirViewBack() {
+    final Instant start = Instant.ofEpochSecond(1_000_000);
+    final Window window = window();
+    assertThat(advance(window, impression("a", start.plusSeconds(50)), start)).isEmpty();
+    assertThat(advance(window, impression("a", start.plusSeconds(40)), start)).isEmpty();
+    // The view still ends at 50s, so it's evicted once the watermark reaches 110s, not 100s
+    assertThat(advance(window, impression("b", start.plusSeconds(130)), start)).isEmpty();
+    assertThat(advance(window, impression("b", start.plusSeconds(140)), start))
+            .extracting(RawImpression::getEpisodeId)
+            .containsExactly("a");
+  }
+
+  @Example
+  void theLatestLineOfAViewIsEvicted() {
+    final Instant start = Instant.ofEpochSecond(1_000_000);
+    final Window window = window();
+    advance(window, impression("a", start), start);
+    advance(window, impression("a", start.plusSeconds(60)), start);
+    advance(window, impression("b", start.plusSeconds(100)), start);
+    assertThat(window.size()).isEqualTo(2);
+    // The first line alone would have been evicted at a watermark of 60s
+    assertThat(advance(window, impression("b", start.plusSeconds(149)), start)).isEmpty();
+    assertThat(advance(window, impression("b", start.plusSeconds(150)), start))
+            .extracting(RawImpression::getDate)
+            .containsExactly(start.plusSeconds(60).atOffset(ZoneOffset.UTC));
+    assertThat(window.size()).isEqualTo(1);
+  }
+
+  @Example
+  void timerTicksEvictWhileThereAreNoLines() {
+    final Instant start = Instant.ofEpochSecond(1_000_000);
+    final Window window = window();
+    assertThat(advance(window, null, start)).isEmpty();
+    advance(window, impression("a", start), start);
+    assertThat(advance(window, null, start.plusSeconds(89))).isEmpty();
+    assertThat(advance(window, null, start.plusSeconds(90)))
+            .extracting(RawImpression::getEpisodeId)
+            .containsExactly("a");
+    assertThat(window.size()).isZero();
+  }
+
+  @Example
+  void drainEvictsEverythingOldestFirst() {
+    final Instant start = Instant.ofEpochSecond(1_000_000);
+    final Window window = window();
+    advance(window, impression("a", start.plusSeconds(10)), start);
+    advance(window, impression("b", start), start);
+    advance(window, impression("c", start.plusSeconds(20)), start);
+    final List<RawImpression> evictions = new ArrayList<>();
+    window.drain(evictions);
+    assertThat(evictions).extracting(RawImpression::getEpisodeId).containsExactly("b", "a", "c");
+    assertThat(window.size()).isZero();
+  }
+
+  private List<RawImpression> runWindow(final Iterable<RawImpression> rawImpressions, final Duration interval) {
+    // Without a lateness allowance or a clock, the watermark is the latest time stamp
+    final Window window = new Window(interval, Duration.ZERO);
+    final List<RawImpression> evictions = new ArrayList<>(0);
+    for (final RawImpression rawImpression : rawImpressions)
+      window.advance(rawImpression, null, evictions);
+    window.drain(evictions);
+    return evictions;
+  }
+}
\ No newline at end of file